@@ -46,6 +46,13 @@ public class DefaultInferenceResult implements InferenceResult {
      */
     protected final Collection<Constraint> unsatisfiableConstraints;
 
+    /**
+     * {@link #varIdToAnnotation} indexed by variable ID, built on the first call of
+     * {@link #getSolutionsById(int)}. Subclasses only fill {@link #varIdToAnnotation} while
+     * they are constructed, so the index stays valid afterwards.
+     */
+    private AnnotationMirror[] solutionsById;
+
     /**
      * No-arg constructor.
      *
@@ -121,6 +128,17 @@ public class DefaultInferenceResult implements InferenceResult {
         return varIdToAnnotation.get(varId);
     }
 
+    @Override
+    public AnnotationMirror[] getSolutionsById(int maxVarId) {
+        if (!hasSolution()) {
+            return null;
+        }
+        if (solutionsById == null || solutionsById.length != maxVarId + 1) {
+            solutionsById = InferenceResult.super.getSolutionsById(maxVarId);
+        }
+        return solutionsById;
+    }
+
     @Override
     public Collection<Constraint> getUnsatisfiableConstraints() {
         if (hasSolution()) {
@@ -303,6 +303,20 @@ public class DefaultSlotManager implements SlotManager {
         return varSlots;
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<Slot> getInsertableSlots() {
+        List<Slot> insertableSlots = new ArrayList<>();
+        for (Slot slot : slots.values()) {
+            if (slot.isVariable() && slot.getLocation() != null && slot.isInsertable()) {
+                insertableSlots.add(slot);
+            }
+        }
+        return insertableSlots;
+    }
+
     /**
      * @inheritDoc
      */
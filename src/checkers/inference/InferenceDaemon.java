@@ -0,0 +1,342 @@
+package checkers.inference;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.checkerframework.javacutil.UserError;
+
+import checkers.inference.InferenceOptions.InitStatus;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * A long-running server that runs {@link InferenceMain} for requests sent by an
+ * {@link InferenceDaemonClient}.
+ *
+ * Every inference run from {@link InferenceLauncher} normally starts a new JVM, so it pays
+ * for class loading and JIT warm-up of javac, the Checker Framework and the solvers
+ * from cold. The daemon keeps one JVM alive and runs each request in it, isolated
+ * from the previous one by {@link InferenceOptions#resetOptions()},
+ * {@link InferenceMain#resetInstance()} and {@link Statistics#clearStatistics()}.
+ *
+ * The daemon only listens on the loopback interface, and only serves clients that know its
+ * token: a random string that the daemon writes on startup to a token file that only its
+ * owner can read, see {@link #getDefaultTokenFile(int)}. Other local users can therefore not
+ * run inference, or write jaif files, as the owner of the daemon. Because InferenceOptions and
+ * InferenceMain are process-wide singletons, requests are served one at a time.
+ * Output that a request writes to System.out and System.err is sent back to the client;
+ * java.util.logging output stays on the console of the daemon.
+ *
+ * Protocol: the client sends one line with the token, then one line with a command ({@link #INFER_COMMAND},
+ * {@link #PING_COMMAND} or {@link #SHUTDOWN_COMMAND}). For {@code INFER} the command is
+ * followed by the InferenceMain arguments, one per line, and an empty line. The daemon
+ * answers with the output of the request followed by a line starting with
+ * {@link #STATUS_PREFIX} and the exit code of the request.
+ *
+ * Relative paths in the arguments are resolved against the working directory of the
+ * daemon, so clients should send absolute paths.
+ */
+public class InferenceDaemon {
+
+    public static final int DEFAULT_PORT = 30308;
+
+    public static final String INFER_COMMAND = "INFER";
+    public static final String PING_COMMAND = "PING";
+    public static final String SHUTDOWN_COMMAND = "SHUTDOWN";
+
+    public static final String STATUS_PREFIX = "#inference-daemon-status ";
+
+    private static final Logger logger = Logger.getLogger(InferenceDaemon.class.getName());
+
+    private final int port;
+
+    /**
+     * The token file, or null to use the default token file of the port the daemon listens on.
+     */
+    private final File tokenFile;
+
+    private byte[] token;
+
+    private volatile int localPort = -1;
+
+    private volatile boolean running;
+
+    public InferenceDaemon(int port) {
+        this(port, null);
+    }
+
+    /**
+     * @param port the port to listen on, or 0 to use any free port, see {@link #getLocalPort()}
+     * @param tokenFile the file to write the token to, or null for {@link #getDefaultTokenFile(int)}
+     */
+    public InferenceDaemon(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    public static void main(String [] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File tokenFile = args.length > 1 ? new File(args[1]) : null;
+        try {
+            new InferenceDaemon(port, tokenFile).serve();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Inference daemon failed on port " + port, e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The token file of a daemon listening on the given port, unless another file is given to
+     * the daemon: {@code ~/.checker-framework-inference/daemon-<port>.token}.
+     */
+    public static File getDefaultTokenFile(int port) {
+        return new File(new File(System.getProperty("user.home"), ".checker-framework-inference"),
+                "daemon-" + port + ".token");
+    }
+
+    /**
+     * @return the port the daemon listens on, or -1 if it is not listening yet
+     */
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    /**
+     * Accept and run requests until a {@link #SHUTDOWN_COMMAND} is received.
+     */
+    public void serve() throws IOException {
+        running = true;
+        try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            File file = tokenFile != null ? tokenFile : getDefaultTokenFile(serverSocket.getLocalPort());
+            token = writeToken(file);
+            localPort = serverSocket.getLocalPort();
+            logger.info("Inference daemon listening on port " + localPort + ", token in " + file);
+            try {
+                while (running) {
+                    try (Socket socket = serverSocket.accept()) {
+                        handle(socket);
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Failed to serve inference request", e);
+                    }
+                }
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a new random token to the given file, which only the owner may read and write.
+     *
+     * @return the token, as it is written to the file
+     */
+    private static byte[] writeToken(File file) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        byte[] token = hex.toString().getBytes(StandardCharsets.UTF_8);
+
+        Path path = file.toPath().toAbsolutePath();
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            if (!Files.isDirectory(path.getParent())) {
+                Files.createDirectories(path.getParent(),
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+            File created = path.toFile();
+            if (!(created.setReadable(false, false) && created.setReadable(true, true)
+                    && created.setWritable(false, false) && created.setWritable(true, true))) {
+                throw new IOException("Could not restrict the permissions of token file " + created);
+            }
+        }
+        Files.write(path, token);
+        return token;
+    }
+
+    /**
+     * Reads the token of a daemon from its token file.
+     */
+    public static String readToken(File tokenFile) throws IOException {
+        return new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(
+                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+        String clientToken = in.readLine();
+        if (clientToken == null) {
+            return;
+        }
+        if (!MessageDigest.isEqual(token, clientToken.getBytes(StandardCharsets.UTF_8))) {
+            logger.warning("Rejected an inference request with a wrong token");
+            out.println("Wrong inference daemon token.");
+            out.println(STATUS_PREFIX + 1);
+            return;
+        }
+
+        String command = in.readLine();
+        if (command == null) {
+            return;
+        }
+
+        switch (command) {
+            case PING_COMMAND:
+                out.println(STATUS_PREFIX + 0);
+                break;
+
+            case SHUTDOWN_COMMAND:
+                running = false;
+                out.println(STATUS_PREFIX + 0);
+                break;
+
+            case INFER_COMMAND:
+                List<String> args = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    args.add(line);
+                }
+                PrintStream requestOut = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+                int status = runRequest(args.toArray(new String[args.size()]), requestOut);
+                requestOut.flush();
+                out.println(STATUS_PREFIX + status);
+                break;
+
+            default:
+                out.println("Unknown command: " + command);
+                out.println(STATUS_PREFIX + 1);
+        }
+    }
+
+    /**
+     * Run InferenceMain on the given arguments in this JVM.
+     *
+     * @param args the same arguments InferenceMain.main would receive
+     * @param requestOut the stream that System.out and System.err are redirected to while
+     *                   the request runs
+     * @return the exit code InferenceMain.main would have terminated with
+     */
+    protected int runRequest(String [] args, PrintStream requestOut) {
+        final PrintStream systemOut = System.out;
+        final PrintStream systemErr = System.err;
+        System.setOut(requestOut);
+        System.setErr(requestOut);
+
+        InferenceMain inferenceMain = null;
+        try {
+            InferenceOptions.resetOptions();
+            Statistics.clearStatistics();
+
+            InitStatus status = InferenceOptions.init(args, false);
+            if (!status.errors.isEmpty()) {
+                requestOut.println(String.join("\n", status.errors));
+                return 1;
+            }
+
+            if (!canLoad(InferenceOptions.checker, requestOut)
+                    || (InferenceOptions.solver != null && !canLoad(InferenceOptions.solver, requestOut))) {
+                return 5;
+            }
+
+            inferenceMain = InferenceMain.resetInstance();
+            inferenceMain.setExitOnInstantiationFailure(false);
+            inferenceMain.setResultHandler(new DaemonResultHandler(requestOut));
+            if (!inferenceMain.runInference()) {
+                requestOut.println("No solution.");
+                return 1;
+            }
+            return 0;
+
+        } catch (RequestFailedException e) {
+            return failureStatus(inferenceMain);
+
+        } catch (UserError e) {
+            requestOut.println(e.getMessage());
+            return failureStatus(inferenceMain);
+
+        } catch (RuntimeException | Error e) {
+            e.printStackTrace(requestOut);
+            return failureStatus(inferenceMain);
+
+        } finally {
+            System.setOut(systemOut);
+            System.setErr(systemErr);
+        }
+    }
+
+    /**
+     * @return the exit code of a failed request: 5 if the checker or solver could not be
+     * instantiated, as InferenceMain.main would exit with, 1 otherwise
+     */
+    private static int failureStatus(InferenceMain inferenceMain) {
+        return inferenceMain != null && inferenceMain.hasInstantiationFailed() ? 5 : 1;
+    }
+
+    /**
+     * Check that the checker and the solver exist before starting the request. Failures to
+     * instantiate them later are reported by InferenceMain with exit code 5, see
+     * {@link InferenceMain#setExitOnInstantiationFailure(boolean)}.
+     */
+    private static boolean canLoad(String className, PrintStream requestOut) {
+        try {
+            Class.forName(className, false, ClassLoader.getSystemClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            requestOut.println("Could not find class \"" + className + "\".");
+            return false;
+        }
+    }
+
+    /**
+     * Prints the javac output and aborts the request rather than the JVM when
+     * javac fails.
+     */
+    private static class DaemonResultHandler implements InferenceMain.ResultHandler {
+
+        private final PrintStream requestOut;
+
+        private DaemonResultHandler(PrintStream requestOut) {
+            this.requestOut = requestOut;
+        }
+
+        @Override
+        public void handleCompilerResult(boolean success, String javacOutStr) {
+            if (!success) {
+                requestOut.println("Error return code from javac! Quitting.");
+                requestOut.println(javacOutStr);
+                throw new RequestFailedException();
+            }
+        }
+    }
+
+    private static class RequestFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,130 @@
+package checkers.inference;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client for an {@link InferenceDaemon} running on the local machine.
+ *
+ * {@link InferenceLauncher} uses this class for the INFER step when --daemonPort is given.
+ * It can also be run directly to check on or stop a daemon:
+ * <pre>
+ *     InferenceDaemonClient [port] PING|SHUTDOWN
+ * </pre>
+ *
+ * Requests are authenticated with the token that the daemon wrote to its token file, so
+ * only users who can read that file can use the daemon.
+ */
+public class InferenceDaemonClient {
+
+    private final int port;
+    private final File tokenFile;
+    private final PrintStream outStream;
+
+    public InferenceDaemonClient(int port, PrintStream outStream) {
+        this(port, InferenceDaemon.getDefaultTokenFile(port), outStream);
+    }
+
+    public InferenceDaemonClient(int port, File tokenFile, PrintStream outStream) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+        this.outStream = outStream;
+    }
+
+    public static void main(String [] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[0]) : InferenceDaemon.DEFAULT_PORT;
+        String command = args.length > 0 ? args[args.length - 1] : InferenceDaemon.PING_COMMAND;
+        System.exit(new InferenceDaemonClient(port, System.out).send(command.toUpperCase(), new ArrayList<>()));
+    }
+
+    /**
+     * Run InferenceMain with the given arguments in the daemon.
+     *
+     * @param inferenceMainArgs the same arguments InferenceMain.main would receive
+     * @return the exit code of the inference request
+     */
+    public int infer(List<String> inferenceMainArgs) {
+        return send(InferenceDaemon.INFER_COMMAND, absolutizePaths(inferenceMainArgs));
+    }
+
+    /**
+     * Send a command to the daemon and copy its output to the out stream of this client.
+     *
+     * @return the exit code sent by the daemon, or 1 if the daemon could not be reached or
+     * its token could not be read
+     */
+    public int send(String command, List<String> args) {
+        String token;
+        try {
+            token = InferenceDaemon.readToken(tokenFile);
+        } catch (IOException e) {
+            outStream.println("Could not read inference daemon token file " + tokenFile + ": " + e.getMessage());
+            return 1;
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            PrintWriter out = new PrintWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.println(token);
+            out.println(command);
+            for (String arg : args) {
+                out.println(arg);
+            }
+            out.println();
+            out.flush();
+
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(InferenceDaemon.STATUS_PREFIX)) {
+                    return Integer.parseInt(line.substring(InferenceDaemon.STATUS_PREFIX.length()).trim());
+                }
+                outStream.println(line);
+            }
+
+            outStream.println("Inference daemon closed the connection without a status.");
+            return 1;
+
+        } catch (IOException e) {
+            outStream.println("Could not reach inference daemon on port " + port + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * The daemon resolves relative paths against its own working directory. Make the
+     * arguments that name files relative to this process absolute: the jaif file, which
+     * may not exist yet, and every argument that names an existing file.
+     */
+    private static List<String> absolutizePaths(List<String> args) {
+        List<String> absolute = new ArrayList<>(args.size());
+        boolean nextIsJaif = false;
+        for (String arg : args) {
+            if (nextIsJaif) {
+                absolute.add(new File(arg).getAbsolutePath());
+                nextIsJaif = false;
+            } else if (arg.startsWith("--jaifFile=")) {
+                absolute.add("--jaifFile=" + new File(arg.substring("--jaifFile=".length())).getAbsolutePath());
+            } else if (arg.equals("--jaifFile")) {
+                absolute.add(arg);
+                nextIsJaif = true;
+            } else if (!arg.startsWith("-") && new File(arg).exists()) {
+                absolute.add(new File(arg).getAbsolutePath());
+            } else {
+                absolute.add(arg);
+            }
+        }
+        return absolute;
+    }
+}
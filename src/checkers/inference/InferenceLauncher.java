@@ -10,16 +10,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import checkers.inference.InferenceOptions.InitStatus;
+import checkers.inference.util.ParallelJaifInserter;
+import checkers.inference.util.ParallelJaifInserter.PackageInsertion;
 
 
 /**
@@ -75,14 +81,22 @@ public class InferenceLauncher {
                 break;
 
             case ROUNDTRIP:
-                infer();
-                insertJaif();
+                if (InferenceOptions.inProcess) {
+                    roundtripInProcess(false);
+                } else {
+                    infer();
+                    insertJaif();
+                }
                 break;
 
             case ROUNDTRIP_TYPECHECK:
-                infer();
-                List<String> updatedJavaFiles =  insertJaif();
-                typecheck(updatedJavaFiles.toArray(new String[updatedJavaFiles.size()]));
+                if (InferenceOptions.inProcess) {
+                    roundtripInProcess(true);
+                } else {
+                    infer();
+                    List<String> updatedJavaFiles =  insertJaif();
+                    typecheck(updatedJavaFiles.toArray(new String[updatedJavaFiles.size()]));
+                }
                 break;
         }
     }
@@ -151,9 +165,15 @@ public class InferenceLauncher {
     /**
      * Infers annotations for the set of source files found in InferenceOptions.java
      * This method creates a process that runs InferenceMain on the same options
-     * in InferenceOptions but excluding those that do not apply to the inference step
+     * in InferenceOptions but excluding those that do not apply to the inference step.
+     * If InferenceOptions.daemonPort is set, the step is run by an InferenceDaemon instead.
      */
     public void infer() {
+        if (InferenceOptions.daemonPort != null) {
+            inferWithDaemon();
+            return;
+        }
+
         printStep("Inferring", outStream);
         final String java = getJavaCommand(System.getProperty("java.home"), outStream);
         List<String> argList = new LinkedList<>();
@@ -177,9 +197,52 @@ public class InferenceLauncher {
                         "-ea", "-ea:checkers.inference...",
                         // TODO: enable assertions.
                         "-da:org.checkerframework.framework.flow...",
-                        "checkers.inference.InferenceMain",
-                        "--checker", InferenceOptions.checker)
+                        "checkers.inference.InferenceMain")
         );
+        argList.addAll(getInferenceMainArgs());
+
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running infer command:");
+            outStream.println(SystemUtil.join(" ", argList));
+        }
+
+        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
+        outStream.flush();
+        errStream.flush();
+
+        reportStatus("Inference", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * Sends the inference step to the InferenceDaemon listening on InferenceOptions.daemonPort
+     * instead of starting a new JVM.
+     */
+    protected void inferWithDaemon() {
+        printStep("Inferring (daemon on port " + InferenceOptions.daemonPort + ")", outStream);
+        List<String> argList = getInferenceMainArgs();
+
+        if (InferenceOptions.printCommands) {
+            outStream.println("Sending infer request:");
+            outStream.println(SystemUtil.join(" ", argList));
+        }
+
+        int result = new InferenceDaemonClient(InferenceOptions.daemonPort, outStream).infer(argList);
+
+        reportStatus("Inference", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * @return the arguments to InferenceMain for the same options in InferenceOptions
+     * but excluding those that do not apply to the inference step
+     */
+    protected List<String> getInferenceMainArgs() {
+        List<String> argList = new ArrayList<>();
+        argList.add("--checker");
+        argList.add(InferenceOptions.checker);
 
         addIfNotNull("--jaifFile", InferenceOptions.jaifFile, argList);
         addIfNotNull("--logLevel", InferenceOptions.logLevel, argList);
@@ -202,19 +265,7 @@ public class InferenceLauncher {
 
         // TODO: NEED TO HANDLE JDK
         argList.addAll(Arrays.asList(InferenceOptions.javaFiles));
-
-        if (InferenceOptions.printCommands) {
-            outStream.println("Running infer command:");
-            outStream.println(SystemUtil.join(" ", argList));
-        }
-
-        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
-        outStream.flush();
-        errStream.flush();
-
-        reportStatus("Inference", result, outStream);
-        outStream.flush();
-        exitOnNonZeroStatus(result);
+        return argList;
     }
 
     public static String getJavaCommand(final String javaHome, final PrintStream out) {
@@ -257,73 +308,255 @@ public class InferenceLauncher {
      * potentially altered.   This list is needed for subsequent typechecking.
      */
     public List<String> insertJaif() {
-        List<String> outputJavaFiles = new ArrayList<>(InferenceOptions.javaFiles.length);
-
         printStep("Inserting annotations", outStream);
-        int result;
         String pathToAfuScripts = InferenceOptions.pathToAfuScripts == null ? "":InferenceOptions.pathToAfuScripts+File.separator;
         String insertAnnotationsScript = pathToAfuScripts+"insert-annotations-to-source";
-        if (!InferenceOptions.inPlace) {
-            final File outputDir = new File(InferenceOptions.afuOutputDir);
-            ensureDirectoryExists(outputDir);
-
-            String jaifFile = getJaifFilePath (outputDir);
 
-            List<String> options = new ArrayList<>();
-            options.add(insertAnnotationsScript);
-            options.add("-v");
-            options.add("--print-error-stack=true");
-            options.add("--outdir=" + outputDir.getAbsolutePath());
-            options.add(jaifFile);
+        if (InferenceOptions.insertionThreads != null) {
+            return insertJaifByPackage(insertAnnotationsScript);
+        }
 
-            Collections.addAll(options, InferenceOptions.javaFiles);
+        List<String> options = new ArrayList<>();
+        options.add(insertAnnotationsScript);
+        options.addAll(getInsertionArgs());
 
-            if (InferenceOptions.printCommands) {
-                outStream.println("Running Insert Annotations Command:");
-                outStream.println(SystemUtil.join(" ", options));
-            }
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running Insert Annotations Command:");
+            outStream.println(SystemUtil.join(" ", options));
+        }
 
+        int result;
+        List<String> outputJavaFiles;
+        if (!InferenceOptions.inPlace) {
             // this can get quite large for large projects and it is not advisable to run
             // roundtripping via the InferenceLauncher for these projects
             ByteArrayOutputStream insertOut = new ByteArrayOutputStream();
             result = ExecUtil.execute(options.toArray(new String[options.size()]), insertOut, errStream);
             outStream.println(insertOut.toString());
-
-
-            List<File> newJavaFiles = findWrittenFiles(insertOut.toString());
-            for (File newJavaFile : newJavaFiles) {
-                outputJavaFiles.add(newJavaFile.getAbsolutePath());
-            }
+            outputJavaFiles = getInsertedJavaFiles(insertOut.toString());
 
         } else {
-            String jaifFile = getJaifFilePath(new File("."));
+            result = ExecUtil.execute(options.toArray(new String[options.size()]), outStream, errStream);
+            outputJavaFiles = getInsertedJavaFiles(null);
+        }
 
-            String [] options = new String [4 + InferenceOptions.javaFiles.length];
-            options[0] = insertAnnotationsScript;
-            options[1] = "-v";
-            options[2] = "-i";
-            options[3] = jaifFile;
+        reportStatus("Insert annotations", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+        return outputJavaFiles;
+    }
 
-            System.arraycopy(InferenceOptions.javaFiles, 0, options, 4, InferenceOptions.javaFiles.length);
+    /**
+     * Inserts the Jaif with a {@link ParallelJaifInserter}, which runs one insert-annotations-to-source
+     * process per package, InferenceOptions.insertionThreads at a time. A failure in one package does
+     * not stop the insertion into other packages, but it is reported as a failure of this step.
+     * @return The list of source files that were passed as arguments to the AFU and were
+     * potentially altered.
+     */
+    protected List<String> insertJaifByPackage(String insertAnnotationsScript) {
+        List<String> afuOptions = getAfuOptions();
+        File jaifFile = new File(getInsertionJaifFilePath());
 
-            if (InferenceOptions.printCommands) {
-                outStream.println("Running Insert Annotations Command:");
-                outStream.println(SystemUtil.join(" ", options));
-            }
+        File splitJaifDir;
+        try {
+            splitJaifDir = Files.createTempDirectory("inference-jaifs").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create directory for the split jaifs", e);
+        }
 
-            result = ExecUtil.execute(options, outStream, errStream);
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running Insert Annotations Command per package:");
+            outStream.println(insertAnnotationsScript + " " + SystemUtil.join(" ", afuOptions)
+                    + " " + splitJaifDir.getAbsolutePath() + File.separator + "<package>.jaif <package files>");
+        }
+
+        ParallelJaifInserter inserter = new ParallelJaifInserter(insertAnnotationsScript, afuOptions,
+                splitJaifDir, InferenceOptions.insertionThreads, outStream);
+        List<PackageInsertion> insertions;
+        try {
+            insertions = inserter.insert(jaifFile, InferenceOptions.javaFiles);
+        } finally {
+            deleteSplitJaifs(splitJaifDir);
+        }
 
-            for (String filePath : InferenceOptions.javaFiles) {
-                outputJavaFiles.add(filePath);
+        int result = 0;
+        StringBuilder insertOut = new StringBuilder();
+        for (PackageInsertion insertion : insertions) {
+            insertOut.append(insertion.output);
+            if (insertion.failed()) {
+                result = insertion.returnCode;
+                errStream.println("Insertion failed for package " + insertion.packageName + ":");
+                errStream.println(insertion.output);
             }
         }
+        outStream.println(insertOut);
 
         reportStatus("Insert annotations", result, outStream);
         outStream.flush();
         exitOnNonZeroStatus(result);
+        return getInsertedJavaFiles(insertOut.toString());
+    }
+
+    /**
+     * Deletes the directory of the per-package JAIFs, which holds no subdirectories.
+     */
+    private void deleteSplitJaifs(File splitJaifDir) {
+        File[] files = splitJaifDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        if (!splitJaifDir.delete()) {
+            errStream.println("Could not delete " + splitJaifDir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return the arguments to insert-annotations-to-source, excluding the script itself
+     */
+    protected List<String> getInsertionArgs() {
+        List<String> options = getAfuOptions();
+        options.add(getInsertionJaifFilePath());
+        Collections.addAll(options, InferenceOptions.javaFiles);
+        return options;
+    }
+
+    /**
+     * @return the options to insert-annotations-to-source, excluding the jaif and the source files
+     */
+    protected List<String> getAfuOptions() {
+        List<String> options = new ArrayList<>();
+        options.add("-v");
+        if (!InferenceOptions.inPlace) {
+            final File outputDir = new File(InferenceOptions.afuOutputDir);
+            ensureDirectoryExists(outputDir);
+
+            options.add("--print-error-stack=true");
+            options.add("--outdir=" + outputDir.getAbsolutePath());
+        } else {
+            options.add("-i");
+        }
+        return options;
+    }
+
+    private static String getInsertionJaifFilePath() {
+        return getJaifFilePath(InferenceOptions.inPlace ? new File(".") : new File(InferenceOptions.afuOutputDir));
+    }
+
+    /**
+     * @param insertionOutput the output of the AFU, only used if the annotations were
+     *                        not inserted in place
+     * @return The list of source files that were passed as arguments to the AFU and were
+     * potentially altered.
+     */
+    private static List<String> getInsertedJavaFiles(String insertionOutput) {
+        List<String> outputJavaFiles = new ArrayList<>(InferenceOptions.javaFiles.length);
+        if (!InferenceOptions.inPlace) {
+            for (File newJavaFile : findWrittenFiles(insertionOutput)) {
+                outputJavaFiles.add(newJavaFile.getAbsolutePath());
+            }
+        } else {
+            Collections.addAll(outputJavaFiles, InferenceOptions.javaFiles);
+        }
         return outputJavaFiles;
     }
 
+    /**
+     * Runs inference and the final typecheck of ROUNDTRIP_TYPECHECK in this JVM rather
+     * than in one process per step, so the Checker Framework, the checker and the solver
+     * are loaded once. The annotations are still inserted by the AFU in a new process:
+     * the AFU ends with System.exit, which cannot be trapped without a security manager.
+     *
+     * The JVM running the launcher must be able to run javac: on Java 8, javac.jar has
+     * to be on its bootclasspath.
+     *
+     * @param typecheckInsertedFiles whether to typecheck the files with the inserted annotations
+     */
+    public void roundtripInProcess(boolean typecheckInsertedFiles) {
+        Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+        long start = System.currentTimeMillis();
+        inferInProcess();
+        phaseTimes.put("Inference", System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        List<String> updatedJavaFiles = insertJaif();
+        phaseTimes.put("Insert annotations", System.currentTimeMillis() - start);
+
+        if (typecheckInsertedFiles) {
+            start = System.currentTimeMillis();
+            typecheckInProcess(updatedJavaFiles.toArray(new String[updatedJavaFiles.size()]));
+            phaseTimes.put("Typechecking", System.currentTimeMillis() - start);
+        }
+
+        printStep("Phase times", outStream);
+        for (Map.Entry<String, Long> phaseTime : phaseTimes.entrySet()) {
+            outStream.println(phaseTime.getKey() + ": " + phaseTime.getValue() + " ms");
+        }
+        outStream.flush();
+    }
+
+    /**
+     * Runs InferenceMain in this JVM with the options in InferenceOptions.
+     */
+    protected void inferInProcess() {
+        printStep("Inferring", outStream);
+
+        List<String> javacOptions = new ArrayList<>(InferenceOptions.javacOptions);
+        removeXmArgs(javacOptions, 0, javacOptions.size());
+        String compilationBcp = getInferenceCompilationBootclassPath();
+        if (compilationBcp != null && !compilationBcp.isEmpty()) {
+            javacOptions.add(0, "-Xbootclasspath/p:" + compilationBcp);
+        }
+        // Only inference runs with these options; the typecheck step uses the original ones.
+        List<String> originalJavacOptions = InferenceOptions.javacOptions;
+        InferenceOptions.javacOptions = javacOptions;
+
+        boolean success;
+        try {
+            success = InferenceMain.resetInstance().runInference();
+        } finally {
+            InferenceMain.clearInstance();
+            InferenceOptions.javacOptions = originalJavacOptions;
+        }
+
+        int result = success ? 0 : 1;
+        reportStatus("Inference", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * Runs typechecking on the input set of files by invoking javac in this JVM.
+     * @param javaFiles Source files to typecheck, see {@link #typecheck(String[])}
+     */
+    protected void typecheckInProcess(String [] javaFiles) {
+        printStep("Typechecking", outStream);
+
+        List<String> options = new ArrayList<>(InferenceOptions.javacOptions.size() + javaFiles.length + 2);
+        options.add("-processor");
+        options.add(InferenceOptions.checker);
+        options.addAll(InferenceOptions.javacOptions);
+        if (InferenceOptions.cfArgs != null && !InferenceOptions.cfArgs.isEmpty()) {
+            options.addAll(Arrays.asList(InferenceOptions.cfArgs.split(" ")));
+        }
+        options.addAll(Arrays.asList(javaFiles));
+
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running typecheck:");
+            outStream.println(SystemUtil.join(" ", options));
+        }
+
+        boolean success = CheckerFrameworkUtil.invokeCheckerFramework(
+                options.toArray(new String[options.size()]), new PrintWriter(outStream, true));
+
+        int result = success ? 0 : 1;
+        reportStatus("Typechecking", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
     public static void ensureDirectoryExists(File path) {
         if (!path.exists()) {
             if (!path.mkdirs()) {
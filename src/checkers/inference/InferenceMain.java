@@ -2,7 +2,9 @@ package checkers.inference;
 
 import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
 
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.annotation.Annotation;
@@ -27,7 +29,9 @@ import checkers.inference.model.VariableSlot;
 import checkers.inference.qual.VarAnnot;
 import checkers.inference.util.InferenceUtil;
 import checkers.inference.util.JaifBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.SystemUtil;
+import org.checkerframework.javacutil.UserError;
 
 /**
  * InferenceMain is the central coordinator to the inference system.
@@ -105,6 +109,11 @@ public class InferenceMain {
 
     private ResultHandler resultHandler;
 
+    // Whether to terminate the JVM if the checker or solver cannot be instantiated.
+    private boolean exitOnInstantiationFailure = true;
+
+    private boolean instantiationFailed;
+
     public void setResultHandler(ResultHandler resultHandler) {
         this.resultHandler = resultHandler;
     }
@@ -129,16 +138,56 @@ public class InferenceMain {
         resultHandler = new DefaultResultHandler(logger);
     }
 
+    /**
+     * By default the JVM is terminated with exit code 5 if the checker or the solver cannot be
+     * instantiated. Long-running hosts such as {@link InferenceDaemon} turn this off, so that a
+     * {@link UserError} is thrown instead and {@link #hasInstantiationFailed()} is set.
+     */
+    public void setExitOnInstantiationFailure(boolean exitOnInstantiationFailure) {
+        this.exitOnInstantiationFailure = exitOnInstantiationFailure;
+    }
+
+    /**
+     * @return true if the checker or the solver could not be instantiated
+     */
+    public boolean hasInstantiationFailed() {
+        return instantiationFailed;
+    }
+
     public static InferenceMain resetInstance() {
         inferenceMainInstance = null;
         inferenceMainInstance = new InferenceMain();
         return inferenceMainInstance;
     }
 
+    /**
+     * Forget the current instance. Code that runs the real checker in the same JVM after
+     * inference must call this, because {@link #isHackMode()} and other code assume there
+     * is no instance during type checking.
+     */
+    public static void clearInstance() {
+        inferenceMainInstance = null;
+    }
+
     /**
      * Kick off the inference process.
      */
     public void run() {
+        if (!runInference()) {
+            logger.info("No solution, exiting...");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the inference process without terminating the JVM when the constraints have no
+     * solution. This lets long-running hosts such as {@link InferenceDaemon} serve more
+     * than one inference request.
+     *
+     * @return false if the solver found no solution, in which case no jaif is written
+     * @throws UserError if the jaif file cannot be written
+     */
+    public boolean runInference() {
         logger.finer("Starting InferenceMain");
 
         // Start up javac
@@ -147,10 +196,10 @@ public class InferenceMain {
         // solverResult = null covers case when debug solver is used, but in this case
         // shouldn't exit
         if (solverResult != null && !solverResult.hasSolution()) {
-            logger.info("No solution, exiting...");
-            System.exit(1);
+            return false;
         }
         writeJaif();
+        return true;
     }
 
     /**
@@ -216,10 +265,9 @@ public class InferenceMain {
      * The output file can be configured by the command-line argument jaiffile.
      */
     private void writeJaif() {
-        try (PrintWriter writer
-                = new PrintWriter(new FileOutputStream(InferenceOptions.jaifFile))) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(InferenceOptions.jaifFile))) {
 
-            List<Slot> varSlots = slotManager.getVariableSlots();
+            List<Slot> insertableSlots = slotManager.getInsertableSlots();
             Map<AnnotationLocation, String> values = new HashMap<>();
             Set<Class<? extends Annotation>> annotationClasses = new HashSet<>();
 
@@ -234,31 +282,41 @@ public class InferenceMain {
                     annotationClasses.add(annotation);
                 }
             }
-            for (Slot slot : varSlots) {
-                if (slot.getLocation() != null && slot.isInsertable()
-                 && (solverResult == null || solverResult.containsSolutionForVariable(slot.getId()))) {
+
+            if (solverResult != null) {
+                // Solutions are usually a handful of qualifiers shared by many slots, so render
+                // each of them only once. Solvers create equal qualifiers as distinct mirrors.
+                AnnotationMirror[] solutions = solverResult.getSolutionsById(slotManager.getNumberOfSlots());
+                Map<AnnotationMirror, String> renderedSolutions = AnnotationUtils.createAnnotationMap();
+                for (Slot slot : insertableSlots) {
                     // TODO: String serialization of annotations.
-                    if (solverResult != null) {
-                        // Not all VariableSlots will have an inferred value.
-                        // This happens for VariableSlots that have no constraints.
-                        AnnotationMirror result = solverResult.getSolutionForVariable(slot.getId());
-                        if (result != null) {
-                            values.put(slot.getLocation(), result.toString());
+                    // Not all VariableSlots will have an inferred value.
+                    // This happens for VariableSlots that have no constraints.
+                    AnnotationMirror result = slot.getId() < solutions.length ? solutions[slot.getId()] : null;
+                    if (result != null) {
+                        String value = renderedSolutions.get(result);
+                        if (value == null) {
+                            value = result.toString();
+                            renderedSolutions.put(result, value);
                         }
-                    } else {
-                        // Just use the VarAnnot in the jaif.
-                        String value = slotManager.getAnnotation(slot).toString();
                         values.put(slot.getLocation(), value);
                     }
                 }
+            } else {
+                for (Slot slot : insertableSlots) {
+                    // Just use the VarAnnot in the jaif.
+                    String value = slotManager.getAnnotation(slot).toString();
+                    values.put(slot.getLocation(), value);
+                }
             }
 
             JaifBuilder builder = new JaifBuilder(values, annotationClasses, realChecker.isInsertMainModOfLocalVar());
-            String jaif = builder.createJaif();
-            writer.println(jaif);
+            builder.writeJaif(writer);
+            writer.newLine();
 
-        } catch (Exception e) {
+        } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to write out jaif file!", e);
+            throw new UserError("Failed to write jaif file \"" + InferenceOptions.jaifFile + "\": " + e.getMessage());
         }
     }
 
@@ -308,7 +366,7 @@ public class InferenceMain {
                 logger.finer(String.format("Created real checker: %s", realChecker));
             } catch (Throwable e) {
               logger.log(Level.SEVERE, "Error instantiating checker class \"" + InferenceOptions.checker + "\".", e);
-              System.exit(5);
+              instantiationFailure("Error instantiating checker class \"" + InferenceOptions.checker + "\": " + e);
           }
         }
         return realChecker;
@@ -356,11 +414,19 @@ public class InferenceMain {
             return solver;
         } catch (Throwable e) {
             logger.log(Level.SEVERE, "Error instantiating solver class \"" + InferenceOptions.solver + "\".", e);
-            System.exit(5);
+            instantiationFailure("Error instantiating solver class \"" + InferenceOptions.solver + "\": " + e);
             return null; // Dead code
         }
     }
 
+    private void instantiationFailure(String message) {
+        instantiationFailed = true;
+        if (exitOnInstantiationFailure) {
+            System.exit(5);
+        }
+        throw new UserError(message);
+    }
+
     /**
      * Parse solver-args from a comma separated list of
      * key=value pairs into a Map.
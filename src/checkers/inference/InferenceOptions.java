@@ -7,8 +7,11 @@ import org.checkerframework.javacutil.SystemUtil;
 import interning.InterningChecker;
 
 import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -100,6 +103,18 @@ public class InferenceOptions {
     @Option("Additional AFU options")
     public static String afuOptions;
 
+    @Option("Insert annotations package by package, running at most this many insertions at the same time")
+    public static Integer insertionThreads;
+
+    @Option("Run inference and the typecheck of ROUNDTRIP and ROUNDTRIP_TYPECHECK in the launcher JVM instead of separate processes")
+    public static boolean inProcess;
+
+    // ------------------------------------------------------
+    @OptionGroup("Inference daemon")
+
+    @Option("Port of a running InferenceDaemon; if set, the INFER step is sent to the daemon instead of a new JVM")
+    public static Integer daemonPort;
+
     // ------------------------------------------------------
     @OptionGroup("Help")
 
@@ -133,6 +148,44 @@ public class InferenceOptions {
     public static File distDir = new File(checkersInferenceDir, "dist");
     public static File checkerJar = new File(distDir, "checker.jar");
 
+    /**
+     * The values of all command-line options before any arguments were parsed.
+     * See {@link #resetOptions()}.
+     */
+    private static final Map<Field, Object> optionDefaults = captureOptionDefaults();
+
+    private static Map<Field, Object> captureOptionDefaults() {
+        Map<Field, Object> defaults = new HashMap<>();
+        for (Field field : InferenceOptions.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Option.class) && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    defaults.put(field, field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * Restore every command-line option to its default value. {@link #init(String[], boolean)}
+     * only assigns the options that are present in its arguments, so a process that
+     * initializes the options more than once (e.g. {@link InferenceDaemon}) must call this
+     * first to avoid leaking options from a previous request.
+     */
+    public static void resetOptions() {
+        for (Map.Entry<Field, Object> entry : optionDefaults.entrySet()) {
+            try {
+                entry.getKey().set(null, entry.getValue());
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        javacOptions = null;
+        javaFiles = null;
+    }
+
     public static InitStatus init(String [] args, boolean requireMode) {
         List<String> errors = new ArrayList<>();
         Options options = new Options("inference [options]", InferenceOptions.class);
@@ -57,6 +57,36 @@ public interface InferenceResult {
      */
     AnnotationMirror getSolutionForVariable(int varId);
 
+    /**
+     * Gets inference solutions as an array indexed by variable ID, so that callers that
+     * look up the solution of every slot don't pay for a map lookup per slot.
+     *
+     * The default implementation copies {@link #getSolutions()} on every call; implementations
+     * should return an index they keep, as {@link DefaultInferenceResult} does. Callers must
+     * not modify the returned array.
+     *
+     * @param maxVarId the largest variable ID to include, usually
+     *                 {@link SlotManager#getNumberOfSlots()}
+     * @return an array of length {@code maxVarId + 1} whose element at index {@code varId} is
+     * the solution for {@code varId}, or null if there is none. Null if {@link #hasSolution()}
+     * is false.
+     *
+     * @see #getSolutions()
+     */
+    default AnnotationMirror[] getSolutionsById(int maxVarId) {
+        if (!hasSolution()) {
+            return null;
+        }
+        AnnotationMirror[] solutions = new AnnotationMirror[maxVarId + 1];
+        for (Map.Entry<Integer, AnnotationMirror> entry : getSolutions().entrySet()) {
+            int varId = entry.getKey();
+            if (varId >= 0 && varId <= maxVarId) {
+                solutions[varId] = entry.getValue();
+            }
+        }
+        return solutions;
+    }
+
     /**
      * Access method to get set of {@link Constraint}s that are not solvable together.
      *
@@ -219,5 +219,12 @@ public interface SlotManager {
      */
     List<Slot> getVariableSlots();
 
+    /**
+     * Return the VariableSlots that have a location and can be inserted into source code,
+     * in the order in which they were created.
+     * @return a list of insertable VariableSlots
+     */
+    List<Slot> getInsertableSlots();
+
     List<ConstantSlot> getConstantSlots();
 }
@@ -16,6 +16,7 @@ import checkers.inference.solver.backend.SolverFactory;
 import checkers.inference.solver.backend.maxsat.MaxSatSolver;
 import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.frontend.LatticeBuilder;
+import checkers.inference.solver.propagation.PropagationPreSolver;
 import checkers.inference.solver.strategy.PlainSolvingStrategy;
 import checkers.inference.solver.strategy.SolvingStrategy;
 import checkers.inference.solver.util.NameUtils;
@@ -41,6 +42,7 @@ public class SolverEngine implements InferenceSolver {
     protected boolean collectStatistics;
     protected boolean writeSolutions;
     protected boolean noAppend;
+    protected boolean preSolve;
     protected String strategyName;
     protected String solverName;
 
@@ -68,7 +70,29 @@ public class SolverEngine implements InferenceSolver {
         /**
          * whether to write statistics & solutions in append mode or not
          */
-        noAppend;
+        noAppend,
+
+        /**
+         * directory in which encodings of the lattice are cached across runs, not cached by default
+         */
+        latticeCacheDir,
+
+        /**
+         * whether to fix the slots whose values are forced by subtype and equality constraints
+         * before invoking the solving strategy, see {@link PropagationPreSolver}
+         */
+        preSolve,
+
+        /**
+         * directory in which results of solving components of constraints are cached across runs,
+         * not cached by default, see {@link checkers.inference.solver.util.ComponentSolutionCache}
+         */
+        solutionCacheDir,
+
+        /**
+         * size limit of the solution cache directory in megabytes, 64 by default
+         */
+        solutionCacheSize;
     }
 
     private final String BACKEND_PACKAGE_PATH = SolverFactory.class.getPackage().getName();
@@ -114,7 +138,12 @@ public class SolverEngine implements InferenceSolver {
         //TODO: Add solve timing statistic.
         Lattice lattice = new LatticeBuilder().buildLattice(qualHierarchy, slots);
         SolvingStrategy solvingStrategy = createSolvingStrategy();
-        InferenceResult inferenceResult = solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        InferenceResult inferenceResult;
+        if (preSolve) {
+            inferenceResult = preSolveAndSolve(solvingStrategy, solverEnvironment, slots, constraints, lattice);
+        } else {
+            inferenceResult = solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        }
 
         if (inferenceResult == null) {
             throw new BugInCF("InferenceResult should never be null, but null result detected!");
@@ -143,6 +172,37 @@ public class SolverEngine implements InferenceSolver {
         return inferenceResult;
     }
 
+    /**
+     * Fixes the forced slots with a {@link PropagationPreSolver}, solves the remaining constraints
+     * with the given strategy and merges the forced values into its result.
+     *
+     * If the remaining constraints are not solvable, the original constraints are solved again,
+     * so that the unsatisfiable constraints are explained in terms of the original constraints.
+     */
+    private InferenceResult preSolveAndSolve(SolvingStrategy solvingStrategy, SolverEnvironment solverEnvironment,
+                                             Collection<Slot> slots, Collection<Constraint> constraints,
+                                             Lattice lattice) {
+        final long preSolvingStart = System.currentTimeMillis();
+        PropagationPreSolver preSolver = new PropagationPreSolver(constraints, lattice);
+        final long preSolvingEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry("pre_solving_time(ms)", preSolvingEnd - preSolvingStart);
+        Statistics.addOrIncrementEntry("pre_solving_forced_slots", preSolver.getForcedValues().size());
+        Statistics.addOrIncrementEntry("pre_solving_removed_constraints", preSolver.getRemovedConstraintCount());
+        Statistics.addOrIncrementEntry("pre_solving_unit_constraints", preSolver.getUnitConstraintCount());
+
+        if (preSolver.getForcedValues().isEmpty()) {
+            return solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        }
+
+        InferenceResult result = solvingStrategy.solve(solverEnvironment, slots,
+                preSolver.getRemainingConstraints(), lattice);
+        if (!result.hasSolution()) {
+            return solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        }
+        return preSolver.mergeResult(result);
+    }
+
     /**
      * This method configures following arguments: solving strategy, and collectStatistics.
      *
@@ -162,6 +222,7 @@ public class SolverEngine implements InferenceSolver {
         this.collectStatistics = solverEnvironment.getBoolArg(SolverEngineArg.collectStatistics);
         this.writeSolutions = solverEnvironment.getBoolArg(SolverEngineArg.writeSolutions);
         this.noAppend = solverEnvironment.getBoolArg(SolverEngineArg.noAppend);
+        this.preSolve = solverEnvironment.getBoolArg(SolverEngineArg.preSolve);
 
         // Sanitize the configuration if it needs.
         sanitizeSolverEngineArgs();
@@ -99,6 +99,14 @@ public abstract class Solver<T extends FormatTranslator<?, ?, ?>> {
      */
     public abstract Collection<Constraint> explainUnsatisfiable();
 
+    /**
+     * Frees what a solver keeps after {@link #solve()} found no solution, so that
+     * {@link #explainUnsatisfiable()} can reuse it. Called once the caller is done with this
+     * solver. Solvers that keep nothing need not override it.
+     */
+    public void release() {
+    }
+
     /**
      * Calls formatTranslator to convert constraints into the corresponding encoding
      * form. See {@link checkers.inference.solver.backend.maxsat.MaxSatSolver#encodeAllConstraints()}} for an example.
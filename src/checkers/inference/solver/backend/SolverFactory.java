@@ -31,4 +31,15 @@ public interface SolverFactory {
 
     Solver<?> createSolver(SolverEnvironment solverOptions,
             Collection<Slot> slots, Collection<Constraint> constraints, Lattice lattice);
+
+    /**
+     * Whether the created solvers prefer some qualifiers of variable slots over others on their
+     * own, beyond the preference constraints. A solution found without such a solver, like the
+     * least solution of a trivial component, may then differ from the one it would find.
+     *
+     * @param solverOptions the arguments the solvers are created with
+     */
+    default boolean hasSlotPreferences(SolverEnvironment solverOptions) {
+        return false;
+    }
 }
@@ -0,0 +1,209 @@
+package checkers.inference.solver.backend.externalmaxsat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.UserError;
+
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.maxsat.MaxSatFormatTranslator;
+import checkers.inference.solver.backend.maxsat.MaxSatSolver;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.ExternalSolverUtils;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * ExternalMaxSatSolver encodes the constraints like {@link MaxSatSolver}, but solves the clauses
+ * with an external MaxSAT or SAT solver binary given by the solver argument
+ * {@link ExternalMaxSatSolverArg#externalSolverCommand}.
+ *
+ * The clauses are written to the stdin of the solver in DIMACS WCNF format, or in DIMACS CNF
+ * format for SAT solvers. The result is read from the standard "s" and "v" lines of the solver
+ * output; "v" lines may either list literals or, as in recent MaxSAT evaluations, hold one
+ * 0/1 character per variable. A single token of 0/1 characters is read as such a bit string
+ * only if it cannot be a literal: it has a leading zero or is larger than the number of
+ * variables.
+ */
+public class ExternalMaxSatSolver extends MaxSatSolver {
+
+    public enum ExternalMaxSatSolverArg implements SolverArg {
+        /**
+         * The command that runs the external solver on the clauses given on its stdin,
+         * with the arguments separated by spaces.
+         */
+        externalSolverCommand,
+
+        /**
+         * The input format of the external solver: wcnf (default) for MaxSAT solvers, or cnf
+         * for SAT solvers, which ignores the soft clauses.
+         */
+        externalSolverFormat,
+
+        /**
+         * The number of seconds after which the external solver is killed. No timeout by default.
+         */
+        externalSolverTimeout
+    }
+
+    private enum SolverStatus {
+        SATISFIABLE,
+        UNSATISFIABLE,
+        UNKNOWN
+    }
+
+    private long serializationStart;
+    private long serializationEnd;
+
+    public ExternalMaxSatSolver(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+            Collection<Constraint> constraints, MaxSatFormatTranslator formatTranslator,
+            Lattice lattice) {
+        super(solverEnvironment, slots, constraints, formatTranslator, lattice);
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        String command = solverEnvironment.getArg(ExternalMaxSatSolverArg.externalSolverCommand);
+        if (command == null || command.trim().isEmpty()) {
+            throw new UserError("The ExternalMaxSat solver requires the solver argument "
+                    + ExternalMaxSatSolverArg.externalSolverCommand + ".");
+        }
+        final boolean weighted = !"cnf".equalsIgnoreCase(
+                solverEnvironment.getArg(ExternalMaxSatSolverArg.externalSolverFormat));
+        String timeout = solverEnvironment.getArg(ExternalMaxSatSolverArg.externalSolverTimeout);
+        long timeoutMillis = 0;
+        if (timeout != null) {
+            try {
+                timeoutMillis = Long.parseLong(timeout.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                throw new UserError("The solver argument " + ExternalMaxSatSolverArg.externalSolverTimeout
+                        + " must be a number of seconds, but is \"" + timeout + "\".");
+            }
+        }
+
+        this.serializationStart = System.currentTimeMillis();
+        encodeAllConstraints();
+        encodeWellFormednessRestriction();
+        this.serializationEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry("cnf_clause_size",
+                hardClauses.size() + (weighted ? softClauses.size() : 0));
+        countVariables();
+
+        final List<Integer> literals = new ArrayList<>();
+        final SolverStatus[] status = { SolverStatus.UNKNOWN };
+        final int numVariables = slotManager.getNumberOfSlots() * lattice.numTypes;
+
+        this.solvingStart = System.currentTimeMillis();
+        int exitStatus = ExternalSolverUtils.runExternalSolver(command.trim().split("\\s+"),
+                stdIn -> {
+                    try {
+                        if (weighted) {
+                            writeWCNF(stdIn);
+                        } else {
+                            writeCNF(stdIn);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                stdOut -> status[0] = parseStdOut(stdOut, numVariables, literals),
+                stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr),
+                timeoutMillis);
+        this.solvingEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry("sat_serialization_time(ms)", serializationEnd - serializationStart);
+        Statistics.addOrIncrementEntry("sat_solving_time(ms)", solvingEnd - solvingStart);
+
+        switch (status[0]) {
+            case SATISFIABLE:
+                cleanUpClauses();
+                return decode(literals.stream().mapToInt(Integer::intValue).toArray());
+
+            case UNSATISFIABLE:
+                System.out.println("Not solvable!");
+                // explainUnsatisfiable() finds the unsatisfiable constraints with Sat4j
+                return null;
+
+            case UNKNOWN:
+            default:
+                throw new UserError("External solver \"" + command + "\" did not find a solution"
+                        + (exitStatus == ExternalSolverUtils.TIMEOUT_EXIT_STATUS
+                                ? " within " + timeout + " seconds." : ", exit status " + exitStatus + "."));
+        }
+    }
+
+    /**
+     * Reads the status and the model from the output of the external solver.
+     *
+     * @param numVariables the number of variables of the clauses
+     * @param literals the list the literals of the model are added to
+     * @return the status reported by the solver
+     */
+    private static SolverStatus parseStdOut(BufferedReader stdOut, int numVariables, List<Integer> literals) {
+        SolverStatus status = SolverStatus.UNKNOWN;
+        String line;
+
+        try {
+            while ((line = stdOut.readLine()) != null) {
+                if (line.startsWith("s ")) {
+                    String result = line.substring(2).trim();
+                    if (result.equals("OPTIMUM FOUND") || result.equals("SATISFIABLE")) {
+                        status = SolverStatus.SATISFIABLE;
+                    } else if (result.equals("UNSATISFIABLE")) {
+                        status = SolverStatus.UNSATISFIABLE;
+                    }
+                } else if (line.startsWith("v ")) {
+                    parseValueLine(line.substring(2), numVariables, literals);
+                }
+            }
+        } catch (NumberFormatException | IOException e) {
+            e.printStackTrace();
+        }
+
+        return status;
+    }
+
+    private static void parseValueLine(String values, int numVariables, List<Integer> literals) {
+        StringTokenizer tokens = new StringTokenizer(values);
+        if (tokens.countTokens() == 1) {
+            String token = values.trim();
+            if (token.matches("[01]+") && !isLiteral(token, numVariables)) {
+                // One character per variable, starting at variable 1
+                for (int i = 0; i < token.length(); i++) {
+                    literals.add(token.charAt(i) == '1' ? i + 1 : -(i + 1));
+                }
+                return;
+            }
+        }
+
+        while (tokens.hasMoreTokens()) {
+            int literal = Integer.parseInt(tokens.nextToken());
+            if (literal != 0) {
+                literals.add(literal);
+            }
+        }
+    }
+
+    /**
+     * @return whether the given token of 0/1 characters can be a literal of the given number of
+     * variables, including the 0 that ends a list of literals
+     */
+    private static boolean isLiteral(String token, int numVariables) {
+        if (token.length() > 1 && token.charAt(0) == '0') {
+            return false;
+        }
+        // Longer tokens exceed any number of variables that fits in an int.
+        return token.length() <= 10 && Long.parseLong(token) <= numVariables;
+    }
+}
@@ -2,12 +2,14 @@ package checkers.inference.solver.backend.lingeling;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringTokenizer;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.nio.file.Paths;
 
@@ -28,6 +30,10 @@ import checkers.inference.solver.util.Statistics;
  * LingelingSolver is also a MaxSatSolver but it calls Lingeling SAT solver to solve the clauses. It
  * doesn't support soft constraint.
  *
+ * The clauses are streamed to the stdin of the Lingeling process and the model is read from its
+ * stdout, so no CNF file is written unless the outputCNF solver argument is given. Every solver
+ * instance runs its own process, so solvers of different components can run in parallel.
+ *
  * @author jianchu
  *
  */
@@ -44,6 +50,7 @@ public class LingelingSolver extends MaxSatSolver {
     // the integers from 1 to the largest one. Some of them may be not in the
     // clauses.
     private Set<Integer> variableSet = new HashSet<Integer>();
+    // numbers the CNF files written for debugging with the outputCNF solver argument
     private static AtomicInteger nth = new AtomicInteger(0);
     private long serializationStart;
     private long serializationEnd;
@@ -63,14 +70,15 @@ public class LingelingSolver extends MaxSatSolver {
         encodeWellFormednessRestriction();
         this.serializationEnd = System.currentTimeMillis();
 
-        buildCNFInput();
         collectVals();
         recordData();
-        int localNth = nth.incrementAndGet();
-        writeCNFInput("cnfdata" + localNth + ".txt");
+        if (shouldOutputCNF()) {
+            buildCNFInput();
+            writeCNFInput("cnfdata" + nth.incrementAndGet() + ".txt");
+        }
 
         this.solvingStart = System.currentTimeMillis();
-        int[] resultArray = getSolverOutput(localNth);
+        int[] resultArray = getSolverOutput();
         // TODO What's the value of resultArray if there is no solution? Need to adapt this to
         // changes in the PR: https://github.com/opprop/checker-framework-inference/pull/128
         // , i.e. set solutions to null if there is no solution
@@ -87,17 +95,24 @@ public class LingelingSolver extends MaxSatSolver {
     }
 
     /**
-     * Create Lingeling process, and read output and error.
+     * Create Lingeling process, write the clauses to its input, and read output and error.
      *
-     * @param localNth
      * @return and int array, which stores truth assignment for CNF predicate.
      */
-    private int[] getSolverOutput(int localNth) {
-        String[] command = { lingeling,
-                CNFData.getAbsolutePath() + "/cnfdata" + localNth + ".txt" };
+    private int[] getSolverOutput() {
+        // Without a file argument, Lingeling reads the CNF from stdin
+        String[] command = { lingeling };
 
         final List<Integer> resultList = new ArrayList<Integer>();
-        ExternalSolverUtils.runExternalSolver(command, stdOut -> parseStdOut(stdOut, resultList),
+        ExternalSolverUtils.runExternalSolver(command,
+                stdIn -> {
+                    try {
+                        writeCNF(stdIn);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                stdOut -> parseStdOut(stdOut, resultList),
                 stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
 
         // Java 8 style of List<Integer> to int[] conversion
@@ -109,14 +124,12 @@ public class LingelingSolver extends MaxSatSolver {
 
         try {
             while ((line = stdOut.readLine()) != null) {
-                if (line.charAt(0) == 'v') {
-                    for (String retval : line.split(" ")) {
-                        if (!retval.equals("") && !retval.equals(" ") && !retval.equals("\n")
-                                && !retval.equals("v")) {
-                            int val = Integer.parseInt(retval);
-                            if (variableSet.contains(Math.abs(val))) {
-                                resultList.add(val);
-                            }
+                if (!line.isEmpty() && line.charAt(0) == 'v') {
+                    StringTokenizer values = new StringTokenizer(line.substring(1));
+                    while (values.hasMoreTokens()) {
+                        int val = Integer.parseInt(values.nextToken());
+                        if (variableSet.contains(Math.abs(val))) {
+                            resultList.add(val);
                         }
                     }
                 }
@@ -133,20 +146,13 @@ public class LingelingSolver extends MaxSatSolver {
      */
     private void collectVals() {
         for (VecInt clause : this.hardClauses) {
-            int[] clauseArray = clause.toArray();
-            for (int i = 0; i < clauseArray.length; i++) {
-                variableSet.add(Math.abs(clauseArray[i]));
+            // like writeCNF, only the first size() entries of the backing array belong to the clause
+            for (int i = 0; i < clause.size(); i++) {
+                variableSet.add(Math.abs(clause.get(i)));
             }
         }
     }
 
-    @Override
-    protected boolean shouldOutputCNF() {
-        // We need the CNF output to pass to Lingeling
-        // and so we unconditionally signal we want CNF output.
-        return true;
-    }
-
     private void recordData() {
         int totalClauses = hardClauses.size() + softClauses.size();
         int totalVariable = variableSet.size();
@@ -6,7 +6,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,9 +18,9 @@ import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.util.NameUtils;
 
 /**
- * DecodingTool decodes the result from LogicBlox, change the form to human
- * readable form and put the result to HashMap result and return it to
- * LogicSolver.
+ * DecodingTool decodes the result from LogicBlox or from the embedded Datalog
+ * engine, change the form to human readable form and put the result to HashMap
+ * result and return it to LogicSolver.
  *
  * @author Jianchu Li
  *
@@ -48,6 +50,21 @@ public class DecodingTool {
         return result;
     }
 
+    /**
+     * decodeResult decodes the tuples (variable, annotation name) of the predicate
+     * orderedAnnotationOf computed by the embedded Datalog engine.
+     */
+    public Map<Integer, AnnotationMirror> decodeResult(Collection<List<Object>> orderedAnnotations) {
+        setDefault();
+        Map<String, AnnotationMirror> nameMap = mapStringToAnnoMirror();
+        for (List<Object> orderedAnnotation : orderedAnnotations) {
+            int slotID = (Integer) orderedAnnotation.get(0);
+            AnnotationMirror annotation = nameMap.get((String) orderedAnnotation.get(1));
+            result.put(slotID, annotation);
+        }
+        return result;
+    }
+
     /**
      * DecodeLogicBloxOutput decodes the LogicBloxOutput, and put it in HashMap
      * result.
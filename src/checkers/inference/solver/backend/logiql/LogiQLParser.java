@@ -0,0 +1,345 @@
+package checkers.inference.solver.backend.logiql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.solver.backend.logiql.datalog.Atom;
+import checkers.inference.solver.backend.logiql.datalog.DatalogProgram;
+import checkers.inference.solver.backend.logiql.datalog.Rule;
+
+/**
+ * LogiQLParser reads the subset of LogiQL that is generated by {@link LogiQLPredicateGenerator}
+ * and {@link LogiQLFormatTranslator} into a {@link DatalogProgram}:
+ * <ul>
+ *     <li>Declarations {@code ... -> ...}. They are not checked; they only mark predicates
+ *     declared as {@code p[x] = y} as functional, and predicates declared as {@code p(e:n)} as
+ *     reference modes.</li>
+ *     <li>Rules {@code head <- body}, with an optional {@code seq<<i = v>>} aggregation
+ *     in front of the body.</li>
+ *     <li>Delta facts {@code +p(...), +q[...] = ...}.</li>
+ * </ul>
+ *
+ * An entity is represented by the value of its reference mode: the entity {@code v} of the
+ * facts {@code +variable(v), +hasvariableName[v] = 3} is the integer 3. So, as in LogicBlox,
+ * facts that create entities with the same reference mode value refer to the same entity.
+ */
+public class LogiQLParser {
+
+    private final DatalogProgram program;
+
+    private final Set<String> refModePredicates;
+
+    public LogiQLParser() {
+        this.program = new DatalogProgram();
+        this.refModePredicates = new HashSet<>();
+    }
+
+    /**
+     * Creates a parser that continues with a copy of the program and declarations read by
+     * the given parser, so that the predicates of a lattice are parsed only once.
+     */
+    public LogiQLParser(LogiQLParser parser) {
+        this.program = new DatalogProgram(parser.program);
+        this.refModePredicates = new HashSet<>(parser.refModePredicates);
+    }
+
+    public DatalogProgram getProgram() {
+        return program;
+    }
+
+    /**
+     * Adds the declarations, rules and facts of the given LogiQL text to the program.
+     * The declarations are read first, so they may follow the uses of their predicates.
+     */
+    public void parse(String logiQL) {
+        List<List<String>> statements = splitStatements(tokenize(logiQL));
+        List<List<String>> others = new ArrayList<>();
+        for (List<String> statement : statements) {
+            if (statement.contains("->")) {
+                parseDeclaration(statement);
+            } else {
+                others.add(statement);
+            }
+        }
+
+        for (List<String> statement : others) {
+            if (statement.contains("<-")) {
+                parseRule(statement);
+            } else if (statement.get(0).equals("+")) {
+                parseFacts(statement);
+            } else {
+                throw new BugInCF("Unsupported LogiQL statement: " + String.join(" ", statement));
+            }
+        }
+    }
+
+    private void parseDeclaration(List<String> statement) {
+        TokenStream tokens = new TokenStream(statement.subList(0, statement.indexOf("->")));
+        while (tokens.hasNext()) {
+            ParsedAtom atom = parseAtom(tokens);
+            if (atom.functional) {
+                program.declareFunctional(atom.predicate);
+            } else if (atom.refMode) {
+                refModePredicates.add(atom.predicate);
+            }
+            tokens.acceptIf(",");
+        }
+    }
+
+    private void parseRule(List<String> statement) {
+        int arrow = statement.indexOf("<-");
+        Map<String, Integer> variables = new HashMap<>();
+
+        TokenStream bodyTokens = new TokenStream(statement.subList(arrow + 1, statement.size()));
+        int seqIndexVariable = -1;
+        int seqValueVariable = -1;
+        if (bodyTokens.acceptIf("seq")) {
+            bodyTokens.expect("<<");
+            seqIndexVariable = variableIndex(bodyTokens.next(), variables);
+            bodyTokens.expect("=");
+            seqValueVariable = variableIndex(bodyTokens.next(), variables);
+            bodyTokens.expect(">>");
+        }
+        List<Atom> body = new ArrayList<>();
+        while (bodyTokens.hasNext()) {
+            body.add(parseAtom(bodyTokens).toAtom(variables));
+            bodyTokens.acceptIf(",");
+        }
+
+        TokenStream headTokens = new TokenStream(statement.subList(0, arrow));
+        List<Atom> heads = new ArrayList<>();
+        while (headTokens.hasNext()) {
+            heads.add(parseAtom(headTokens).toAtom(variables));
+            headTokens.acceptIf(",");
+        }
+
+        for (Atom head : heads) {
+            program.addRule(new Rule(head, body, variables.size(), seqIndexVariable, seqValueVariable));
+        }
+    }
+
+    private void parseFacts(List<String> statement) {
+        TokenStream tokens = new TokenStream(statement);
+        List<ParsedAtom> atoms = new ArrayList<>();
+        while (tokens.hasNext()) {
+            tokens.expect("+");
+            atoms.add(parseAtom(tokens));
+            tokens.acceptIf(",");
+        }
+
+        // Resolve the entities of the statement to the values of their reference modes.
+        Map<String, Object> entities = new HashMap<>();
+        for (ParsedAtom atom : atoms) {
+            if (refModePredicates.contains(atom.predicate) && atom.terms.size() == 2) {
+                entities.put(atom.terms.get(0), parseConstant(atom.terms.get(1)));
+            }
+        }
+
+        for (ParsedAtom atom : atoms) {
+            Object[] tuple = new Object[atom.terms.size()];
+            for (int i = 0; i < tuple.length; i++) {
+                String term = atom.terms.get(i);
+                if (isIdentifier(term)) {
+                    tuple[i] = entities.get(term);
+                    if (tuple[i] == null) {
+                        throw new BugInCF("Entity " + term + " has no reference mode in: "
+                                + String.join(" ", statement));
+                    }
+                } else {
+                    tuple[i] = parseConstant(term);
+                }
+            }
+            program.addFact(atom.predicate, Arrays.asList(tuple));
+        }
+    }
+
+    /**
+     * Parses {@code p(t, ...)}, {@code p(e:n)} or {@code p[t, ...] = t}.
+     */
+    private static ParsedAtom parseAtom(TokenStream tokens) {
+        ParsedAtom atom = new ParsedAtom(tokens.next());
+        if (tokens.acceptIf("[")) {
+            atom.functional = true;
+            parseTerms(tokens, atom, "]");
+            tokens.expect("=");
+            atom.terms.add(tokens.next());
+        } else {
+            tokens.expect("(");
+            parseTerms(tokens, atom, ")");
+        }
+        return atom;
+    }
+
+    private static void parseTerms(TokenStream tokens, ParsedAtom atom, String closing) {
+        while (!tokens.acceptIf(closing)) {
+            atom.terms.add(tokens.next());
+            if (tokens.acceptIf(":")) {
+                atom.refMode = true;
+            } else {
+                tokens.acceptIf(",");
+            }
+        }
+    }
+
+    private static int variableIndex(String name, Map<String, Integer> variables) {
+        if (!isIdentifier(name)) {
+            throw new BugInCF("Expected a variable but found " + name);
+        }
+        if (name.equals("_")) {
+            // Every occurrence of the anonymous variable is a variable of its own.
+            int index = variables.size();
+            variables.put("_" + index, index);
+            return index;
+        }
+        Integer index = variables.get(name);
+        if (index == null) {
+            index = variables.size();
+            variables.put(name, index);
+        }
+        return index;
+    }
+
+    private static boolean isIdentifier(String token) {
+        char first = token.charAt(0);
+        return (Character.isLetter(first) || first == '_') && !token.equals("true") && !token.equals("false");
+    }
+
+    private static Object parseConstant(String token) {
+        if (token.startsWith("\"")) {
+            return token.substring(1, token.length() - 1);
+        } else if (token.equals("true") || token.equals("false")) {
+            return Boolean.valueOf(token);
+        }
+        try {
+            return Integer.valueOf(token);
+        } catch (NumberFormatException e) {
+            throw new BugInCF("Unsupported LogiQL constant: " + token, e);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (text.startsWith("//", i)) {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '"') {
+                StringBuilder string = new StringBuilder("\"");
+                i++;
+                while (i < text.length() && text.charAt(i) != '"') {
+                    if (text.charAt(i) == '\\' && i + 1 < text.length()) {
+                        i++;
+                    }
+                    string.append(text.charAt(i++));
+                }
+                tokens.add(string.append('"').toString());
+                i++;
+            } else if (Character.isLetterOrDigit(c) || c == '_'
+                    || (c == '-' && i + 1 < text.length() && Character.isDigit(text.charAt(i + 1)))) {
+                int start = i++;
+                while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i));
+            } else if (text.startsWith("<-", i) || text.startsWith("->", i)
+                    || text.startsWith("<<", i) || text.startsWith(">>", i)) {
+                tokens.add(text.substring(i, i + 2));
+                i += 2;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static List<List<String>> splitStatements(List<String> tokens) {
+        List<List<String>> statements = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i).equals(".")) {
+                if (i > start) {
+                    statements.add(tokens.subList(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        if (start < tokens.size()) {
+            throw new BugInCF("LogiQL statement is not terminated: " + String.join(" ", tokens.subList(start, tokens.size())));
+        }
+        return statements;
+    }
+
+    private static class ParsedAtom {
+        final String predicate;
+        final List<String> terms = new ArrayList<>();
+        boolean functional = false;
+        boolean refMode = false;
+
+        ParsedAtom(String predicate) {
+            this.predicate = predicate;
+        }
+
+        Atom toAtom(Map<String, Integer> variables) {
+            int[] variableIndexes = new int[terms.size()];
+            Object[] constants = new Object[terms.size()];
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                if (isIdentifier(term)) {
+                    variableIndexes[i] = variableIndex(term, variables);
+                } else {
+                    variableIndexes[i] = -1;
+                    constants[i] = parseConstant(term);
+                }
+            }
+            return new Atom(predicate, variableIndexes, constants);
+        }
+    }
+
+    private static class TokenStream {
+        private final List<String> tokens;
+        private int position = 0;
+
+        TokenStream(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean hasNext() {
+            return position < tokens.size();
+        }
+
+        String next() {
+            if (!hasNext()) {
+                throw new BugInCF("Unexpected end of LogiQL statement: " + String.join(" ", tokens));
+            }
+            return tokens.get(position++);
+        }
+
+        boolean acceptIf(String token) {
+            if (hasNext() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String token) {
+            if (!acceptIf(token)) {
+                throw new BugInCF("Expected " + token + " at token " + position + " of LogiQL statement: "
+                        + String.join(" ", tokens));
+            }
+        }
+    }
+}
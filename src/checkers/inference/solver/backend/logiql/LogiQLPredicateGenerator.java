@@ -12,8 +12,9 @@ import checkers.inference.solver.util.Statistics;
 
 /**
  * LogiqlConstraintGenerator take QualifierHierarchy of current type system as
- * input, and generate the logiql encoding of all constraint, and write the
- * result in a .logic file.
+ * input, and generate the logiql encoding of all constraint. The encoding is
+ * either written to a .logic file for LogicBlox, or evaluated by the embedded
+ * {@link checkers.inference.solver.backend.logiql.datalog.DatalogProgram}.
  *
  * @author Jianchu Li
  *
@@ -32,16 +33,33 @@ public class LogiQLPredicateGenerator {
     }
 
     public void GenerateLogiqlEncoding() {
-        allEncodings.append(getBasicEncoding());
-        allEncodings.append(getEqualityConstraintEncoding());
-        allEncodings.append(getInequalityConstraintEncoding());
-        allEncodings.append(getSubTypeConstraintEncoding());
-        allEncodings.append(getComparableConstraintEncoding());
+        writeFile(getLogiqlEncoding());
+    }
 
-        // System.out.println(allEncodings.toString());
+    /**
+     * @return the logiql encoding of all constraints, without writing it to a file
+     */
+    public String getLogiqlEncoding() {
+        if (allEncodings.length() == 0) {
+            allEncodings.append(getBasicEncoding());
+            allEncodings.append(getEqualityConstraintEncoding());
+            allEncodings.append(getInequalityConstraintEncoding());
+            allEncodings.append(getSubTypeConstraintEncoding());
+            allEncodings.append(getComparableConstraintEncoding());
 
-        writeFile(allEncodings.toString());
+            Statistics.addOrIncrementEntry("logiql_predicate_size", countLines(allEncodings));
+        }
+        return allEncodings.toString();
+    }
 
+    static int countLines(CharSequence text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
     }
 
 
@@ -172,9 +190,7 @@ public class LogiQLPredicateGenerator {
      *
      *
      */
-    private void writeFile(String output) {
-        String[] lines = output.split("\r\n|\r|\n");
-        Statistics.addOrIncrementEntry("logiql_predicate_size", lines.length);
+    void writeFile(String output) {
         try {
             String writePath = path + "/logiqlEncoding" + nth + ".logic";
             PrintWriter pw = new PrintWriter(writePath);
@@ -2,33 +2,56 @@ package checkers.inference.solver.backend.logiql;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import javax.lang.model.element.AnnotationMirror;
 
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
+import checkers.inference.solver.SolverEngine.SolverEngineArg;
 import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.logiql.datalog.DatalogProgram;
 import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.frontend.LatticeDiskCache;
 import checkers.inference.solver.util.NameUtils;
+import checkers.inference.solver.util.SolverArg;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 
 /**
  * LogiQLSolver first creates LogiQL predicates text, then calls format translator
  * converts constraint into LogiQL data. With both predicate and data created,
- * it calls LogicBloxRunner that runs logicblox to solve the LogiQL, and reads
- * the output. Finally the output will be sent to DecodingTool and get decoded.
+ * it evaluates them with the embedded Datalog engine {@link DatalogProgram}, or,
+ * if {@link LogiQLSolverArg#useLogicBlox} is set, calls LogicBloxRunner that runs
+ * logicblox to solve the LogiQL, and reads the output. Finally the output will be
+ * sent to DecodingTool and get decoded.
  *
  * @author jianchu
  *
  */
 public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
 
+    public enum LogiQLSolverArg implements SolverArg {
+        /**
+         * Solve with an installed LogicBlox instead of the embedded Datalog engine.
+         */
+        useLogicBlox
+    }
+
+    public static final Logger logger = Logger.getLogger(LogiQLSolver.class.getName());
+
+    private static final String ENCODING_ARTIFACT = LogiQLPredicateGenerator.class.getName() + ".encoding";
+
+    private static final String PARSED_ENCODING_ARTIFACT = LogiQLParser.class.getName() + ".encoding";
+
     private final StringBuilder logiQLText = new StringBuilder();
     private final File logiqldata = new File(new File("").getAbsolutePath() + "/logiqldata");
     private static AtomicInteger nth = new AtomicInteger(0);
@@ -36,51 +59,109 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
     private long serializationEnd;
     private long solvingStart;
     private long solvingEnd;
+
+    /**
+     * The variables that got two values of a functional predicate in the last evaluation.
+     */
+    private final Set<Integer> conflictingVariables = new HashSet<>();
+
     public LogiQLSolver(SolverEnvironment solverEnvironment, Collection<Slot> slots,
             Collection<Constraint> constraints, LogiQLFormatTranslator formatTranslator, Lattice lattice) {
         super(solverEnvironment, slots, constraints, formatTranslator,
                 lattice);
-        logiqldata.mkdir();
     }
 
     @Override
     public Map<Integer, AnnotationMirror> solve() {
         int localNth = nth.incrementAndGet();
-        String logiqldataPath = logiqldata.getAbsolutePath();
         Map<Integer, AnnotationMirror> result = new HashMap<>();
         /**
          * creating a instance of LogiqlConstraintGenerator and running
          * GenerateLogiqlEncoding method, in order to generate the logiql fixed
          * encoding part of current type system.
          */
+        String logiqldataPath = logiqldata.getAbsolutePath();
         LogiQLPredicateGenerator constraintGenerator = new LogiQLPredicateGenerator(logiqldataPath,
                 lattice, localNth);
-        constraintGenerator.GenerateLogiqlEncoding();
+        // The encoding only depends on the lattice, so it is shared by all solvers of the lattice.
+        String cacheDir = solverEnvironment.getArg(SolverEngineArg.latticeCacheDir);
+        String encoding = lattice.getArtifact(ENCODING_ARTIFACT, l -> LatticeDiskCache.getText(
+                l, "logiql", cacheDir, constraintGenerator::getLogiqlEncoding));
         this.serializationStart = System.currentTimeMillis();
         this.encodeAllConstraints();
+        addVariablesAndConstants();
         this.serializationEnd = System.currentTimeMillis();
         Statistics.addOrIncrementEntry("logiql_serialization_time(ms)",
                 (serializationEnd - serializationStart));
-        addVariables();
-        addConstants();
-        writeLogiQLData(logiqldataPath, localNth);
+        Statistics.addOrIncrementEntry("logiql_data_size", LogiQLPredicateGenerator.countLines(logiQLText));
+
+        if (solverEnvironment.getBoolArg(LogiQLSolverArg.useLogicBlox)) {
+            logiqldata.mkdir();
+            constraintGenerator.writeFile(encoding);
+            writeLogiQLData(logiqldataPath, localNth);
+
+            this.solvingStart = System.currentTimeMillis();
+            LogicBloxRunner runLogicBlox = new LogicBloxRunner(logiqldataPath, localNth);
+            runLogicBlox.runLogicBlox();
+            this.solvingEnd = System.currentTimeMillis();
+            Statistics.addOrIncrementEntry("logiql_solving_time(ms)", (solvingEnd - solvingStart));
+
+            //TODO: Refactor this to let Translator take the responsiblity of decoding.
+            DecodingTool DecodeTool = new DecodingTool(varSlotIds, logiqldataPath, lattice, localNth);
+            result = DecodeTool.decodeResult();
+            return result;
+        }
 
         this.solvingStart = System.currentTimeMillis();
-        LogicBloxRunner runLogicBlox = new LogicBloxRunner(logiqldataPath, localNth);
-        runLogicBlox.runLogicBlox();
+        LogiQLParser predicates = lattice.getArtifact(PARSED_ENCODING_ARTIFACT, l -> {
+            LogiQLParser predicateParser = new LogiQLParser();
+            predicateParser.parse(encoding);
+            return predicateParser;
+        });
+        LogiQLParser parser = new LogiQLParser(predicates);
+        parser.parse(logiQLText.toString());
+        DatalogProgram program = parser.getProgram();
+        int derivedFacts = program.evaluate();
         this.solvingEnd = System.currentTimeMillis();
-
         Statistics.addOrIncrementEntry("logiql_solving_time(ms)", (solvingEnd - solvingStart));
+        Statistics.addOrIncrementEntry("logiql_derived_facts", derivedFacts);
+
+        // LogicBlox rejects a transaction that gives a variable two values of a functional
+        // predicate, e.g. isTop[v] = true and isTop[v] = false.
+        List<List<Object>> violations = program.getFunctionalDependencyViolations();
+        if (!violations.isEmpty()) {
+            logger.info("Not solvable! Conflicting LogiQL fact: " + violations.get(0));
+            conflictingVariables.clear();
+            for (List<Object> violation : violations) {
+                // The first column of the is<Type> predicates is the variable, by its slot id.
+                if (violation.get(1) instanceof Integer) {
+                    conflictingVariables.add((Integer) violation.get(1));
+                }
+            }
+            return null;
+        }
 
-        //TODO: Refactor this to let Translator take the responsiblity of decoding.
         DecodingTool DecodeTool = new DecodingTool(varSlotIds, logiqldataPath, lattice, localNth);
-        result = DecodeTool.decodeResult();
+        result = DecodeTool.decodeResult(program.getRelation("orderedAnnotationOf").getTuples());
         return result;
     }
 
+    /**
+     * @return the constraints on the variables that got conflicting values in the last call of
+     * {@link #solve()}. These are not a minimal unsatisfiable set, and are empty if LogicBlox was used.
+     */
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
-        return new HashSet<>();// Doesn't support right now
+        List<Constraint> unsatisfiableConstraints = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable() && conflictingVariables.contains(slot.getId())) {
+                    unsatisfiableConstraints.add(constraint);
+                    break;
+                }
+            }
+        }
+        return unsatisfiableConstraints;
     }
 
     @Override
@@ -94,22 +175,22 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
         }
     }
 
-    private void addConstants() {
+    /**
+     * Puts the facts of all variables and constants in front of the constraint data.
+     */
+    private void addVariablesAndConstants() {
+        StringBuilder facts = new StringBuilder();
+        for (Integer variable : varSlotIds) {
+            facts.append("+variable(v), +hasvariableName[v] = ").append(variable).append(".\n");
+        }
         for (AnnotationMirror annoMirror : lattice.allTypes) {
             String constant = NameUtils.getSimpleName(annoMirror);
-            logiQLText.insert(0, "+constant(c), +hasconstantName[c] = \"" + constant + "\".\n");
-        }
-    }
-
-    private void addVariables() {
-        for (Integer variable : varSlotIds) {
-            logiQLText.insert(0, "+variable(v), +hasvariableName[v] = " + variable + ".\n");
+            facts.append("+constant(c), +hasconstantName[c] = \"").append(constant).append("\".\n");
         }
+        logiQLText.insert(0, facts);
     }
 
     private void writeLogiQLData(String path, int nth) {
-        String[] lines = logiQLText.toString().split("\r\n|\r|\n");
-        Statistics.addOrIncrementEntry("logiql_data_size", lines.length);
         try {
             String writePath = path + "/data" + nth + ".logic";
             File f = new File(writePath);
@@ -0,0 +1,78 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An atom {@code p(t1, ..., tn)} of a Datalog rule. Every term is either a constant or a
+ * variable of the rule, see {@link #isVariable(int)}.
+ *
+ * Functional LogiQL atoms such as {@code p[x] = y} are represented as {@code p(x, y)}.
+ */
+public class Atom {
+
+    public final String predicate;
+
+    /**
+     * For every term, the index of its variable in the rule, or -1 for a constant term.
+     */
+    private final int[] variables;
+
+    /**
+     * For every term, its value if the term is a constant, or null for a variable term.
+     */
+    private final Object[] constants;
+
+    public Atom(String predicate, int[] variables, Object[] constants) {
+        if (variables.length != constants.length) {
+            throw new IllegalArgumentException("Terms of " + predicate + " have different arities.");
+        }
+        this.predicate = predicate;
+        this.variables = variables;
+        this.constants = constants;
+    }
+
+    public int arity() {
+        return variables.length;
+    }
+
+    public boolean isVariable(int term) {
+        return variables[term] >= 0;
+    }
+
+    public int getVariable(int term) {
+        return variables[term];
+    }
+
+    public Object getConstant(int term) {
+        return constants[term];
+    }
+
+    /**
+     * Instantiates this atom with the given variable bindings.
+     *
+     * @return the tuple of the atom, or null if one of its variables is unbound
+     */
+    public List<Object> instantiate(Object[] bindings) {
+        Object[] tuple = new Object[arity()];
+        for (int i = 0; i < tuple.length; i++) {
+            tuple[i] = isVariable(i) ? bindings[variables[i]] : constants[i];
+            if (tuple[i] == null) {
+                return null;
+            }
+        }
+        return Arrays.asList(tuple);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(predicate).append('(');
+        for (int i = 0; i < arity(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(isVariable(i) ? "_" + variables[i] : constants[i]);
+        }
+        return sb.append(')').toString();
+    }
+}
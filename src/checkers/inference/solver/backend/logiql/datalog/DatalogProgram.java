@@ -0,0 +1,329 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * A Datalog program: facts and rules over in-memory {@link Relation}s, evaluated bottom-up.
+ *
+ * {@link #evaluate()} computes the least fixed point of the rules with semi-naive
+ * evaluation: after the first round, a rule is only re-evaluated with one of its body atoms
+ * restricted to the tuples that were derived in the previous round, so every solution of
+ * the rule body is found a bounded number of times rather than once per round.
+ *
+ * Rules are evaluated stratum by stratum. The body of a {@link Rule#isAggregation() seq
+ * aggregation} is complete before the aggregation is evaluated, because its relations
+ * are in lower strata than its head.
+ */
+public class DatalogProgram {
+
+    private final Map<String, Relation> relations = new LinkedHashMap<>();
+
+    private final Set<String> functionalPredicates = new HashSet<>();
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    public DatalogProgram() {
+    }
+
+    /**
+     * Creates a program with the declarations, rules and facts of the given program, which
+     * is not affected by changes to the new program.
+     */
+    public DatalogProgram(DatalogProgram program) {
+        functionalPredicates.addAll(program.functionalPredicates);
+        for (Relation relation : program.relations.values()) {
+            Relation copy = new Relation(relation.name, relation.arity, functionalPredicates.contains(relation.name));
+            for (List<Object> tuple : relation.getTuples()) {
+                copy.add(tuple);
+            }
+            relations.put(copy.name, copy);
+        }
+        rules.addAll(program.rules);
+    }
+
+    /**
+     * Declares the predicate as functional, see {@link Relation}. Must be called before the
+     * relation of the predicate is created by a fact or a rule.
+     */
+    public void declareFunctional(String predicate) {
+        if (relations.containsKey(predicate)) {
+            throw new BugInCF("Predicate " + predicate + " is declared functional after its first use.");
+        }
+        functionalPredicates.add(predicate);
+    }
+
+    public void addFact(String predicate, List<Object> tuple) {
+        getOrCreateRelation(predicate, tuple.size()).add(tuple);
+    }
+
+    public void addRule(Rule rule) {
+        getOrCreateRelation(rule.head.predicate, rule.head.arity());
+        for (Atom atom : rule.body) {
+            getOrCreateRelation(atom.predicate, atom.arity());
+        }
+        rules.add(rule);
+    }
+
+    /**
+     * @return the relation of the given predicate, which is empty if the predicate does not occur
+     * in this program
+     */
+    public Relation getRelation(String predicate) {
+        Relation relation = relations.get(predicate);
+        return relation != null ? relation : new Relation(predicate, 0, false);
+    }
+
+    private Relation getOrCreateRelation(String predicate, int arity) {
+        Relation relation = relations.get(predicate);
+        if (relation == null) {
+            relation = new Relation(predicate, arity, functionalPredicates.contains(predicate));
+            relations.put(predicate, relation);
+        } else if (relation.arity != arity) {
+            throw new BugInCF("Predicate " + predicate + " is used with arities " + relation.arity + " and " + arity);
+        }
+        return relation;
+    }
+
+    /**
+     * @return the tuples of all functional relations that map a key to more than one value
+     */
+    public List<List<Object>> getFunctionalDependencyViolations() {
+        List<List<Object>> violations = new ArrayList<>();
+        for (Relation relation : relations.values()) {
+            for (List<Object> violation : relation.getViolations()) {
+                List<Object> fact = new ArrayList<>(violation.size() + 1);
+                fact.add(relation.name);
+                fact.addAll(violation);
+                violations.add(fact);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Adds all tuples derivable by the rules of this program to its relations.
+     *
+     * @return the number of derived tuples
+     */
+    public int evaluate() {
+        int derived = 0;
+        for (List<Rule> stratum : stratify()) {
+            derived += evaluateStratum(stratum);
+        }
+        return derived;
+    }
+
+    /**
+     * Orders the rules in strata, such that the body of a rule only uses relations defined
+     * by rules of the same or lower strata, and the body of an aggregation only uses
+     * relations defined in lower strata.
+     */
+    private Collection<List<Rule>> stratify() {
+        Map<String, Integer> strata = new HashMap<>();
+        for (String predicate : relations.keySet()) {
+            strata.put(predicate, 0);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Rule rule : rules) {
+                int stratum = strata.get(rule.head.predicate);
+                for (Atom atom : rule.body) {
+                    int bodyStratum = strata.get(atom.predicate) + (rule.isAggregation() ? 1 : 0);
+                    if (bodyStratum > stratum) {
+                        stratum = bodyStratum;
+                    }
+                }
+                if (stratum > strata.get(rule.head.predicate)) {
+                    if (stratum > relations.size()) {
+                        throw new BugInCF("Relation " + rule.head.predicate + " depends on itself through an aggregation.");
+                    }
+                    strata.put(rule.head.predicate, stratum);
+                    changed = true;
+                }
+            }
+        }
+
+        Map<Integer, List<Rule>> rulesByStratum = new TreeMap<>();
+        for (Rule rule : rules) {
+            rulesByStratum.computeIfAbsent(strata.get(rule.head.predicate), s -> new ArrayList<>()).add(rule);
+        }
+        return rulesByStratum.values();
+    }
+
+    private int evaluateStratum(List<Rule> stratum) {
+        Set<String> stratumPredicates = new HashSet<>();
+        for (Rule rule : stratum) {
+            stratumPredicates.add(rule.head.predicate);
+        }
+
+        // The first round evaluates every rule on the complete relations.
+        Map<String, List<List<Object>>> delta = new HashMap<>();
+        Map<String, List<List<Object>>> derived = new HashMap<>();
+        for (Rule rule : stratum) {
+            if (rule.isAggregation()) {
+                evaluateAggregation(rule, derived);
+            } else {
+                evaluateRule(rule, -1, null, derived);
+            }
+        }
+        int count = addDerived(derived, delta);
+
+        // Later rounds only join with the tuples that are new since the previous round.
+        while (!delta.isEmpty()) {
+            derived = new HashMap<>();
+            for (Rule rule : stratum) {
+                if (rule.isAggregation()) {
+                    continue;
+                }
+                for (int i = 0; i < rule.body.size(); i++) {
+                    String predicate = rule.body.get(i).predicate;
+                    List<List<Object>> deltaTuples = delta.get(predicate);
+                    if (deltaTuples != null && stratumPredicates.contains(predicate)) {
+                        evaluateRule(rule, i, deltaTuples, derived);
+                    }
+                }
+            }
+            delta = new HashMap<>();
+            count += addDerived(derived, delta);
+        }
+        return count;
+    }
+
+    private int addDerived(Map<String, List<List<Object>>> derived, Map<String, List<List<Object>>> delta) {
+        int count = 0;
+        for (Map.Entry<String, List<List<Object>>> entry : derived.entrySet()) {
+            Relation relation = relations.get(entry.getKey());
+            for (List<Object> tuple : entry.getValue()) {
+                if (relation.add(tuple)) {
+                    delta.computeIfAbsent(entry.getKey(), p -> new ArrayList<>()).add(tuple);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the head tuples of all solutions of the rule body to derived.
+     *
+     * @param deltaAtom the index of the body atom that only ranges over deltaTuples, or -1
+     */
+    private void evaluateRule(final Rule rule, int deltaAtom, List<List<Object>> deltaTuples,
+                              final Map<String, List<List<Object>>> derived) {
+        final Relation head = relations.get(rule.head.predicate);
+        final List<List<Object>> headTuples = derived.computeIfAbsent(head.name, p -> new ArrayList<>());
+        solve(rule, deltaAtom, deltaTuples, bindings -> {
+            List<Object> tuple = rule.head.instantiate(bindings);
+            if (tuple == null) {
+                throw new BugInCF("Head of rule " + rule + " has a variable that does not occur in its body.");
+            }
+            if (!head.contains(tuple)) {
+                headTuples.add(tuple);
+            }
+        });
+    }
+
+    private void evaluateAggregation(final Rule rule, Map<String, List<List<Object>>> derived) {
+        final Set<Object> values = new TreeSet<>();
+        final List<Object[]> solutions = new ArrayList<>();
+        solve(rule, -1, null, bindings -> {
+            values.add(bindings[rule.seqValueVariable]);
+            solutions.add(bindings.clone());
+        });
+
+        Map<Object, Integer> positions = new HashMap<>();
+        for (Object value : values) {
+            positions.put(value, positions.size());
+        }
+
+        List<List<Object>> headTuples = derived.computeIfAbsent(rule.head.predicate, p -> new ArrayList<>());
+        for (Object[] bindings : solutions) {
+            bindings[rule.seqIndexVariable] = positions.get(bindings[rule.seqValueVariable]);
+            List<Object> tuple = rule.head.instantiate(bindings);
+            if (tuple == null) {
+                throw new BugInCF("Head of rule " + rule + " has a variable that does not occur in its body.");
+            }
+            headTuples.add(tuple);
+        }
+    }
+
+    /**
+     * Calls consumer with the variable bindings of every solution of the body of rule. The
+     * delta atom, if any, is joined first, and the other atoms in the order of the body.
+     */
+    private void solve(Rule rule, int deltaAtom, List<List<Object>> deltaTuples, Consumer<Object[]> consumer) {
+        List<Atom> order = new ArrayList<>(rule.body);
+        if (deltaAtom >= 0) {
+            order.add(0, order.remove(deltaAtom));
+        }
+        join(order, 0, deltaTuples, new Object[rule.numVariables], consumer);
+    }
+
+    private void join(List<Atom> atoms, int position, List<List<Object>> deltaTuples,
+                      Object[] bindings, Consumer<Object[]> consumer) {
+        if (position == atoms.size()) {
+            consumer.accept(bindings);
+            return;
+        }
+
+        Atom atom = atoms.get(position);
+        Collection<List<Object>> candidates;
+        if (position == 0 && deltaTuples != null) {
+            candidates = deltaTuples;
+        } else {
+            int boundColumns = 0;
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < atom.arity(); i++) {
+                Object value = atom.isVariable(i) ? bindings[atom.getVariable(i)] : atom.getConstant(i);
+                if (value != null) {
+                    boundColumns |= 1 << i;
+                    values.add(value);
+                }
+            }
+            candidates = relations.get(atom.predicate).lookup(boundColumns, values);
+        }
+
+        int[] newlyBound = new int[atom.arity()];
+        for (List<Object> tuple : candidates) {
+            int numNewlyBound = 0;
+            boolean matches = true;
+            for (int i = 0; i < atom.arity() && matches; i++) {
+                Object value = tuple.get(i);
+                if (!atom.isVariable(i)) {
+                    matches = atom.getConstant(i).equals(value);
+                } else if (bindings[atom.getVariable(i)] == null) {
+                    bindings[atom.getVariable(i)] = value;
+                    newlyBound[numNewlyBound++] = atom.getVariable(i);
+                } else {
+                    matches = bindings[atom.getVariable(i)].equals(value);
+                }
+            }
+
+            if (matches) {
+                join(atoms, position + 1, null, bindings, consumer);
+            }
+            for (int i = 0; i < numNewlyBound; i++) {
+                bindings[newlyBound[i]] = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DatalogProgram(relations=" + relations.keySet() + ", rules=" + rules.size() + ")";
+    }
+}
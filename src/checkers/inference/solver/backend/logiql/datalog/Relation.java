@@ -0,0 +1,141 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * A relation of a {@link DatalogProgram}: a set of tuples of equal arity, with hash indexes
+ * on the combinations of columns that lookups are made on.
+ *
+ * An index is built on the first lookup with a combination of bound columns and is
+ * maintained as tuples are added afterwards.
+ *
+ * A relation may be functional, like the LogiQL predicate {@code p[x] = y}: its last
+ * column is a function of the others. Tuples that violate this are still added, and are
+ * reported by {@link #getViolations()}.
+ */
+public class Relation {
+
+    public final String name;
+
+    public final int arity;
+
+    private final boolean functional;
+
+    private final Set<List<Object>> tuples = new LinkedHashSet<>();
+
+    /**
+     * Indexes by bit mask of the bound columns, mapping the values of the bound columns
+     * to the tuples that have these values.
+     */
+    private final Map<Integer, Map<List<Object>, List<List<Object>>>> indexes = new HashMap<>();
+
+    /**
+     * For a functional relation, the value of each key.
+     */
+    private final Map<List<Object>, Object> functionValues;
+
+    private final List<List<Object>> violations = new ArrayList<>();
+
+    public Relation(String name, int arity, boolean functional) {
+        if (arity >= Integer.SIZE) {
+            throw new BugInCF("Arity of relation " + name + " is too large: " + arity);
+        }
+        this.name = name;
+        this.arity = arity;
+        this.functional = functional;
+        this.functionValues = functional ? new HashMap<>() : null;
+    }
+
+    /**
+     * @return true if the tuple was not in this relation yet
+     */
+    public boolean add(List<Object> tuple) {
+        if (tuple.size() != arity) {
+            throw new BugInCF("Tuple " + tuple + " does not have the arity " + arity + " of relation " + name);
+        }
+        if (!tuples.add(tuple)) {
+            return false;
+        }
+
+        if (functional) {
+            List<Object> key = tuple.subList(0, arity - 1);
+            Object value = tuple.get(arity - 1);
+            Object previous = functionValues.putIfAbsent(key, value);
+            if (previous != null && !previous.equals(value)) {
+                violations.add(tuple);
+            }
+        }
+
+        for (Map.Entry<Integer, Map<List<Object>, List<List<Object>>>> index : indexes.entrySet()) {
+            index.getValue().computeIfAbsent(project(tuple, index.getKey()), k -> new ArrayList<>()).add(tuple);
+        }
+        return true;
+    }
+
+    public boolean contains(List<Object> tuple) {
+        return tuples.contains(tuple);
+    }
+
+    public int size() {
+        return tuples.size();
+    }
+
+    public Collection<List<Object>> getTuples() {
+        return Collections.unmodifiableSet(tuples);
+    }
+
+    /**
+     * Returns the tuples whose columns in the given bit mask have the given values.
+     *
+     * @param boundColumns the bit mask of the columns that are bound
+     * @param values the values of the bound columns, in column order
+     */
+    public Collection<List<Object>> lookup(int boundColumns, List<Object> values) {
+        if (boundColumns == 0) {
+            return tuples;
+        }
+
+        Map<List<Object>, List<List<Object>>> index = indexes.get(boundColumns);
+        if (index == null) {
+            index = new HashMap<>();
+            for (List<Object> tuple : tuples) {
+                index.computeIfAbsent(project(tuple, boundColumns), k -> new ArrayList<>()).add(tuple);
+            }
+            indexes.put(boundColumns, index);
+        }
+
+        List<List<Object>> result = index.get(values);
+        return result == null ? Collections.<List<Object>>emptyList() : result;
+    }
+
+    private static List<Object> project(List<Object> tuple, int columns) {
+        List<Object> key = new ArrayList<>(Integer.bitCount(columns));
+        for (int i = 0; i < tuple.size(); i++) {
+            if ((columns & (1 << i)) != 0) {
+                key.add(tuple.get(i));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return the tuples of a functional relation that map a key to a second value
+     */
+    public List<List<Object>> getViolations() {
+        return Collections.unmodifiableList(violations);
+    }
+
+    @Override
+    public String toString() {
+        return name + tuples;
+    }
+}
@@ -0,0 +1,53 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Datalog rule {@code head <- body}, whose variables are numbered from 0 to
+ * {@link #numVariables} - 1.
+ *
+ * A rule can number the solutions of its body like the LogiQL aggregation
+ * {@code seq<<i = v>> body}: the distinct values of the variable {@link #seqValueVariable}
+ * in the solutions of the body are sorted, and {@link #seqIndexVariable} is bound to the
+ * position of each of them, starting at 0. The relations of the body of such a rule must be
+ * complete before the rule is evaluated, so they may not depend on the head of the rule.
+ */
+public class Rule {
+
+    public final Atom head;
+
+    public final List<Atom> body;
+
+    public final int numVariables;
+
+    /**
+     * The variable bound to the position of {@link #seqValueVariable}, or -1 if this rule
+     * has no seq aggregation.
+     */
+    public final int seqIndexVariable;
+
+    public final int seqValueVariable;
+
+    public Rule(Atom head, List<Atom> body, int numVariables) {
+        this(head, body, numVariables, -1, -1);
+    }
+
+    public Rule(Atom head, List<Atom> body, int numVariables, int seqIndexVariable, int seqValueVariable) {
+        this.head = head;
+        this.body = Collections.unmodifiableList(body);
+        this.numVariables = numVariables;
+        this.seqIndexVariable = seqIndexVariable;
+        this.seqValueVariable = seqValueVariable;
+    }
+
+    public boolean isAggregation() {
+        return seqIndexVariable >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return head + " <- " + (isAggregation() ? "seq<<_" + seqIndexVariable + " = _" + seqValueVariable + ">> " : "")
+                + body;
+    }
+}
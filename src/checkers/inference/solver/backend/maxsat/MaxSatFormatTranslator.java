@@ -26,6 +26,10 @@ import checkers.inference.solver.frontend.Lattice;
 
 public class MaxSatFormatTranslator extends AbstractFormatTranslator<VecInt[], VecInt[], Integer> {
 
+    private static final String TYPE_TO_INT = MaxSatFormatTranslator.class.getName() + ".typeToInt";
+
+    private static final String INT_TO_TYPE = MaxSatFormatTranslator.class.getName() + ".intToType";
+
     /**
      * typeToInt maps each type qualifier to an unique integer value starts from
      * 0 on continuous basis.
@@ -40,20 +44,30 @@ public class MaxSatFormatTranslator extends AbstractFormatTranslator<VecInt[], V
 
     public MaxSatFormatTranslator(Lattice lattice) {
         super(lattice);
-        // Initialize mappings between type and int.
-        Map<AnnotationMirror, Integer>typeToIntRes = AnnotationUtils.createAnnotationMap();
-        Map<Integer, AnnotationMirror> intToTypeRes = new HashMap<Integer, AnnotationMirror>();
+        // The mappings between type and int are shared by all translators of the lattice.
+        typeToInt = lattice.getArtifact(TYPE_TO_INT, MaxSatFormatTranslator::createTypeToInt);
+        intToType = lattice.getArtifact(INT_TO_TYPE, MaxSatFormatTranslator::createIntToType);
+        finishInitializingEncoders();
+    }
 
+    private static Map<AnnotationMirror, Integer> createTypeToInt(Lattice lattice) {
+        Map<AnnotationMirror, Integer>typeToIntRes = AnnotationUtils.createAnnotationMap();
         int curInt = 0;
         for (AnnotationMirror type : lattice.allTypes) {
             typeToIntRes.put(type, curInt);
-            intToTypeRes.put(curInt, type);
             curInt ++;
         }
+        return Collections.unmodifiableMap(typeToIntRes);
+    }
 
-        typeToInt = Collections.unmodifiableMap(typeToIntRes);
-        intToType = Collections.unmodifiableMap(intToTypeRes);
-        finishInitializingEncoders();
+    private static Map<Integer, AnnotationMirror> createIntToType(Lattice lattice) {
+        Map<Integer, AnnotationMirror> intToTypeRes = new HashMap<Integer, AnnotationMirror>();
+        int curInt = 0;
+        for (AnnotationMirror type : lattice.allTypes) {
+            intToTypeRes.put(curInt, type);
+            curInt ++;
+        }
+        return Collections.unmodifiableMap(intToTypeRes);
     }
 
     @Override
@@ -1,6 +1,8 @@
 package checkers.inference.solver.backend.maxsat;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -54,6 +56,8 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
     protected final List<VecInt> hardClauses = new LinkedList<>();
     private List<VecInt> wellFormednessClauses = new LinkedList<>();
     protected final List<VecInt> softClauses = new LinkedList<>();
+    // The weight of each soft clause, which is the weight of the PreferenceConstraint it encodes.
+    protected final Map<VecInt, Integer> softClauseWeights = new IdentityHashMap<>();
     private MaxSATUnsatisfiableConstraintExplainer unsatisfiableConstraintExplainer;
     protected final File CNFData = new File(new File("").getAbsolutePath() + "/cnfData");
     protected StringBuilder CNFInput = new StringBuilder();
@@ -145,6 +149,7 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
                 if (res != null && res.size() != 0) {
                     if (constraint instanceof PreferenceConstraint) {
                         softClauses.add(res);
+                        softClauseWeights.put(res, ((PreferenceConstraint) constraint).getWeight());
                     } else {
                         hardClauses.add(res);
                     }
@@ -190,10 +195,11 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
         }
     }
 
-    private void cleanUpClauses() {
+    protected void cleanUpClauses() {
         hardClauses.clear();
         wellFormednessClauses.clear();
         softClauses.clear();
+        softClauseWeights.clear();
     }
 
     protected Map<Integer, AnnotationMirror> decode(int[] solution) {
@@ -229,32 +235,86 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
      * Write CNF clauses into a string.
      */
     protected void buildCNFInput() {
+        try {
+            writeCNF(CNFInput);
+        } catch (IOException e) {
+            throw new BugInCF("Appending to a StringBuilder failed.", e);
+        }
+    }
+
+    /**
+     * Write the hard and well-formedness clauses in DIMACS CNF format to the given output.
+     */
+    protected void writeCNF(Appendable out) throws IOException {
 
         final int totalClauses = hardClauses.size()+ wellFormednessClauses.size();
         final int totalVars = slotManager.getNumberOfSlots() * lattice.numTypes;
 
-        CNFInput.append("c This is the CNF input\n");
-        CNFInput.append("p cnf ");
-        CNFInput.append(totalVars);
-        CNFInput.append(" ");
-        CNFInput.append(totalClauses);
-        CNFInput.append("\n");
+        out.append("c This is the CNF input\n");
+        out.append("p cnf ");
+        out.append(Integer.toString(totalVars));
+        out.append(" ");
+        out.append(Integer.toString(totalClauses));
+        out.append("\n");
+
+        for (VecInt hardClause : hardClauses) {
+            writeClause(out, hardClause);
+        }
+        for (VecInt wellFormedNessClause: wellFormednessClauses) {
+            writeClause(out, wellFormedNessClause);
+        }
+    }
+
+    /**
+     * Write the hard, well-formedness and soft clauses in DIMACS WCNF format to the given output.
+     * Soft clauses have the weight of their PreferenceConstraint, and hard clauses have a weight
+     * larger than the sum of all soft clause weights. WCNF weights must be positive, so soft
+     * clauses of PreferenceConstraints without a positive weight, which prefer nothing, are left out.
+     */
+    protected void writeWCNF(Appendable out) throws IOException {
+
+        List<VecInt> weightedSoftClauses = new ArrayList<>(softClauses.size());
+        long top = 1;
+        for (VecInt softClause : softClauses) {
+            int weight = softClauseWeights.get(softClause);
+            if (weight > 0) {
+                weightedSoftClauses.add(softClause);
+                top += weight;
+            }
+        }
+        final int totalClauses = hardClauses.size() + wellFormednessClauses.size() + weightedSoftClauses.size();
+        final int totalVars = slotManager.getNumberOfSlots() * lattice.numTypes;
+        final String hardWeight = Long.toString(top);
+
+        out.append("c This is the WCNF input\n");
+        out.append("p wcnf ");
+        out.append(Integer.toString(totalVars));
+        out.append(" ");
+        out.append(Integer.toString(totalClauses));
+        out.append(" ");
+        out.append(hardWeight);
+        out.append("\n");
 
         for (VecInt hardClause : hardClauses) {
-            buildCNFInputHelper(hardClause);
+            out.append(hardWeight).append(" ");
+            writeClause(out, hardClause);
         }
         for (VecInt wellFormedNessClause: wellFormednessClauses) {
-            buildCNFInputHelper(wellFormedNessClause);
+            out.append(hardWeight).append(" ");
+            writeClause(out, wellFormedNessClause);
+        }
+        for (VecInt softClause : weightedSoftClauses) {
+            out.append(Integer.toString(softClauseWeights.get(softClause))).append(" ");
+            writeClause(out, softClause);
         }
     }
 
-    private void buildCNFInputHelper(VecInt clause) {
-        int[] literals = clause.toArray();
-        for (int i = 0; i < literals.length; i++) {
-            CNFInput.append(literals[i]);
-            CNFInput.append(" ");
+    private static void writeClause(Appendable out, VecInt clause) throws IOException {
+        for (int i = 0; i < clause.size(); i++) {
+            out.append(Integer.toString(clause.get(i)));
+            out.append(" ");
         }
-        CNFInput.append("0\n");
+        out.append("0\n");
     }
 
     protected void writeCNFInput() {
@@ -287,6 +347,10 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
 
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
+        if (unsatisfiableConstraintExplainer == null) {
+            // Subclasses that solve the clauses without Sat4j don't create the explainer
+            unsatisfiableConstraintExplainer = new MaxSATUnsatisfiableConstraintExplainer();
+        }
         return unsatisfiableConstraintExplainer.minimumUnsatisfiableConstraints();
     }
 
@@ -0,0 +1,91 @@
+package checkers.inference.solver.backend.maxsat.encoder;
+
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.sat4j.core.VecInt;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.encoder.binary.BinaryConstraintEncoder;
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * Abstract base class for the MaxSAT encoders of binary constraints.
+ *
+ * For every {@link checkers.inference.solver.backend.encoder.SlotSlotCombo} a subclass builds
+ * the clauses of its constraint once per lattice as a {@link MaxSATClauseTemplate}, one per
+ * constant value for the combinations with a constant slot. Encoding a constraint then only
+ * instantiates the template with the slot ids. The templates are shared by all encoders of
+ * the same class and lattice.
+ */
+public abstract class MaxSATBinaryConstraintEncoder extends MaxSATAbstractConstraintEncoder
+        implements BinaryConstraintEncoder<VecInt[]> {
+
+    private static class ClauseTemplates {
+        MaxSATClauseTemplate variableVariable;
+        final Map<AnnotationMirror, MaxSATClauseTemplate> variableConstant = AnnotationUtils.createAnnotationMap();
+        final Map<AnnotationMirror, MaxSATClauseTemplate> constantVariable = AnnotationUtils.createAnnotationMap();
+    }
+
+    private ClauseTemplates templates;
+
+    public MaxSATBinaryConstraintEncoder(Lattice lattice, Map<AnnotationMirror, Integer> typeToInt) {
+        super(lattice, typeToInt);
+    }
+
+    /**
+     * Builds the clauses of the constraint between two variable slots. This and the other
+     * build methods must only depend on the lattice and {@link #typeToInt}.
+     */
+    protected abstract VecInt[] buildVariable_Variable(int fstId, int sndId);
+
+    protected abstract VecInt[] buildVariable_Constant(int fstId, AnnotationMirror snd);
+
+    protected abstract VecInt[] buildConstant_Variable(AnnotationMirror fst, int sndId);
+
+    private ClauseTemplates getTemplates() {
+        if (templates == null) {
+            templates = lattice.getArtifact(getClass().getName() + ".clauseTemplates", l -> {
+                ClauseTemplates result = new ClauseTemplates();
+                result.variableVariable = new MaxSATClauseTemplate(buildVariable_Variable(
+                        MaxSATClauseTemplate.FIRST_SLOT_ID, MaxSATClauseTemplate.SECOND_SLOT_ID), l);
+                // The variable slot is the first placeholder in both combinations with a constant.
+                for (AnnotationMirror type : l.allTypes) {
+                    result.variableConstant.put(type, new MaxSATClauseTemplate(
+                            buildVariable_Constant(MaxSATClauseTemplate.FIRST_SLOT_ID, type), l));
+                    result.constantVariable.put(type, new MaxSATClauseTemplate(
+                            buildConstant_Variable(type, MaxSATClauseTemplate.FIRST_SLOT_ID), l));
+                }
+                return result;
+            });
+        }
+        return templates;
+    }
+
+    @Override
+    public final VecInt[] encodeVariable_Variable(Slot fst, Slot snd) {
+        return getTemplates().variableVariable.instantiate(fst.getId(), snd.getId());
+    }
+
+    @Override
+    public final VecInt[] encodeVariable_Constant(Slot fst, ConstantSlot snd) {
+        MaxSATClauseTemplate template = getTemplates().variableConstant.get(snd.getValue());
+        if (template == null) {
+            // A constant that is not a qualifier of the lattice.
+            return buildVariable_Constant(fst.getId(), snd.getValue());
+        }
+        return template.instantiate(fst.getId());
+    }
+
+    @Override
+    public final VecInt[] encodeConstant_Variable(ConstantSlot fst, Slot snd) {
+        MaxSATClauseTemplate template = getTemplates().constantVariable.get(fst.getValue());
+        if (template == null) {
+            return buildConstant_Variable(fst.getValue(), snd.getId());
+        }
+        return template.instantiate(snd.getId());
+    }
+}
@@ -0,0 +1,86 @@
+package checkers.inference.solver.backend.maxsat.encoder;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.sat4j.core.VecInt;
+
+import checkers.inference.solver.backend.maxsat.MathUtils;
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * The clauses that encode a binary constraint of a given kind, for any pair of slots.
+ *
+ * The clauses of a constraint only depend on the slot ids through
+ * {@link MathUtils#mapIdToMatrixEntry(int, int, Lattice)}, which numbers the boolean variables
+ * of a slot consecutively starting at {@code (id - 1) * numTypes + 1}. So a template is
+ * built once by encoding the constraint between slots with the placeholder ids
+ * {@link #FIRST_SLOT_ID} and {@link #SECOND_SLOT_ID}, and is instantiated for real slots by
+ * offsetting the variables of each placeholder.
+ */
+public class MaxSATClauseTemplate {
+
+    public static final int FIRST_SLOT_ID = 1;
+
+    public static final int SECOND_SLOT_ID = 2;
+
+    private static final VecInt[] EMPTY_CLAUSES = new VecInt[0];
+
+    /**
+     * The literals of the template clauses, over the variables of the placeholder slots.
+     */
+    private final int[][] clauses;
+
+    private final int numTypes;
+
+    /**
+     * @param clauses the clauses of the constraint between the placeholder slots
+     */
+    public MaxSATClauseTemplate(VecInt[] clauses, Lattice lattice) {
+        this.numTypes = lattice.numTypes;
+        this.clauses = new int[clauses.length][];
+        for (int i = 0; i < clauses.length; i++) {
+            this.clauses[i] = new int[clauses[i].size()];
+            for (int j = 0; j < clauses[i].size(); j++) {
+                int literal = clauses[i].get(j);
+                if (literal == 0 || Math.abs(literal) > SECOND_SLOT_ID * numTypes) {
+                    throw new BugInCF("Literal " + literal + " is not a variable of a placeholder slot.");
+                }
+                this.clauses[i][j] = literal;
+            }
+        }
+    }
+
+    /**
+     * @return the clauses of the constraint between the slots with the given ids
+     */
+    public VecInt[] instantiate(int firstSlotId, int secondSlotId) {
+        if (clauses.length == 0) {
+            return EMPTY_CLAUSES;
+        }
+
+        final int firstOffset = (firstSlotId - FIRST_SLOT_ID) * numTypes;
+        final int secondOffset = (secondSlotId - SECOND_SLOT_ID) * numTypes;
+        VecInt[] result = new VecInt[clauses.length];
+        for (int i = 0; i < clauses.length; i++) {
+            int[] template = clauses[i];
+            int[] literals = new int[template.length];
+            for (int j = 0; j < template.length; j++) {
+                int literal = template[j];
+                if (literal > 0) {
+                    literals[j] = literal + (literal <= numTypes ? firstOffset : secondOffset);
+                } else {
+                    literals[j] = literal - (-literal <= numTypes ? firstOffset : secondOffset);
+                }
+            }
+            result[i] = new VecInt(literals);
+        }
+        return result;
+    }
+
+    /**
+     * @return the clauses of a template over the first placeholder slot only, for the slot
+     * with the given id
+     */
+    public VecInt[] instantiate(int slotId) {
+        return instantiate(slotId, SECOND_SLOT_ID);
+    }
+}
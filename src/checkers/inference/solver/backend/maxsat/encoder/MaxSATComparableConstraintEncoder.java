@@ -1,7 +1,5 @@
 package checkers.inference.solver.backend.maxsat.encoder;
 
-import checkers.inference.model.ConstantSlot;
-import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.encoder.binary.ComparableConstraintEncoder;
 import checkers.inference.solver.backend.maxsat.MathUtils;
 import checkers.inference.solver.backend.maxsat.VectorUtils;
@@ -13,24 +11,24 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-public class MaxSATComparableConstraintEncoder extends MaxSATAbstractConstraintEncoder implements ComparableConstraintEncoder<VecInt[]> {
+public class MaxSATComparableConstraintEncoder extends MaxSATBinaryConstraintEncoder implements ComparableConstraintEncoder<VecInt[]> {
 
     public MaxSATComparableConstraintEncoder(Lattice lattice, Map<AnnotationMirror, Integer> typeToInt) {
         super(lattice, typeToInt);
     }
 
     @Override
-    public VecInt[] encodeVariable_Variable(Slot fst, Slot snd) {
+    protected VecInt[] buildVariable_Variable(int fstId, int sndId) {
         // a <=> !b which is the same as (!a v !b) & (b v a)
         List<VecInt> list = new ArrayList<VecInt>();
         for (AnnotationMirror type : lattice.allTypes) {
             if (lattice.incomparableType.keySet().contains(type)) {
                 for (AnnotationMirror notComparable : lattice.incomparableType.get(type)) {
                     list.add(VectorUtils.asVec(
-                            -MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice),
-                            -MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(notComparable), lattice),
-                            MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(notComparable), lattice),
-                            MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice)));
+                            -MathUtils.mapIdToMatrixEntry(fstId, typeToInt.get(type), lattice),
+                            -MathUtils.mapIdToMatrixEntry(sndId, typeToInt.get(notComparable), lattice),
+                            MathUtils.mapIdToMatrixEntry(sndId, typeToInt.get(notComparable), lattice),
+                            MathUtils.mapIdToMatrixEntry(fstId, typeToInt.get(type), lattice)));
                 }
             }
         }
@@ -39,14 +37,14 @@ public class MaxSATComparableConstraintEncoder extends MaxSATAbstractConstraintE
     }
 
     @Override
-    public VecInt[] encodeVariable_Constant(Slot fst, ConstantSlot snd) {
-        if (lattice.incomparableType.keySet().contains(snd.getValue())) {
+    protected VecInt[] buildVariable_Constant(int fstId, AnnotationMirror snd) {
+        if (lattice.incomparableType.keySet().contains(snd)) {
             List<VecInt> resultList = new ArrayList<>();
-            for (AnnotationMirror incomparable : lattice.incomparableType.get(snd.getValue())) {
+            for (AnnotationMirror incomparable : lattice.incomparableType.get(snd)) {
                 // Should not be equal to incomparable
                 resultList.add(
                     VectorUtils.asVec(
-                        -MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(incomparable), lattice)));
+                        -MathUtils.mapIdToMatrixEntry(fstId, typeToInt.get(incomparable), lattice)));
             }
             VecInt[] resultArray = new VecInt[resultList.size()];
             return resultList.toArray(resultArray);
@@ -56,7 +54,7 @@ public class MaxSATComparableConstraintEncoder extends MaxSATAbstractConstraintE
     }
 
     @Override
-    public VecInt[] encodeConstant_Variable(ConstantSlot fst, Slot snd) {
-        return encodeVariable_Constant(snd, fst);
+    protected VecInt[] buildConstant_Variable(AnnotationMirror fst, int sndId) {
+        return buildVariable_Constant(sndId, fst);
     }
 }
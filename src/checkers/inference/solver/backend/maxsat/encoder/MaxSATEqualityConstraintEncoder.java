@@ -1,7 +1,5 @@
 package checkers.inference.solver.backend.maxsat.encoder;
 
-import checkers.inference.model.ConstantSlot;
-import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.encoder.binary.EqualityConstraintEncoder;
 import checkers.inference.solver.backend.maxsat.MathUtils;
 import checkers.inference.solver.backend.maxsat.VectorUtils;
@@ -11,40 +9,38 @@ import org.sat4j.core.VecInt;
 import javax.lang.model.element.AnnotationMirror;
 import java.util.Map;
 
-public class MaxSATEqualityConstraintEncoder extends MaxSATAbstractConstraintEncoder implements EqualityConstraintEncoder<VecInt[]> {
+public class MaxSATEqualityConstraintEncoder extends MaxSATBinaryConstraintEncoder implements EqualityConstraintEncoder<VecInt[]> {
 
     public MaxSATEqualityConstraintEncoder(Lattice lattice, Map<AnnotationMirror, Integer> typeToInt) {
         super(lattice, typeToInt);
     }
 
     @Override
-    public VecInt[] encodeVariable_Variable(Slot fst, Slot snd) {
+    protected VecInt[] buildVariable_Variable(int fstId, int sndId) {
         // a <=> b which is the same as (!a v b) & (!b v a)
         VecInt[] result = new VecInt[lattice.numTypes * 2];
         int i = 0;
         for (AnnotationMirror type : lattice.allTypes) {
-            if (lattice.allTypes.contains(type)) {
-                result[i++] = VectorUtils.asVec(
-                        -MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice),
-                        MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(type), lattice));
-                result[i++] = VectorUtils.asVec(
-                        -MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(type), lattice),
-                        MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice));
-            }
+            result[i++] = VectorUtils.asVec(
+                    -MathUtils.mapIdToMatrixEntry(fstId, typeToInt.get(type), lattice),
+                    MathUtils.mapIdToMatrixEntry(sndId, typeToInt.get(type), lattice));
+            result[i++] = VectorUtils.asVec(
+                    -MathUtils.mapIdToMatrixEntry(sndId, typeToInt.get(type), lattice),
+                    MathUtils.mapIdToMatrixEntry(fstId, typeToInt.get(type), lattice));
         }
         return result;
     }
 
     @Override
-    public VecInt[] encodeVariable_Constant(Slot fst, ConstantSlot snd) {
-        return encodeConstant_Variable(snd, fst);
+    protected VecInt[] buildVariable_Constant(int fstId, AnnotationMirror snd) {
+        return buildConstant_Variable(snd, fstId);
     }
 
     @Override
-    public VecInt[] encodeConstant_Variable(ConstantSlot fst, Slot snd) {
-        if (lattice.allTypes.contains(fst.getValue())) {
+    protected VecInt[] buildConstant_Variable(AnnotationMirror fst, int sndId) {
+        if (lattice.allTypes.contains(fst)) {
             return VectorUtils.asVecArray(
-                    MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(fst.getValue()), lattice));
+                    MathUtils.mapIdToMatrixEntry(sndId, typeToInt.get(fst), lattice));
         } else {
             return emptyValue;
         }
@@ -1,7 +1,5 @@
 package checkers.inference.solver.backend.maxsat.encoder;
 
-import checkers.inference.model.ConstantSlot;
-import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.encoder.binary.SubtypeConstraintEncoder;
 import checkers.inference.solver.backend.maxsat.MathUtils;
 import checkers.inference.solver.backend.maxsat.VectorUtils;
@@ -18,7 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEncoder implements SubtypeConstraintEncoder<VecInt[]> {
+public class MaxSATSubtypeConstraintEncoder extends MaxSATBinaryConstraintEncoder implements SubtypeConstraintEncoder<VecInt[]> {
 
     public MaxSATSubtypeConstraintEncoder(Lattice lattice, Map<AnnotationMirror, Integer> typeToInt) {
         super(lattice, typeToInt);
@@ -28,13 +26,13 @@ public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEnco
      * For subtype constraint, if supertype is constant slot, then the subtype
      * cannot be the super type of supertype, same for subtype
      */
-    protected VecInt[] getMustNotBe(Set<AnnotationMirror> mustNotBe, Slot vSlot, ConstantSlot cSlot) {
+    protected VecInt[] getMustNotBe(Set<AnnotationMirror> mustNotBe, int vSlotId, AnnotationMirror constant) {
 
         List<Integer> resultList = new ArrayList<Integer>();
 
         for (AnnotationMirror sub : mustNotBe) {
-            if (!AnnotationUtils.areSame(sub, cSlot.getValue())) {
-                resultList.add(-MathUtils.mapIdToMatrixEntry(vSlot.getId(), typeToInt.get(sub), lattice));
+            if (!AnnotationUtils.areSame(sub, constant)) {
+                resultList.add(-MathUtils.mapIdToMatrixEntry(vSlotId, typeToInt.get(sub), lattice));
             }
         }
 
@@ -49,41 +47,41 @@ public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEnco
         return emptyValue;
     }
 
-    protected int[] getMaybe(AnnotationMirror type, Slot knownType, Slot unknownType,
+    protected int[] getMaybe(AnnotationMirror type, int knownTypeId, int unknownTypeId,
                              Collection<AnnotationMirror> maybeSet) {
         int[] maybeArray = new int[maybeSet.size() + 1];
         int i = 1;
-        maybeArray[0] = -MathUtils.mapIdToMatrixEntry(knownType.getId(), typeToInt.get(type), lattice);
+        maybeArray[0] = -MathUtils.mapIdToMatrixEntry(knownTypeId, typeToInt.get(type), lattice);
         for (AnnotationMirror sup : maybeSet) {
-            maybeArray[i] = MathUtils.mapIdToMatrixEntry(unknownType.getId(), typeToInt.get(sup), lattice);
+            maybeArray[i] = MathUtils.mapIdToMatrixEntry(unknownTypeId, typeToInt.get(sup), lattice);
             i++;
         }
         return maybeArray;
     }
 
     @Override
-    public VecInt[] encodeVariable_Variable(Slot subtype, Slot supertype) {
+    protected VecInt[] buildVariable_Variable(int subtypeId, int supertypeId) {
         // if subtype is top, then supertype is top.
         // if supertype is bottom, then subtype is bottom.
         VecInt supertypeOfTop = VectorUtils.asVec(
-                -MathUtils.mapIdToMatrixEntry(subtype.getId(), typeToInt.get(lattice.top), lattice),
-                MathUtils.mapIdToMatrixEntry(supertype.getId(), typeToInt.get(lattice.top), lattice));
+                -MathUtils.mapIdToMatrixEntry(subtypeId, typeToInt.get(lattice.top), lattice),
+                MathUtils.mapIdToMatrixEntry(supertypeId, typeToInt.get(lattice.top), lattice));
         VecInt subtypeOfBottom = VectorUtils.asVec(
-                -MathUtils.mapIdToMatrixEntry(supertype.getId(), typeToInt.get(lattice.bottom), lattice),
-                MathUtils.mapIdToMatrixEntry(subtype.getId(), typeToInt.get(lattice.bottom), lattice));
+                -MathUtils.mapIdToMatrixEntry(supertypeId, typeToInt.get(lattice.bottom), lattice),
+                MathUtils.mapIdToMatrixEntry(subtypeId, typeToInt.get(lattice.bottom), lattice));
 
         List<VecInt> resultList = new ArrayList<VecInt>();
         for (AnnotationMirror type : lattice.allTypes) {
             // if we know subtype
             if (!AnnotationUtils.areSame(type, lattice.top)) {
                 resultList.add(VectorUtils
-                        .asVec(getMaybe(type, subtype, supertype, lattice.superType.get(type))));
+                        .asVec(getMaybe(type, subtypeId, supertypeId, lattice.superType.get(type))));
             }
 
             // if we know supertype
             if (!AnnotationUtils.areSame(type, lattice.bottom)) {
                 resultList.add(VectorUtils
-                        .asVec(getMaybe(type, supertype, subtype, lattice.subType.get(type))));
+                        .asVec(getMaybe(type, supertypeId, subtypeId, lattice.subType.get(type))));
             }
         }
         resultList.add(supertypeOfTop);
@@ -93,36 +91,36 @@ public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEnco
     }
 
     @Override
-    public VecInt[] encodeVariable_Constant(Slot subtype, ConstantSlot supertype) {
+    protected VecInt[] buildVariable_Constant(int subtypeId, AnnotationMirror supertype) {
         final Set<AnnotationMirror> mustNotBe = new HashSet<>();
-        if (AnnotationUtils.areSame(supertype.getValue(), lattice.bottom)) {
+        if (AnnotationUtils.areSame(supertype, lattice.bottom)) {
             return VectorUtils.asVecArray(
-                    MathUtils.mapIdToMatrixEntry(subtype.getId(), typeToInt.get(lattice.bottom), lattice));
+                    MathUtils.mapIdToMatrixEntry(subtypeId, typeToInt.get(lattice.bottom), lattice));
         }
 
-        if (lattice.superType.get(supertype.getValue()) != null) {
-            mustNotBe.addAll(lattice.superType.get(supertype.getValue()));
+        if (lattice.superType.get(supertype) != null) {
+            mustNotBe.addAll(lattice.superType.get(supertype));
         }
-        if (lattice.incomparableType.keySet().contains(supertype.getValue())) {
-            mustNotBe.addAll(lattice.incomparableType.get(supertype.getValue()));
+        if (lattice.incomparableType.keySet().contains(supertype)) {
+            mustNotBe.addAll(lattice.incomparableType.get(supertype));
         }
-        return getMustNotBe(mustNotBe, subtype, supertype);
+        return getMustNotBe(mustNotBe, subtypeId, supertype);
     }
 
     @Override
-    public VecInt[] encodeConstant_Variable(ConstantSlot subtype, Slot supertype) {
+    protected VecInt[] buildConstant_Variable(AnnotationMirror subtype, int supertypeId) {
         final Set<AnnotationMirror> mustNotBe = new HashSet<>();
-        if (AnnotationUtils.areSame(subtype.getValue(), lattice.top)) {
+        if (AnnotationUtils.areSame(subtype, lattice.top)) {
             return VectorUtils.asVecArray(
-                    MathUtils.mapIdToMatrixEntry(supertype.getId(), typeToInt.get(lattice.top), lattice));
+                    MathUtils.mapIdToMatrixEntry(supertypeId, typeToInt.get(lattice.top), lattice));
         }
-        if (lattice.subType.get(subtype.getValue()) != null) {
-            mustNotBe.addAll(lattice.subType.get(subtype.getValue()));
+        if (lattice.subType.get(subtype) != null) {
+            mustNotBe.addAll(lattice.subType.get(subtype));
         }
 
-        if (lattice.incomparableType.keySet().contains(subtype.getValue())) {
-            mustNotBe.addAll(lattice.incomparableType.get(subtype.getValue()));
+        if (lattice.incomparableType.keySet().contains(subtype)) {
+            mustNotBe.addAll(lattice.incomparableType.get(subtype));
         }
-        return getMustNotBe(mustNotBe, supertype, subtype);
+        return getMustNotBe(mustNotBe, supertypeId, subtype);
     }
 }
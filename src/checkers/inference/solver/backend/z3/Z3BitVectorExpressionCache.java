@@ -0,0 +1,106 @@
+package checkers.inference.solver.backend.z3;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.microsoft.z3.BitVecExpr;
+import com.microsoft.z3.BitVecNum;
+import com.microsoft.z3.Context;
+
+/**
+ * Caches the Z3 terms that encode slots and lattice constants as bit vectors, so that
+ * each of them is built through the Z3 API only once per {@link Context}.
+ *
+ * A cache is shared by every {@link Z3BitVectorFormatTranslator} that is initialized with
+ * the same context. Contexts from {@link Z3ContextPool} are used by one solver at a time,
+ * so a cache is never accessed by two threads at once. The cache of a context is dropped
+ * by {@link #discard(Context)} when the context is closed.
+ */
+public class Z3BitVectorExpressionCache {
+
+    private static final Map<Context, Z3BitVectorExpressionCache> caches = new IdentityHashMap<>();
+
+    private final Context context;
+
+    private final int bitVectorSize;
+
+    private final Map<Integer, BitVecExpr> slotVariables = new HashMap<>();
+
+    private final Map<BigInteger, BitVecNum> numerals = new HashMap<>();
+
+    /**
+     * Complements of constant encodings, see {@link #getComplement(BigInteger)}.
+     */
+    private final Map<BigInteger, BitVecNum> complements = new HashMap<>();
+
+    private final BigInteger allBitsSet;
+
+    private Z3BitVectorExpressionCache(Context context, int bitVectorSize) {
+        this.context = context;
+        this.bitVectorSize = bitVectorSize;
+        this.allBitsSet = BigInteger.ONE.shiftLeft(bitVectorSize).subtract(BigInteger.ONE);
+    }
+
+    /**
+     * Returns the cache of the given context for bit vectors of the given size.
+     */
+    public static synchronized Z3BitVectorExpressionCache forContext(Context context, int bitVectorSize) {
+        Z3BitVectorExpressionCache cache = caches.get(context);
+        if (cache == null || cache.bitVectorSize != bitVectorSize) {
+            cache = new Z3BitVectorExpressionCache(context, bitVectorSize);
+            caches.put(context, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Drops the cache of the given context. Must be called before the context is closed.
+     */
+    public static synchronized void discard(Context context) {
+        caches.remove(context);
+    }
+
+    /**
+     * @return the bit vector variable of the slot with the given id
+     */
+    public BitVecExpr getSlotVariable(int slotId) {
+        BitVecExpr variable = slotVariables.get(slotId);
+        if (variable == null) {
+            variable = context.mkBVConst(String.valueOf(slotId), bitVectorSize);
+            slotVariables.put(slotId, variable);
+        }
+        return variable;
+    }
+
+    /**
+     * @return the bit vector numeral of the given value
+     */
+    public BitVecNum getNumeral(BigInteger value) {
+        BitVecNum numeral = numerals.get(value);
+        if (numeral == null) {
+            numeral = context.mkBV(value.toString(), bitVectorSize);
+            numerals.put(value, numeral);
+        }
+        return numeral;
+    }
+
+    /**
+     * @return the bit vector numeral whose set bits are exactly the bits not set in the
+     * given value. A bit vector {@code v} is a subset of {@code value} iff
+     * {@code v & complement} is zero.
+     */
+    public BitVecNum getComplement(BigInteger value) {
+        BitVecNum complement = complements.get(value);
+        if (complement == null) {
+            complement = getNumeral(allBitsSet.andNot(value));
+            complements.put(value, complement);
+        }
+        return complement;
+    }
+
+    public BitVecNum getZero() {
+        return getNumeral(BigInteger.ZERO);
+    }
+}
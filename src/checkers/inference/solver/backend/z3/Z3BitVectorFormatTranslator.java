@@ -1,12 +1,14 @@
 package checkers.inference.solver.backend.z3;
 
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 
 import checkers.inference.solver.backend.AbstractFormatTranslator;
@@ -35,18 +37,41 @@ public abstract class Z3BitVectorFormatTranslator extends AbstractFormatTranslat
 
     protected Optimize solver;
 
-    private Map<Integer, BitVecExpr> serializedSlots;
+    /**
+     * The Z3 terms of the current context, shared with other translators using the context.
+     */
+    private Z3BitVectorExpressionCache expressionCache;
+
+    /**
+     * Encodings of the values of constant slots, keyed on slot ID. These don't depend on
+     * the context, so they are kept when the translator gets a new context.
+     */
+    private final Map<Integer, BigInteger> constantEncodings;
+
+    /**
+     * Encodings of the lattice qualifiers by the codec of this translator, shared by all
+     * translators of the lattice that use the same kind of codec.
+     */
+    private final Map<AnnotationMirror, BigInteger> qualifierEncodings;
 
     protected final Z3BitVectorCodec z3BitVectorCodec;
 
     public Z3BitVectorFormatTranslator(Lattice lattice) {
         super(lattice);
         z3BitVectorCodec = createZ3BitVectorCodec();
-        serializedSlots = new HashMap<>();
+        constantEncodings = new HashMap<>();
+        qualifierEncodings = lattice.getArtifact(z3BitVectorCodec.getClass().getName() + ".qualifierEncodings",
+                l -> Collections.synchronizedMap(AnnotationUtils.createAnnotationMap()));
     }
 
+    /**
+     * Initialize this translator with the given context. The translator may be initialized
+     * again with another context, in which case the slots encoded with the previous
+     * context are discarded.
+     */
     public final void initContext(Context context) {
         this.context = context;
+        this.expressionCache = Z3BitVectorExpressionCache.forContext(context, z3BitVectorCodec.getFixedBitVectorSize());
         finishInitializingEncoders();
         postInitWithContext();
     }
@@ -90,32 +115,37 @@ public abstract class Z3BitVectorFormatTranslator extends AbstractFormatTranslat
             throw new BugInCF("Attempt to serializing ConstantSlot by serializeVarSlot() method. Should use serializeConstantSlot() instead!");
         }
 
-        int slotId = slot.getId();
-
-        if (serializedSlots.containsKey(slotId)) {
-            return serializedSlots.get(slotId);
-        }
-
-        BitVecExpr bitVector = context.mkBVConst(String.valueOf(slot.getId()),
-                z3BitVectorCodec.getFixedBitVectorSize());
-        serializedSlots.put(slotId, bitVector);
-
-        return bitVector;
+        return expressionCache.getSlotVariable(slot.getId());
     }
 
     public BitVecExpr serializeConstantSlot(ConstantSlot slot) {
-        int slotId = slot.getId();
-
-        if (serializedSlots.containsKey(slotId)) {
-            return serializedSlots.get(slotId);
-        }
+        return expressionCache.getNumeral(encodeConstantSlot(slot));
+    }
 
-        BigInteger numeralValue = z3BitVectorCodec.encodeConstantAM(slot.getValue());
+    /**
+     * Returns the bit vector whose set bits are exactly the bits not set in the encoding
+     * of the given constant slot, so that a bit vector {@code v} encodes a subset of the
+     * constant iff {@code v & mask} is zero.
+     */
+    public BitVecNum serializeConstantSlotComplement(ConstantSlot slot) {
+        return expressionCache.getComplement(encodeConstantSlot(slot));
+    }
 
-        BitVecNum bitVecNum = context.mkBV(numeralValue.toString(), z3BitVectorCodec.getFixedBitVectorSize());
-        serializedSlots.put(slotId, bitVecNum);
+    public BitVecNum getZeroBitVector() {
+        return expressionCache.getZero();
+    }
 
-        return bitVecNum;
+    private BigInteger encodeConstantSlot(ConstantSlot slot) {
+        BigInteger numeralValue = constantEncodings.get(slot.getId());
+        if (numeralValue == null) {
+            numeralValue = qualifierEncodings.get(slot.getValue());
+            if (numeralValue == null) {
+                numeralValue = z3BitVectorCodec.encodeConstantAM(slot.getValue());
+                qualifierEncodings.put(slot.getValue(), numeralValue);
+            }
+            constantEncodings.put(slot.getId(), numeralValue);
+        }
+        return numeralValue;
     }
 
     @Override
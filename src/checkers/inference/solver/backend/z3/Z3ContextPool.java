@@ -0,0 +1,175 @@
+package checkers.inference.solver.backend.z3;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import com.microsoft.z3.Context;
+
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+
+/**
+ * A bounded pool of Z3 {@link Context}s that are reused by the Z3 solvers.
+ *
+ * {@link checkers.inference.solver.strategy.GraphSolvingStrategy} creates one solver per
+ * component of the constraint graph. Creating a native Z3 context for each of them is slow
+ * and keeps thousands of contexts alive. Instead, a solver {@link #acquire() acquires} a
+ * context when it starts solving and {@link #release(Context) releases} it when it is done,
+ * so that at most one context is in use per solving thread and idle contexts are reused
+ * by the next component.
+ *
+ * A Z3 context must not be used by two threads at once, so a context is owned by exactly
+ * one solver between acquire and release. If all contexts are in use, acquire waits for
+ * one to be released. Each context is closed and replaced after it has been used for
+ * {@link #MAX_USES_PER_CONTEXT} solvers, which frees the terms that accumulated in it.
+ *
+ * There is one pool per set of context parameters, see {@link #getPool(Map, SolverEnvironment)}.
+ */
+public class Z3ContextPool {
+
+    public enum Z3ContextPoolArg implements SolverArg {
+        /**
+         * the maximum number of open contexts per set of context parameters, which should be at
+         * least the number of threads that solve at the same time. The default value is the
+         * number of available processors.
+         */
+        maxZ3Contexts
+    }
+
+    /**
+     * The number of solvers a context is used for before it is closed and replaced.
+     */
+    public static final int MAX_USES_PER_CONTEXT = 1000;
+
+    private static final Map<Map<String, String>, Z3ContextPool> pools = new HashMap<>();
+
+    private final Map<String, String> contextParams;
+
+    private int maxContexts;
+
+    private final Deque<Context> idleContexts = new ArrayDeque<>();
+
+    /**
+     * The number of solvers each open context has been used for, for all contexts created
+     * by this pool that have not been closed yet.
+     */
+    private final Map<Context, Integer> uses = new IdentityHashMap<>();
+
+    private boolean closed = false;
+
+    public Z3ContextPool(Map<String, String> contextParams, int maxContexts) {
+        this.contextParams = Collections.unmodifiableMap(new HashMap<>(contextParams));
+        this.maxContexts = maxContexts;
+    }
+
+    /**
+     * Returns the shared pool of contexts created with the given parameters, holding at most
+     * {@link Z3ContextPoolArg#maxZ3Contexts} contexts. A pool that is shared by solvers with
+     * different limits holds as many contexts as the largest one.
+     *
+     * @param contextParams the parameters passed to {@link Context#Context(Map)}
+     */
+    public static synchronized Z3ContextPool getPool(Map<String, String> contextParams,
+                                                     SolverEnvironment solverEnvironment) {
+        String maxContextsArg = solverEnvironment.getArg(Z3ContextPoolArg.maxZ3Contexts);
+        int maxContexts = maxContextsArg == null ? Runtime.getRuntime().availableProcessors()
+                                                 : Integer.parseInt(maxContextsArg);
+        if (maxContexts < 1) {
+            throw new BugInCF(Z3ContextPoolArg.maxZ3Contexts + " must be positive, but is " + maxContexts);
+        }
+
+        Z3ContextPool pool = pools.get(contextParams);
+        if (pool == null || pool.isClosed()) {
+            pool = new Z3ContextPool(contextParams, maxContexts);
+            pools.put(pool.contextParams, pool);
+        } else {
+            pool.growTo(maxContexts);
+        }
+        return pool;
+    }
+
+    private synchronized void growTo(int contexts) {
+        if (contexts > maxContexts) {
+            maxContexts = contexts;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Takes an idle context, or creates one if fewer than the maximum number of contexts
+     * are open. Otherwise waits until a context is released.
+     *
+     * The returned context must be given back with {@link #release(Context)}.
+     */
+    public synchronized Context acquire() {
+        if (closed) {
+            throw new BugInCF("Attempt to acquire a Z3 context from a closed pool.");
+        }
+
+        while (idleContexts.isEmpty() && uses.size() >= maxContexts) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BugInCF("Interrupted while waiting for a Z3 context.", e);
+            }
+        }
+
+        if (!idleContexts.isEmpty()) {
+            return idleContexts.pop();
+        }
+
+        Context context = new Context(contextParams);
+        uses.put(context, 0);
+        return context;
+    }
+
+    /**
+     * Gives back a context taken by {@link #acquire()}. The caller must not use the
+     * context, or any Z3 object created from it, afterwards.
+     */
+    public synchronized void release(Context context) {
+        Integer previousUses = uses.get(context);
+        if (previousUses == null) {
+            throw new BugInCF("Attempt to release a Z3 context that does not belong to this pool.");
+        }
+
+        if (closed || previousUses + 1 >= MAX_USES_PER_CONTEXT) {
+            uses.remove(context);
+            closeContext(context);
+        } else {
+            uses.put(context, previousUses + 1);
+            idleContexts.push(context);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Closes the idle contexts of this pool. Contexts that are in use are closed when they
+     * are released, and no more contexts can be acquired.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (Context context : idleContexts) {
+            uses.remove(context);
+            closeContext(context);
+        }
+        idleContexts.clear();
+        notifyAll();
+    }
+
+    private static void closeContext(Context context) {
+        Z3BitVectorExpressionCache.discard(context);
+        context.close();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
@@ -1,6 +1,7 @@
  package checkers.inference.solver.backend.z3;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -27,23 +28,36 @@ import checkers.inference.solver.util.SolverEnvironment;
 
 public class Z3Solver extends Solver<Z3BitVectorFormatTranslator>{
 
-    protected final Context context;
-    protected final Optimize solver;
+    protected final Z3ContextPool contextPool;
+    // Only set while solve() runs, see Z3ContextPool.
+    protected Context context;
+    protected Optimize solver;
     protected final Z3BitVectorCodec z3BitVectorCodec;
 
 
     public Z3Solver(SolverEnvironment solverEnvironment, Collection<Slot> slots,
             Collection<Constraint> constraints, Z3BitVectorFormatTranslator z3FormatTranslator, Lattice lattice) {
         super(solverEnvironment, slots, constraints, z3FormatTranslator, lattice);
-        context = new Context();
-        solver = context.mkOptimize();
-        z3FormatTranslator.initContext(context);
-        z3FormatTranslator.initSolver(solver);
+        contextPool = Z3ContextPool.getPool(Collections.emptyMap(), solverEnvironment);
         z3BitVectorCodec = z3FormatTranslator.getZ3BitVectorCodec();
     }
 
     @Override
     public Map<Integer, AnnotationMirror> solve() {
+        context = contextPool.acquire();
+        try {
+            solver = context.mkOptimize();
+            formatTranslator.initContext(context);
+            formatTranslator.initSolver(solver);
+            return solveWithContext();
+        } finally {
+            solver = null;
+            contextPool.release(context);
+            context = null;
+        }
+    }
+
+    protected Map<Integer, AnnotationMirror> solveWithContext() {
         Map<Integer, AnnotationMirror> result = new HashMap<>();
 
         encodeAllConstraints();
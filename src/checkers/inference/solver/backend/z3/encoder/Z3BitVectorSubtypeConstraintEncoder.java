@@ -20,24 +20,34 @@ public class Z3BitVectorSubtypeConstraintEncoder extends Z3BitVectorAbstractCons
         return true;
     }
 
+    /**
+     * Encodes that the bits of the subset slot are a subset of the bits of the superset slot.
+     * If the superset slot is a constant, the encoding uses the precomputed complement of the
+     * constant: {@code subset & ~superset == 0}. Otherwise it is {@code subset & superset == subset}.
+     */
     protected BoolExpr encode(Slot subtype, Slot supertype) {
-        BitVecExpr subtypeBv = subtype.serialize(z3BitVectorFormatTranslator);
-        BitVecExpr supertypeBv = supertype.serialize(z3BitVectorFormatTranslator);
-        BitVecExpr subSet;
-        BitVecExpr superSet;
+        Slot subSetSlot;
+        Slot superSetSlot;
 
         if (isSubtypeSubset()) {
-            subSet = subtypeBv;
-            superSet = supertypeBv;
+            subSetSlot = subtype;
+            superSetSlot = supertype;
         } else {
-            superSet = subtypeBv;
-            subSet = supertypeBv;
+            subSetSlot = supertype;
+            superSetSlot = subtype;
         }
 
-        BoolExpr sub_intersect_super = context.mkEq(context.mkBVAND(subtypeBv, supertypeBv), subSet);
-        BoolExpr sub_union_super = context.mkEq(context.mkBVOR(subtypeBv, supertypeBv), superSet);
+        BitVecExpr subSet = subSetSlot.serialize(z3BitVectorFormatTranslator);
 
-        return context.mkAnd(sub_intersect_super, sub_union_super);
+        if (superSetSlot instanceof ConstantSlot) {
+            BitVecExpr complementOfSuperSet =
+                    z3BitVectorFormatTranslator.serializeConstantSlotComplement((ConstantSlot) superSetSlot);
+            return context.mkEq(context.mkBVAND(subSet, complementOfSuperSet),
+                    z3BitVectorFormatTranslator.getZeroBitVector());
+        }
+
+        BitVecExpr superSet = superSetSlot.serialize(z3BitVectorFormatTranslator);
+        return context.mkEq(context.mkBVAND(subSet, superSet), subSet);
     }
 
     @Override
@@ -35,8 +35,14 @@ public abstract class Z3SmtFormatTranslator<SlotEncodingT, SlotSolutionT>
         serializedSlots = new HashMap<>();
     }
 
+    /**
+     * Initialize this translator with the given context. The translator may be initialized
+     * again with another context, in which case the slots encoded with the previous
+     * context are discarded.
+     */
     public final void init(Context ctx) {
         this.ctx = ctx;
+        serializedSlots.clear();
         finishInitializingEncoders();
     }
 
@@ -15,56 +15,87 @@ import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.model.VariableSlot;
 import checkers.inference.model.serialization.ToStringSerializer;
 import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.z3.Z3ContextPool;
 import checkers.inference.solver.backend.z3smt.Z3SmtFormatTranslator;
 import checkers.inference.solver.backend.z3smt.encoder.Z3SmtSoftConstraintEncoder;
 import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.util.ExternalSolverUtils;
-import checkers.inference.solver.util.FileUtils;
 import checkers.inference.solver.util.SolverArg;
 import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.SolverInputDumper;
 import checkers.inference.solver.util.Statistics;
 import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
+import com.microsoft.z3.FuncDecl;
+import com.microsoft.z3.IntNum;
+import com.microsoft.z3.Model;
+import com.microsoft.z3.Status;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.lang.model.element.AnnotationMirror;
 import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.Pair;
 
 public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         extends Solver<Z3SmtFormatTranslator<SlotEncodingT, SlotSolutionT>> {
 
     public enum Z3SolverEngineArg implements SolverArg {
         /** option to use optimizing mode or not */
-        optimizingMode
+        optimizingMode,
+        /**
+         * option to solve through the Z3 Java API in this process instead of writing an SMT
+         * file and running the z3 executable on it
+         */
+        inProcess,
+        /**
+         * option to shrink the unsat core reported by {@link #explainUnsatisfiable()} until
+         * every constraint in it is needed for unsatisfiability
+         */
+        minimizeUnsatCore,
+        /**
+         * directory to dump the SMT input of every solve to. No dumps are written if
+         * this option is not given.
+         * @see SolverInputDumper
+         */
+        smtDumpDir,
+        /** size in megabytes after which a new SMT dump file is started, 64 by default */
+        smtDumpMaxFileSizeMB,
+        /** option to write the SMT input of every solve to a dump file of its own */
+        smtDumpPerComponent
     }
 
-    protected final Context ctx;
+    protected static final String SMT_DUMP_PREFIX = "z3Constraints";
+    protected static final long DEFAULT_SMT_DUMP_MAX_FILE_SIZE_MB = 64;
+
+    protected final Z3ContextPool contextPool;
+    // Only set while solve() or explainUnsatisfiable() runs, or from an unsatisfiable
+    // solve() until explainUnsatisfiable() or release(), see Z3ContextPool.
+    protected Context ctx;
     protected com.microsoft.z3.Optimize solver;
     protected StringBuffer smtFileContents;
 
     protected static final String z3Program = "z3";
     protected boolean optimizingMode;
-    protected boolean getUnsatCore;
+    protected boolean inProcess;
 
-    // used in non-optimizing mode to find unsat constraints
+    // the hard constraints of the last encoding, kept to find unsat constraints
+    // without encoding them again
+    protected final List<BoolExpr> encodedSlotConstraints = new ArrayList<>();
+    protected final Map<String, BoolExpr> encodedConstraints = new LinkedHashMap<>();
     protected final Map<String, Constraint> serializedConstraints = new HashMap<>();
-    protected final List<String> unsatConstraintIDs = new ArrayList<>();
 
-    // file is written at projectRootFolder/constraints.smt
-    protected static final String pathToProject =
-            new File(new File("").getAbsolutePath()).toString();
-    protected static final String constraintsFile = pathToProject + "/z3Constraints.smt";
-    protected static final String constraintsUnsatCoreFile =
-            pathToProject + "/z3ConstraintsUnsatCore.smt";
-    protected static final String constraintsStatsFile = pathToProject + "/z3ConstraintsGlob.smt";
+    // null unless dumping is enabled by smtDumpDir
+    protected final SolverInputDumper smtDumper;
 
     // timing statistics variables
     protected long serializationStart;
@@ -86,10 +117,21 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         if (withTimeout()) {
             z3Args.put("timeout", Integer.toString(timeout()));
         }
-        // creating solver
-	    ctx = new Context(z3Args);
+        // contexts are taken from the pool when solving starts
+        contextPool = Z3ContextPool.getPool(z3Args, solverEnvironment);
 
-        z3SmtFormatTranslator.init(ctx);
+        smtDumper = createSmtDumper();
+    }
+
+    private SolverInputDumper createSmtDumper() {
+        String dumpDir = solverEnvironment.getArg(Z3SolverEngineArg.smtDumpDir);
+        if (dumpDir == null) {
+            return null;
+        }
+        String maxFileSize = solverEnvironment.getArg(Z3SolverEngineArg.smtDumpMaxFileSizeMB);
+        long maxFileSizeMB = maxFileSize == null ? DEFAULT_SMT_DUMP_MAX_FILE_SIZE_MB : Long.parseLong(maxFileSize);
+        return SolverInputDumper.getDumper(dumpDir, SMT_DUMP_PREFIX, "smt", maxFileSizeMB * 1024 * 1024,
+                solverEnvironment.getBoolArg(Z3SolverEngineArg.smtDumpPerComponent));
     }
 
     protected boolean withTimeout() {
@@ -100,12 +142,51 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         return 2 * 60 * 1000; // timeout of 2 mins by default
     }
 
+    private void acquireContext() {
+        if (ctx == null) {
+            ctx = contextPool.acquire();
+            formatTranslator.init(ctx);
+        }
+    }
+
+    private void releaseContext() {
+        if (ctx != null) {
+            // the encodings belong to the context, so they must not outlive it
+            solver = null;
+            encodedSlotConstraints.clear();
+            encodedConstraints.clear();
+            contextPool.release(ctx);
+            ctx = null;
+        }
+    }
+
     // Main entry point
     @Override
     public Map<Integer, AnnotationMirror> solve() {
+        releaseContext();
+        acquireContext();
+        boolean unsatisfiable = false;
+        try {
+            Map<Integer, AnnotationMirror> solution = solveWithContext();
+            unsatisfiable = solution == null;
+            return solution;
+        } finally {
+            // the encoding is only kept for explainUnsatisfiable()
+            if (!unsatisfiable) {
+                releaseContext();
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        releaseContext();
+    }
+
+    protected Map<Integer, AnnotationMirror> solveWithContext() {
         // serialize based on user choice of running in optimizing or non-optimizing mode
         optimizingMode = solverEnvironment.getBoolArg(Z3SolverEngineArg.optimizingMode);
-        getUnsatCore = false;
+        inProcess = solverEnvironment.getBoolArg(Z3SolverEngineArg.inProcess);
 
         if (optimizingMode) {
             System.err.println("Encoding for optimizing mode");
@@ -113,12 +194,21 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
             System.err.println("Encoding for non-optimizing mode");
         }
 
-        serializeSMTFileContents();
+        List<String> results;
+        if (inProcess) {
+            encodeConstraintsInProcess();
 
-        solvingStart = System.currentTimeMillis();
-        // in Units, if the status is SAT then there must be output in the model
-        List<String> results = runZ3Solver();
-        solvingEnd = System.currentTimeMillis();
+            solvingStart = System.currentTimeMillis();
+            results = runZ3InProcess();
+            solvingEnd = System.currentTimeMillis();
+        } else {
+            serializeSMTFileContents();
+
+            solvingStart = System.currentTimeMillis();
+            // in Units, if the status is SAT then there must be output in the model
+            results = runZ3Solver();
+            solvingEnd = System.currentTimeMillis();
+        }
 
         Statistics.addOrIncrementEntry(
                 "smt_serialization_time(millisec)", serializationEnd - serializationStart);
@@ -153,44 +243,116 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
                         results, solverEnvironment.processingEnvironment);
     }
 
+    /**
+     * Finds the unsat core among the hard constraints, reusing the encoding of the
+     * unsatisfiable {@link #solve()}, which keeps its context until now. Each constraint is
+     * guarded by an indicator literal and the indicators are passed to the solver as
+     * assumptions, so the core is read from a single check. The constraints are only encoded
+     * if {@link #solve()} was not called before. The context is given back to the pool afterwards.
+     */
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
-        optimizingMode = false;
-        getUnsatCore = true;
+        acquireContext();
+        try {
+            return explainUnsatisfiableWithContext();
+        } finally {
+            releaseContext();
+        }
+    }
 
-        System.err.println("Now encoding for unsat core dump.");
-        serializeSMTFileContents();
+    private Collection<Constraint> explainUnsatisfiableWithContext() {
+        if (solver == null) {
+            System.err.println("Now encoding for unsat core dump.");
+            optimizingMode = false;
+            inProcess = true;
+            encodeConstraintsInProcess();
+            Statistics.addOrIncrementEntry(
+                    "smt_unsat_serialization_time(millisec)", serializationEnd - serializationStart);
+        }
 
         solvingStart = System.currentTimeMillis();
-        runZ3Solver();
+        com.microsoft.z3.Solver coreSolver = ctx.mkSolver();
+        for (BoolExpr slotConstraint : encodedSlotConstraints) {
+            coreSolver.add(slotConstraint);
+        }
+
+        Map<BoolExpr, String> indicatorToConstraintName = new LinkedHashMap<>();
+        for (Map.Entry<String, BoolExpr> entry : encodedConstraints.entrySet()) {
+            BoolExpr indicator = ctx.mkBoolConst("unsat-core!" + entry.getKey());
+            coreSolver.add(ctx.mkImplies(indicator, entry.getValue()));
+            indicatorToConstraintName.put(indicator, entry.getKey());
+        }
+
+        List<BoolExpr> core = findUnsatCore(coreSolver, new ArrayList<>(indicatorToConstraintName.keySet()));
+        if (core != null && solverEnvironment.getBoolArg(Z3SolverEngineArg.minimizeUnsatCore)) {
+            core = minimizeUnsatCore(coreSolver, core);
+        }
         solvingEnd = System.currentTimeMillis();
 
-        Statistics.addOrIncrementEntry(
-                "smt_unsat_serialization_time(millisec)", serializationEnd - serializationStart);
         Statistics.addOrIncrementEntry(
                 "smt_unsat_solving_time(millisec)", solvingEnd - solvingStart);
 
         List<Constraint> unsatConstraints = new ArrayList<>();
+        if (core == null) {
+            return unsatConstraints;
+        }
 
-        for (String constraintID : unsatConstraintIDs) {
-            Constraint c = serializedConstraints.get(constraintID);
+        for (BoolExpr indicator : core) {
+            Constraint c = serializedConstraints.get(indicatorToConstraintName.get(indicator));
             unsatConstraints.add(c);
         }
 
         return unsatConstraints;
     }
 
+    /**
+     * @return the indicators in the unsat core of the given assumptions, or null if the
+     * constraints are not unsatisfiable under them
+     */
+    private List<BoolExpr> findUnsatCore(com.microsoft.z3.Solver coreSolver, List<BoolExpr> assumptions) {
+        Status status = coreSolver.check(assumptions.toArray(new BoolExpr[assumptions.size()]));
+        if (status != Status.UNSATISFIABLE) {
+            if (status == Status.UNKNOWN) {
+                System.err.println("Z3 failed to find an unsat core: " + coreSolver.getReasonUnknown());
+            }
+            return null;
+        }
+        return new ArrayList<>(Arrays.asList(coreSolver.getUnsatCore()));
+    }
+
+    /**
+     * Drops indicators from the core one at a time, keeping an indicator only if the rest
+     * of the core is satisfiable without it. Whenever a smaller core is found, the loop
+     * continues with the core reported by the solver for it.
+     */
+    private List<BoolExpr> minimizeUnsatCore(com.microsoft.z3.Solver coreSolver, List<BoolExpr> core) {
+        List<BoolExpr> required = new ArrayList<>();
+        List<BoolExpr> candidates = new ArrayList<>(core);
+
+        while (!candidates.isEmpty()) {
+            BoolExpr candidate = candidates.remove(candidates.size() - 1);
+
+            List<BoolExpr> assumptions = new ArrayList<>(required);
+            assumptions.addAll(candidates);
+            List<BoolExpr> smallerCore = findUnsatCore(coreSolver, assumptions);
+
+            if (smallerCore == null) {
+                required.add(candidate);
+            } else {
+                candidates.retainAll(smallerCore);
+            }
+        }
+
+        Statistics.addOrIncrementEntry("smt_unsat_core_minimized_away", core.size() - required.size());
+        return required;
+    }
+
     private void serializeSMTFileContents() {
         // make a fresh solver to contain encodings of the slots
         solver = ctx.mkOptimize();
         // make a new buffer to store the serialized smt file contents
         smtFileContents = new StringBuffer();
 
-        // only enable in non-optimizing mode
-        if (!optimizingMode && getUnsatCore) {
-            smtFileContents.append("(set-option :produce-unsat-cores true)\n");
-        }
-
         serializationStart = System.currentTimeMillis();
         encodeAllSlots();
         encodeAllConstraints();
@@ -202,32 +364,39 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         System.err.println("Encoding constraints done!");
 
         smtFileContents.append("(check-sat)\n");
-        if (!optimizingMode && getUnsatCore) {
-            smtFileContents.append("(get-unsat-core)\n");
-        } else {
-            smtFileContents.append("(get-model)\n");
-        }
-        
-        System.err.println("Writing constraints to file: " + constraintsFile);
+        smtFileContents.append("(get-model)\n");
 
-        writeConstraintsToSMTFile();
+        if (smtDumper != null) {
+            smtDumper.dump(smtFileContents.toString());
+        }
     }
 
-    private void writeConstraintsToSMTFile() {
-        String fileContents = smtFileContents.toString();
+    /**
+     * Asserts the slot and constraint encodings directly into a fresh {@link #solver},
+     * without rendering them as SMT-LIB text.
+     */
+    private void encodeConstraintsInProcess() {
+        solver = ctx.mkOptimize();
+        smtFileContents = null;
 
-        if (!getUnsatCore) {
-            // write the constraints to the file for external solver use
-            FileUtils.writeFile(new File(constraintsFile), fileContents);
-        } else {
-            // write the constraints to the file for external solver use
-            FileUtils.writeFile(new File(constraintsUnsatCoreFile), fileContents);
+        serializationStart = System.currentTimeMillis();
+        encodeAllSlots();
+        encodeAllConstraints();
+        if (optimizingMode) {
+            encodeAllSoftConstraints();
+        }
+        serializationEnd = System.currentTimeMillis();
+
+        System.err.println("Encoding constraints done!");
+
+        if (smtDumper != null) {
+            // the SMT-LIB text is only rendered when it is dumped
+            smtDumper.dump(solver.toString());
         }
-        // write a copy in append mode to stats file for later bulk analysis
-        FileUtils.appendFile(new File(constraintsStatsFile), fileContents);
     }
 
     protected void encodeAllSlots() {
+        encodedSlotConstraints.clear();
         // preprocess slots
         formatTranslator.preAnalyzeSlots(slots);
         
@@ -238,6 +407,7 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
 
                 if (!wfConstraint.simplify().isTrue()) {
                     solver.Assert(wfConstraint);
+                    encodedSlotConstraints.add(wfConstraint);
                 }
                 if (optimizingMode) {
                 	encodeSlotPreferenceConstraint(slot);
@@ -245,6 +415,10 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
             }
         }
 
+        if (inProcess) {
+            return;
+        }
+
         // solver.toString() also includes "(check-sat)" as the last line,
         // remove it
         String slotDefinitionsAndConstraints = solver.toString();
@@ -258,6 +432,8 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
     @Override
     protected void encodeAllConstraints() {
         int current = 1;
+        encodedConstraints.clear();
+        serializedConstraints.clear();
 
         StringBuffer constraintSmtFileContents = new StringBuffer();
 
@@ -296,28 +472,30 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
                                 + serializedConstraint);
             }
 
-            String clause = simplifiedConstraint.toString();
-
-            if (!optimizingMode && getUnsatCore) {
-                // add assertions with names, for unsat core dump
-                String constraintName = constraint.getClass().getSimpleName() + current;
+            // keep the encoding and the constraint under a unique name, so that
+            // explainUnsatisfiable() can map an unsat core back to constraints
+            String constraintName = constraint.getClass().getSimpleName() + current;
+            encodedConstraints.put(constraintName, (BoolExpr) simplifiedConstraint);
+            serializedConstraints.put(constraintName, constraint);
 
-                constraintSmtFileContents.append("(assert (! ");
-                constraintSmtFileContents.append(clause);
-                constraintSmtFileContents.append(" :named " + constraintName + "))\n");
-
-                // add constraint to serialized constraints map, so that we can
-                // retrieve later using the constraint name when outputting the unsat core
-                serializedConstraints.put(constraintName, constraint);
-            } else {
-                constraintSmtFileContents.append("(assert ");
-                constraintSmtFileContents.append(clause);
-                constraintSmtFileContents.append(")\n");
+            if (inProcess) {
+                solver.Assert((BoolExpr) simplifiedConstraint);
+                current++;
+                continue;
             }
 
+            constraintSmtFileContents.append("(assert ");
+            constraintSmtFileContents.append(simplifiedConstraint.toString());
+            constraintSmtFileContents.append(")\n");
+
             current++;
         }
 
+        if (inProcess) {
+            // the constraints were asserted into the solver, there is no SMT file to write
+            return;
+        }
+
         String constraintSmt = constraintSmtFileContents.toString();
 
         smtFileContents.append(constraintSmt);
@@ -325,7 +503,13 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
 
     protected void encodeAllSoftConstraints() {
     	final Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT> encoder = formatTranslator.createSoftConstraintEncoder();
-        smtFileContents.append(encoder.encodeAndGetSoftConstraints(constraints));
+        if (inProcess) {
+            for (Pair<Expr, Integer> softConstraint : encoder.encodeSoftConstraints(constraints)) {
+                solver.AssertSoft((BoolExpr) softConstraint.first, softConstraint.second, "");
+            }
+        } else {
+            smtFileContents.append(encoder.encodeAndGetSoftConstraints(constraints));
+        }
     }
 
     protected void encodeSlotPreferenceConstraint(Slot varSlot) {
@@ -336,12 +520,9 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
 
     private List<String> runZ3Solver() {
         // TODO: add z3 stats?
-        String[] command;
-        if (!getUnsatCore) {
-            command = new String[] {z3Program, constraintsFile};
-        } else {
-            command = new String[] {z3Program, constraintsUnsatCoreFile};
-        }
+        // z3 reads the constraints from stdin instead of a file
+        String[] command = new String[] {z3Program, "-in", "-smt2"};
+        final String smtInput = smtFileContents.toString();
 
         // stores results from z3 program output
         final List<String> results = new ArrayList<>();
@@ -351,13 +532,51 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         int exitStatus =
                 ExternalSolverUtils.runExternalSolver(
                         command,
+                        stdIn -> {
+                            try {
+                                stdIn.write(smtInput);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        },
                         stdOut -> parseStdOut(stdOut, results),
                         stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
         // if exit status from z3 is not 0, then it is unsat
         return exitStatus == 0 ? results : null;
     }
 
-    // parses the STD output from the z3 process and handles SAT and UNSAT outputs
+    /**
+     * Checks the constraints asserted into {@link #solver} and reads the model in the same
+     * "varName value" form that {@link #parseStdOut} produces from the output of z3.
+     *
+     * @return the model, or null if the constraints are unsatisfiable or z3 gave up
+     */
+    private List<String> runZ3InProcess() {
+        Status status = solver.Check();
+        if (status != Status.SATISFIABLE) {
+            if (status == Status.UNKNOWN) {
+                System.err.println("Z3 failed to solve the constraints: " + solver.getReasonUnknown());
+            }
+            return null;
+        }
+
+        Model model = solver.getModel();
+        final List<String> results = new ArrayList<>();
+        for (FuncDecl decl : model.getConstDecls()) {
+            Expr value = model.getConstInterp(decl);
+            String valueString;
+            if (value instanceof IntNum) {
+                // Expr.toString() prints negative numbers as "(- n)"
+                valueString = ((IntNum) value).getBigInteger().toString();
+            } else {
+                valueString = value.toString();
+            }
+            results.add(decl.getName().toString() + " " + valueString);
+        }
+        return results;
+    }
+
+    // parses the STD output from the z3 process and handles SAT outputs
     private void parseStdOut(BufferedReader stdOut, List<String> results) {
         String line = "";
 
@@ -365,66 +584,42 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         // each result line is "varName value"
         String resultsLine = "";
 
-        boolean unsat = false;
-
         try {
             while ((line = stdOut.readLine()) != null) {
                 line = line.trim();
 
-                if (getUnsatCore) {
-                    // UNSAT Cases ====================
-                    if (line.contentEquals("unsat")) {
-                        unsat = true;
-                        continue;
-                    }
-                    if (unsat) {
-                        if (line.startsWith("(")) {
-                            line = line.substring(1); // remove open bracket
-                        }
-                        if (line.endsWith(")")) {
-                            line = line.substring(0, line.length() - 1);
-                        }
-
-                        for (String constraintID : line.split(" ")) {
-                            unsatConstraintIDs.add(constraintID);
-                        }
-                        continue;
-                    }
-                } else {
-                    // SAT Cases =======================
-                    // processing define-fun lines
-                    if (declarationLine && line.startsWith("(define-fun")) {
-                        declarationLine = false;
-
-                        int firstBar = line.indexOf('|');
-                        int lastBar = line.lastIndexOf('|');
-
-                        assert firstBar != -1;
-                        assert lastBar != -1;
-                        assert firstBar < lastBar;
-                        assert line.contains("Bool") || line.contains("Int");
-
-                        // copy z3 variable name into results line
-                        resultsLine += line.substring(firstBar + 1, lastBar);
-                        continue;
-                    }
-                    // processing lines immediately following define-fun lines
-                    if (!declarationLine) {
-                        declarationLine = true;
-                        String value = line.substring(0, line.lastIndexOf(')'));
-
-                        if (value.contains("-")) { // negative number
-                            // remove brackets surrounding negative numbers
-                            value = value.substring(1, value.length() - 1);
-                            // remove space between - and the number itself
-                            value = String.join("", value.split(" "));
-                        }
-
-                        resultsLine += " " + value;
-                        results.add(resultsLine);
-                        resultsLine = "";
-                        continue;
+                // processing define-fun lines
+                if (declarationLine && line.startsWith("(define-fun")) {
+                    declarationLine = false;
+
+                    int firstBar = line.indexOf('|');
+                    int lastBar = line.lastIndexOf('|');
+
+                    assert firstBar != -1;
+                    assert lastBar != -1;
+                    assert firstBar < lastBar;
+                    assert line.contains("Bool") || line.contains("Int");
+
+                    // copy z3 variable name into results line
+                    resultsLine += line.substring(firstBar + 1, lastBar);
+                    continue;
+                }
+                // processing lines immediately following define-fun lines
+                if (!declarationLine) {
+                    declarationLine = true;
+                    String value = line.substring(0, line.lastIndexOf(')'));
+
+                    if (value.contains("-")) { // negative number
+                        // remove brackets surrounding negative numbers
+                        value = value.substring(1, value.length() - 1);
+                        // remove space between - and the number itself
+                        value = String.join("", value.split(" "));
                     }
+
+                    resultsLine += " " + value;
+                    results.add(resultsLine);
+                    resultsLine = "";
+                    continue;
                 }
             }
         } catch (IOException e) {
@@ -25,4 +25,13 @@ public abstract class Z3SmtSolverFactory<SlotEncodingT, SlotSolutionT>
         return new Z3SmtSolver<SlotEncodingT, SlotSolutionT>(
                 solverEnvironment, slots, constraints, formatTranslator, lattice);
     }
+
+    /**
+     * In optimizing mode, the solver encodes a preference for every variable slot, see
+     * {@link Z3SmtFormatTranslator#encodeSlotPreferenceConstraint}.
+     */
+    @Override
+    public boolean hasSlotPreferences(SolverEnvironment solverEnvironment) {
+        return solverEnvironment.getBoolArg(Z3SmtSolver.Z3SolverEngineArg.optimizingMode);
+    }
 }
@@ -1,9 +1,12 @@
 package checkers.inference.solver.backend.z3smt.encoder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
+import org.checkerframework.javacutil.Pair;
 
 import checkers.inference.model.ArithmeticConstraint;
 import checkers.inference.model.CombineConstraint;
@@ -37,7 +40,11 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT> {
      */
     protected final Z3SmtFormatTranslator<SlotEncodingT, SlotSolutionT> formatTranslator;
 
-	protected StringBuffer softConstraints;
+	/**
+	 * The soft constraints encoded by the running call of {@link #encodeSoftConstraints}, each
+	 * paired with its weight.
+	 */
+	private List<Pair<Expr, Integer>> softConstraints;
 
     public Z3SmtSoftConstraintEncoder(
     	    Lattice lattice,
@@ -46,7 +53,6 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT> {
     	this.lattice = lattice;
         this.formatTranslator = z3SmtFormatTranslator;
         this.ctx = ctx;
-        this.softConstraints = new StringBuffer();
     }
 	
     protected abstract void encodeSoftSubtypeConstraint(SubtypeConstraint constraint);
@@ -70,10 +76,38 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT> {
     protected abstract void encodeSoftPreferenceConstraint(PreferenceConstraint constraint);
 
     protected void addSoftConstraint(Expr serializedConstraint, int weight) {
-    	softConstraints.append("(assert-soft " + serializedConstraint + " :weight " + weight + ")\n");
+    	softConstraints.add(Pair.of(serializedConstraint, weight));
     }
-    
+
+    /**
+     * Encodes the soft constraints of the given constraints and returns them in SMT-LIB
+     * format, one assert-soft per line.
+     */
     public String encodeAndGetSoftConstraints(Collection<Constraint> constraints) {
+        StringBuilder softConstraintsText = new StringBuilder();
+        for (Pair<Expr, Integer> softConstraint : encodeSoftConstraints(constraints)) {
+            softConstraintsText.append("(assert-soft " + softConstraint.first + " :weight " + softConstraint.second + ")\n");
+        }
+        return softConstraintsText.toString();
+    }
+
+    /**
+     * Encodes the soft constraints of the given constraints.
+     *
+     * @return the encoded soft constraints, each paired with its weight
+     */
+    public List<Pair<Expr, Integer>> encodeSoftConstraints(Collection<Constraint> constraints) {
+        List<Pair<Expr, Integer>> encoded = new ArrayList<>();
+        softConstraints = encoded;
+        try {
+            encodeSoftConstraintsOf(constraints);
+        } finally {
+            softConstraints = null;
+        }
+        return encoded;
+    }
+
+    private void encodeSoftConstraintsOf(Collection<Constraint> constraints) {
         for (Constraint constraint : constraints) {
             // Generate a soft constraint for subtype constraint
             if (constraint instanceof SubtypeConstraint) {
@@ -116,6 +150,5 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT> {
             	encodeSoftPreferenceConstraint((PreferenceConstraint) constraint);
             }
         }
-    	return softConstraints.toString();
     }
 }
@@ -1,13 +1,21 @@
 package checkers.inference.solver.frontend;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import javax.lang.model.element.AnnotationMirror;
 
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.BugInCF;
 
 /**
  * Lattice class pre-cache necessary qualifier information from qualifier hierarchy for
@@ -17,6 +25,10 @@ import org.checkerframework.framework.type.QualifierHierarchy;
  * qualifier, all type qualifier, and bottom and top qualifiers from an instance
  * of this class.
  *
+ * A lattice also caches the artifacts that solver backends derive from it, such as
+ * the numbering of its qualifiers or the encoding of its subtype relation, so that they
+ * are computed once rather than once per sub-solver. See {@link #getArtifact(String, Function)}.
+ *
  * @author jianchu
  *
  */
@@ -73,6 +85,13 @@ public class Lattice {
     /* @Nullable */
     private final QualifierHierarchy underlyingQualifierHierarchy;
 
+    /**
+     * Artifacts derived from this lattice, keyed by name. See {@link #getArtifact(String, Function)}.
+     */
+    private final Map<String, Object> artifacts = new ConcurrentHashMap<>();
+
+    private volatile String fingerprint;
+
     public Lattice(Map<AnnotationMirror, Collection<AnnotationMirror>> subType,
             Map<AnnotationMirror, Collection<AnnotationMirror>> superType,
             Map<AnnotationMirror, Collection<AnnotationMirror>> incomparableType,
@@ -93,4 +112,71 @@ public class Lattice {
         return underlyingQualifierHierarchy.isSubtype(a1, a2);
 
     }
+
+    /**
+     * Returns the artifact with the given name, computing it from this lattice on first use.
+     * Artifacts are shared by all solvers using this lattice, possibly from several threads,
+     * so they must not be modified, or must be thread safe.
+     *
+     * @param name the name of the artifact, which should be qualified by the class that
+     *             computes it to avoid collisions between backends
+     * @param factory computes the artifact. It may be called more than once if several threads
+     *                request the artifact at the same time, but only one result is kept
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getArtifact(String name, Function<Lattice, ? extends T> factory) {
+        Object artifact = artifacts.get(name);
+        if (artifact == null) {
+            // Not computeIfAbsent: a factory may request other artifacts of this lattice.
+            artifact = factory.apply(this);
+            Object previous = artifacts.putIfAbsent(name, artifact);
+            if (previous != null) {
+                artifact = previous;
+            }
+        }
+        return (T) artifact;
+    }
+
+    /**
+     * Returns a hash of the qualifiers of this lattice and the subtype relation between
+     * them, which is the same for lattices built from the same type system in different
+     * runs. It identifies the cached artifacts of this lattice on disk, see {@link LatticeDiskCache}.
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            List<String> lines = new ArrayList<>();
+            for (AnnotationMirror type : allTypes) {
+                List<String> supertypes = new ArrayList<>();
+                Collection<AnnotationMirror> supertypesOfType = superType.get(type);
+                if (supertypesOfType != null) {
+                    for (AnnotationMirror supertype : supertypesOfType) {
+                        supertypes.add(supertype.toString());
+                    }
+                }
+                Collections.sort(supertypes);
+                lines.add(type + " <: " + supertypes);
+            }
+            Collections.sort(lines);
+            lines.add("top " + top);
+            lines.add("bottom " + bottom);
+
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (String line : lines) {
+                    digest.update(line.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '\n');
+                }
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(String.format("%02x", b));
+                }
+                result = hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new BugInCF("SHA-256 is not available.", e);
+            }
+            fingerprint = result;
+        }
+        return result;
+    }
 }
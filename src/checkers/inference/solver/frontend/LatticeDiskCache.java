@@ -0,0 +1,74 @@
+package checkers.inference.solver.frontend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches text artifacts derived from a {@link Lattice} on disk, so that they are computed
+ * once per type system rather than once per inference run.
+ *
+ * An artifact is stored in {@code <cacheDir>/<lattice fingerprint>.<name>}, see
+ * {@link Lattice#getFingerprint()}. The first line of the file repeats the fingerprint and
+ * the name; a file whose first line does not match is ignored and overwritten. Files are
+ * written to a temporary file first and then moved into place, so that concurrent runs
+ * never read a partially written artifact.
+ */
+public class LatticeDiskCache {
+
+    public static final Logger logger = Logger.getLogger(LatticeDiskCache.class.getName());
+
+    /**
+     * Returns the artifact with the given name of the lattice from the cache directory, or
+     * computes it with the generator and stores it in the cache directory.
+     *
+     * @param cacheDir the cache directory, or null to always compute the artifact
+     */
+    public static String getText(Lattice lattice, String name, /* @Nullable */ String cacheDir,
+                                 Supplier<String> generator) {
+        if (cacheDir == null) {
+            return generator.get();
+        }
+
+        File dir = new File(cacheDir);
+        File file = new File(dir, lattice.getFingerprint() + "." + name);
+        String header = lattice.getFingerprint() + " " + name + "\n";
+
+        if (file.isFile()) {
+            try {
+                String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                if (contents.startsWith(header)) {
+                    return contents.substring(header.length());
+                }
+                logger.warning("Ignoring corrupt lattice cache file " + file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to read lattice cache file " + file, e);
+            }
+        }
+
+        String text = generator.get();
+        File tempFile = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+            Files.write(tempFile.toPath(), (header + text).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write lattice cache file " + file, e);
+        } finally {
+            if (tempFile != null) {
+                // Only left over if the move failed.
+                tempFile.delete();
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,121 @@
+package checkers.inference.solver.propagation;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Computes the least fixpoint of sets that flow along the edges of a graph of variables: the
+ * set of every variable must include the sets of the variables with an edge to it.
+ *
+ * The elements of the sets are numbered by the caller, so the set of each variable is a
+ * bitset. Variables are numbered densely from 0. After the initial sets and the edges are
+ * added, {@link #propagate()} revisits a variable only when its set grew, and then only
+ * updates the variables it has an edge to.
+ */
+public class BitSetPropagation {
+
+    private final long[][] values;
+
+    private final int[][] successors;
+
+    private final int[] numSuccessors;
+
+    /**
+     * @param numVariables the number of variables
+     * @param numBits the number of elements of the sets
+     */
+    public BitSetPropagation(int numVariables, int numBits) {
+        int words = (numBits + 63) / 64;
+        values = new long[numVariables][words];
+        successors = new int[numVariables][];
+        numSuccessors = new int[numVariables];
+    }
+
+    /**
+     * Requires the set of {@code to} to include the set of {@code from}.
+     */
+    public void addEdge(int from, int to) {
+        int[] edges = successors[from];
+        if (edges == null) {
+            edges = successors[from] = new int[2];
+        } else if (numSuccessors[from] == edges.length) {
+            edges = successors[from] = Arrays.copyOf(edges, edges.length * 2);
+        }
+        edges[numSuccessors[from]++] = to;
+    }
+
+    /**
+     * Adds the given element to the set of the given variable.
+     */
+    public void addBit(int variable, int bit) {
+        values[variable][bit / 64] |= 1L << (bit % 64);
+    }
+
+    /**
+     * Adds the given elements to the set of the given variable.
+     */
+    public void addBits(int variable, long[] bits) {
+        union(values[variable], bits);
+    }
+
+    /**
+     * Grows the sets along the edges until they include the sets of their predecessors.
+     */
+    public void propagate() {
+        int numVariables = values.length;
+        // A variable is on the worklist iff its set grew since its successors were last updated.
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean[] onWorklist = new boolean[numVariables];
+        for (int i = 0; i < numVariables; i++) {
+            if (!isEmpty(values[i])) {
+                worklist.add(i);
+                onWorklist[i] = true;
+            }
+        }
+        while (!worklist.isEmpty()) {
+            int from = worklist.poll();
+            onWorklist[from] = false;
+            for (int i = 0; i < numSuccessors[from]; i++) {
+                int to = successors[from][i];
+                if (union(values[to], values[from]) && !onWorklist[to]) {
+                    worklist.add(to);
+                    onWorklist[to] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the set of the given variable, which must not be modified
+     */
+    public long[] getBits(int variable) {
+        return values[variable];
+    }
+
+    /**
+     * Add the bits of from to to. from may be shorter than to.
+     *
+     * @return true if to changed
+     */
+    public static boolean union(long[] to, long[] from) {
+        boolean changed = false;
+        for (int i = 0; i < from.length; i++) {
+            long union = to[i] | from[i];
+            if (union != to[i]) {
+                to[i] = union;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
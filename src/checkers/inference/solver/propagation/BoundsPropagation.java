@@ -0,0 +1,300 @@
+package checkers.inference.solver.propagation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+
+/**
+ * Computes the lower and upper bound of every variable slot of a set of subtype and equality
+ * constraints over a lattice, by propagating the bounds given by constants along the
+ * constraints until a fixpoint is reached.
+ *
+ * The lower bound of a variable is the least upper bound of the constants and variables that
+ * must be its subtypes, starting from bottom; the upper bound is the greatest lower bound of
+ * the constants and variables that must be its supertypes, starting from top. Slots are
+ * numbered densely and the bounds are kept as qualifier numbers of {@link LatticeOperations},
+ * and a worklist revisits a variable only when its bound changed.
+ *
+ * If the constraints are satisfiable, assigning each variable its lower bound is their least
+ * solution and assigning its upper bound is their greatest solution; a variable whose bounds
+ * are equal has the same value in every solution. If some lower bound is not a subtype of the
+ * corresponding upper bound, the constraints are not satisfiable. If two bounds have no unique
+ * least upper or greatest lower bound, the qualifiers do not form a lattice and nothing is
+ * known about the constraints.
+ */
+public class BoundsPropagation {
+
+    public enum Result {
+        /**
+         * The bounds of every variable are consistent, so the constraints are satisfiable.
+         */
+        SATISFIABLE,
+
+        /**
+         * The lower bound of a variable is not a subtype of its upper bound, or two
+         * constants violate a constraint between them.
+         */
+        UNSATISFIABLE,
+
+        /**
+         * Two bounds have no unique least upper bound or greatest lower bound.
+         */
+        UNKNOWN
+    }
+
+    private final LatticeOperations operations;
+
+    /**
+     * Dense index of every variable slot id that occurs in a constraint, in order of occurrence.
+     */
+    private final Map<Integer, Integer> variableIndex = new LinkedHashMap<>();
+
+    private int[] lowerBounds;
+
+    private int[] upperBounds;
+
+    private Result result;
+
+    /**
+     * Propagates the bounds of the given constraints, which must all be supported, see
+     * {@link #isSupported(Constraint, LatticeOperations)}.
+     */
+    public BoundsPropagation(LatticeOperations operations, Collection<? extends Constraint> constraints) {
+        this.operations = operations;
+        this.result = propagate(constraints);
+    }
+
+    /**
+     * Whether the given constraint is a subtype or equality constraint whose constant slots
+     * are qualifiers of the lattice.
+     */
+    public static boolean isSupported(Constraint constraint, LatticeOperations operations) {
+        if (!(constraint instanceof SubtypeConstraint) && !(constraint instanceof EqualityConstraint)) {
+            return false;
+        }
+        for (Slot slot : constraint.getSlots()) {
+            if (slot.getKind() == Slot.Kind.EXISTENTIAL_VARIABLE) {
+                return false;
+            }
+            if (slot.isConstant() && operations.indexOf(((ConstantSlot) slot).getValue()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Result propagate(Collection<? extends Constraint> constraints) {
+        // Index the constraints: edges from subtype to supertype between variables, and constant bounds.
+        List<int[]> edges = new ArrayList<>();
+        List<int[]> lowerConstantBounds = new ArrayList<>();
+        List<int[]> upperConstantBounds = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            Slot subtype;
+            Slot supertype;
+            if (constraint instanceof SubtypeConstraint) {
+                subtype = ((SubtypeConstraint) constraint).getSubtype();
+                supertype = ((SubtypeConstraint) constraint).getSupertype();
+            } else {
+                subtype = ((EqualityConstraint) constraint).getFirst();
+                supertype = ((EqualityConstraint) constraint).getSecond();
+            }
+            boolean isEquality = constraint instanceof EqualityConstraint;
+
+            if (subtype.isConstant() && supertype.isConstant()) {
+                int first = constantValue(subtype);
+                int second = constantValue(supertype);
+                if (isEquality ? first != second : !operations.isSubtype(first, second)) {
+                    return Result.UNSATISFIABLE;
+                }
+            } else if (subtype.isConstant()) {
+                int constant = constantValue(subtype);
+                int variable = indexVariable(supertype);
+                lowerConstantBounds.add(new int[] {variable, constant});
+                if (isEquality) {
+                    upperConstantBounds.add(new int[] {variable, constant});
+                }
+            } else if (supertype.isConstant()) {
+                int variable = indexVariable(subtype);
+                int constant = constantValue(supertype);
+                upperConstantBounds.add(new int[] {variable, constant});
+                if (isEquality) {
+                    lowerConstantBounds.add(new int[] {variable, constant});
+                }
+            } else {
+                int sub = indexVariable(subtype);
+                int sup = indexVariable(supertype);
+                edges.add(new int[] {sub, sup});
+                if (isEquality) {
+                    edges.add(new int[] {sup, sub});
+                }
+            }
+        }
+
+        final int numVariables = variableIndex.size();
+        lowerBounds = new int[numVariables];
+        upperBounds = new int[numVariables];
+        Arrays.fill(lowerBounds, operations.bottom);
+        Arrays.fill(upperBounds, operations.top);
+
+        for (int[] bound : lowerConstantBounds) {
+            lowerBounds[bound[0]] = operations.lub(lowerBounds[bound[0]], bound[1]);
+            if (lowerBounds[bound[0]] == LatticeOperations.NO_BOUND) {
+                return Result.UNKNOWN;
+            }
+        }
+        for (int[] bound : upperConstantBounds) {
+            upperBounds[bound[0]] = operations.glb(upperBounds[bound[0]], bound[1]);
+            if (upperBounds[bound[0]] == LatticeOperations.NO_BOUND) {
+                return Result.UNKNOWN;
+            }
+        }
+
+        // Lower bounds flow from subtypes to supertypes, upper bounds from supertypes to subtypes.
+        int[][] supertypes = toAdjacency(edges, numVariables, false);
+        int[][] subtypes = toAdjacency(edges, numVariables, true);
+        if (!propagate(lowerBounds, supertypes, true) || !propagate(upperBounds, subtypes, false)) {
+            return Result.UNKNOWN;
+        }
+
+        for (int i = 0; i < numVariables; i++) {
+            if (!operations.isSubtype(lowerBounds[i], upperBounds[i])) {
+                return Result.UNSATISFIABLE;
+            }
+        }
+        return Result.SATISFIABLE;
+    }
+
+    /**
+     * Propagates the given bounds along the given successors to a fixpoint, combining them with
+     * least upper bounds if {@code lower}, greatest lower bounds otherwise.
+     *
+     * @return false if two bounds have no unique least upper or greatest lower bound
+     */
+    private boolean propagate(int[] bounds, int[][] successors, boolean lower) {
+        final int initial = lower ? operations.bottom : operations.top;
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean[] onWorklist = new boolean[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i] != initial) {
+                worklist.add(i);
+                onWorklist[i] = true;
+            }
+        }
+        while (!worklist.isEmpty()) {
+            int from = worklist.poll();
+            onWorklist[from] = false;
+            for (int to : successors[from]) {
+                int bound = lower ? operations.lub(bounds[to], bounds[from]) : operations.glb(bounds[to], bounds[from]);
+                if (bound == LatticeOperations.NO_BOUND) {
+                    return false;
+                }
+                if (bound != bounds[to]) {
+                    bounds[to] = bound;
+                    if (!onWorklist[to]) {
+                        worklist.add(to);
+                        onWorklist[to] = true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int[][] toAdjacency(List<int[]> edges, int numVariables, boolean reversed) {
+        int[] degrees = new int[numVariables];
+        for (int[] edge : edges) {
+            degrees[edge[reversed ? 1 : 0]]++;
+        }
+        int[][] adjacency = new int[numVariables][];
+        for (int i = 0; i < numVariables; i++) {
+            adjacency[i] = new int[degrees[i]];
+        }
+        for (int[] edge : edges) {
+            int from = edge[reversed ? 1 : 0];
+            adjacency[from][--degrees[from]] = edge[reversed ? 0 : 1];
+        }
+        return adjacency;
+    }
+
+    private int indexVariable(Slot slot) {
+        Integer index = variableIndex.get(slot.getId());
+        if (index == null) {
+            index = variableIndex.size();
+            variableIndex.put(slot.getId(), index);
+        }
+        return index;
+    }
+
+    private int constantValue(Slot slot) {
+        return operations.indexOf(((ConstantSlot) slot).getValue());
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return whether the given slot id is a variable of the constraints
+     */
+    public boolean hasVariable(int slotId) {
+        return variableIndex.containsKey(slotId);
+    }
+
+    /**
+     * @return the lower bound of the variable with the given slot id. Only meaningful if the
+     * result is {@link Result#SATISFIABLE}.
+     */
+    public AnnotationMirror getLowerBound(int slotId) {
+        return operations.getType(lowerBounds[variableIndex.get(slotId)]);
+    }
+
+    /**
+     * @return the upper bound of the variable with the given slot id. Only meaningful if the
+     * result is {@link Result#SATISFIABLE}.
+     */
+    public AnnotationMirror getUpperBound(int slotId) {
+        return operations.getType(upperBounds[variableIndex.get(slotId)]);
+    }
+
+    /**
+     * Returns the least solution of the constraints, or the greatest one if {@code greatest}.
+     * Only meaningful if the result is {@link Result#SATISFIABLE}.
+     */
+    public Map<Integer, AnnotationMirror> getSolution(boolean greatest) {
+        int[] bounds = greatest ? upperBounds : lowerBounds;
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        for (Map.Entry<Integer, Integer> variable : variableIndex.entrySet()) {
+            solution.put(variable.getKey(), operations.getType(bounds[variable.getValue()]));
+        }
+        return solution;
+    }
+
+    /**
+     * Returns the value of every variable whose lower and upper bounds are equal, which is
+     * its value in every solution. Only meaningful if the result is {@link Result#SATISFIABLE}.
+     */
+    public Map<Integer, AnnotationMirror> getForcedValues() {
+        Map<Integer, AnnotationMirror> forced = new HashMap<>();
+        for (Map.Entry<Integer, Integer> variable : variableIndex.entrySet()) {
+            int index = variable.getValue();
+            if (lowerBounds[index] == upperBounds[index]) {
+                forced.put(variable.getKey(), operations.getType(lowerBounds[index]));
+            }
+        }
+        return forced;
+    }
+}
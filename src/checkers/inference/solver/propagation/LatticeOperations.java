@@ -0,0 +1,157 @@
+package checkers.inference.solver.propagation;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * The qualifiers of a {@link Lattice} numbered 0..n-1, with their subtype relation and their
+ * least upper and greatest lower bounds as tables over these numbers.
+ *
+ * The tables are computed once per lattice and shared through {@link Lattice#getArtifact},
+ * see {@link #of(Lattice)}. They are not modified afterwards, so they may be used by several
+ * threads.
+ */
+public class LatticeOperations {
+
+    /**
+     * The result of {@link #lub(int, int)} and {@link #glb(int, int)} if the two qualifiers
+     * have no unique least upper or greatest lower bound, i.e. if the qualifiers do not form a
+     * lattice.
+     */
+    public static final int NO_BOUND = -1;
+
+    private static final String ARTIFACT = LatticeOperations.class.getName();
+
+    private final AnnotationMirror[] types;
+
+    private final Map<AnnotationMirror, Integer> typeIndex;
+
+    /**
+     * isSubtype[a][b] iff a is a subtype of b.
+     */
+    private final boolean[][] isSubtype;
+
+    private final int[][] lubs;
+
+    private final int[][] glbs;
+
+    public final int top;
+
+    public final int bottom;
+
+    private LatticeOperations(Lattice lattice) {
+        final int numTypes = lattice.allTypes.size();
+        this.types = new AnnotationMirror[numTypes];
+        this.typeIndex = AnnotationUtils.createAnnotationMap();
+        int i = 0;
+        for (AnnotationMirror type : lattice.allTypes) {
+            types[i] = type;
+            typeIndex.put(type, i);
+            i++;
+        }
+
+        this.isSubtype = new boolean[numTypes][numTypes];
+        for (int sup = 0; sup < numTypes; sup++) {
+            Collection<AnnotationMirror> subtypes = lattice.subType.get(types[sup]);
+            if (subtypes == null) {
+                continue;
+            }
+            for (AnnotationMirror subtype : subtypes) {
+                Integer sub = typeIndex.get(subtype);
+                if (sub != null) {
+                    isSubtype[sub][sup] = true;
+                }
+            }
+        }
+        for (int type = 0; type < numTypes; type++) {
+            isSubtype[type][type] = true;
+        }
+
+        this.lubs = new int[numTypes][numTypes];
+        this.glbs = new int[numTypes][numTypes];
+        for (int a = 0; a < numTypes; a++) {
+            for (int b = a; b < numTypes; b++) {
+                lubs[a][b] = lubs[b][a] = computeBound(a, b, true);
+                glbs[a][b] = glbs[b][a] = computeBound(a, b, false);
+            }
+        }
+
+        this.top = indexOf(lattice.top);
+        this.bottom = indexOf(lattice.bottom);
+    }
+
+    /**
+     * Returns the operations of the given lattice, computing them on first use.
+     */
+    public static LatticeOperations of(Lattice lattice) {
+        return lattice.getArtifact(ARTIFACT, LatticeOperations::new);
+    }
+
+    /**
+     * Finds the least common supertype of a and b if {@code upper}, otherwise their greatest
+     * common subtype.
+     */
+    private int computeBound(int a, int b, boolean upper) {
+        int bound = NO_BOUND;
+        for (int candidate = 0; candidate < types.length; candidate++) {
+            if (upper ? !(isSubtype[a][candidate] && isSubtype[b][candidate])
+                      : !(isSubtype[candidate][a] && isSubtype[candidate][b])) {
+                continue;
+            }
+            if (bound == NO_BOUND || (upper ? isSubtype[candidate][bound] : isSubtype[bound][candidate])) {
+                bound = candidate;
+            }
+        }
+        if (bound == NO_BOUND) {
+            return NO_BOUND;
+        }
+        // The bound must be below (above) every common supertype (subtype), otherwise it is not unique.
+        for (int candidate = 0; candidate < types.length; candidate++) {
+            if (upper ? isSubtype[a][candidate] && isSubtype[b][candidate] && !isSubtype[bound][candidate]
+                      : isSubtype[candidate][a] && isSubtype[candidate][b] && !isSubtype[candidate][bound]) {
+                return NO_BOUND;
+            }
+        }
+        return bound;
+    }
+
+    public int getNumTypes() {
+        return types.length;
+    }
+
+    /**
+     * @return the number of the given qualifier, or -1 if it is not a qualifier of the lattice
+     */
+    public int indexOf(AnnotationMirror type) {
+        Integer index = typeIndex.get(type);
+        return index == null ? -1 : index;
+    }
+
+    public AnnotationMirror getType(int type) {
+        return types[type];
+    }
+
+    public boolean isSubtype(int subtype, int supertype) {
+        return isSubtype[subtype][supertype];
+    }
+
+    /**
+     * @return the least upper bound of a and b, or {@link #NO_BOUND}
+     */
+    public int lub(int a, int b) {
+        return lubs[a][b];
+    }
+
+    /**
+     * @return the greatest lower bound of a and b, or {@link #NO_BOUND}
+     */
+    public int glb(int a, int b) {
+        return glbs[a][b];
+    }
+}
@@ -0,0 +1,145 @@
+package checkers.inference.solver.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceResult;
+import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintManager;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * Simplifies a set of constraints before it is given to a solving strategy, by fixing the
+ * variable slots whose value is forced by the subtype and equality constraints.
+ *
+ * The bounds of the variables are propagated with {@link BoundsPropagation} over the subtype
+ * and equality constraints between qualifiers of the lattice; the other constraints are
+ * ignored, so the bounds hold in every solution of all constraints. A variable whose lower and
+ * upper bounds are equal is forced to that value. Then:
+ * <ul>
+ *     <li>A supported constraint whose variables are all forced is satisfied by the forced
+ *     values, and is removed.</li>
+ *     <li>A forced variable that still occurs in a remaining constraint is fixed by a unit
+ *     equality constraint with its value, so the backend does not search its value.</li>
+ *     <li>The forced values are merged into the result of the strategy by
+ *     {@link #mergeResult(InferenceResult)}, including those of the variables that no longer
+ *     occur in any constraint.</li>
+ * </ul>
+ *
+ * If propagation finds the constraints unsatisfiable, or the qualifiers are not a lattice,
+ * nothing is simplified and the backend sees the original constraints, so that it can
+ * explain the conflict.
+ */
+public class PropagationPreSolver {
+
+    private final Map<Integer, AnnotationMirror> forcedValues;
+
+    private final List<Constraint> remainingConstraints;
+
+    private int removedConstraints = 0;
+
+    private int unitConstraints = 0;
+
+    public PropagationPreSolver(Collection<Constraint> constraints, Lattice lattice) {
+        LatticeOperations operations = LatticeOperations.of(lattice);
+        List<Constraint> supportedConstraints = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (BoundsPropagation.isSupported(constraint, operations)) {
+                supportedConstraints.add(constraint);
+            }
+        }
+
+        BoundsPropagation propagation = new BoundsPropagation(operations, supportedConstraints);
+        if (propagation.getResult() != BoundsPropagation.Result.SATISFIABLE) {
+            this.forcedValues = Collections.emptyMap();
+            this.remainingConstraints = new ArrayList<>(constraints);
+            return;
+        }
+
+        this.forcedValues = propagation.getForcedValues();
+        this.remainingConstraints = new ArrayList<>();
+        Map<Integer, Slot> fixedSlots = new LinkedHashMap<>();
+        for (Constraint constraint : constraints) {
+            boolean allForced = true;
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable() && !forcedValues.containsKey(slot.getId())) {
+                    allForced = false;
+                    break;
+                }
+            }
+            if (allForced && BoundsPropagation.isSupported(constraint, operations)) {
+                removedConstraints++;
+                continue;
+            }
+
+            remainingConstraints.add(constraint);
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable() && forcedValues.containsKey(slot.getId())) {
+                    fixedSlots.put(slot.getId(), slot);
+                }
+            }
+        }
+
+        SlotManager slotManager = InferenceMain.getInstance().getSlotManager();
+        ConstraintManager constraintManager = InferenceMain.getInstance().getConstraintManager();
+        for (Slot slot : fixedSlots.values()) {
+            ConstantSlot value = slotManager.createConstantSlot(forcedValues.get(slot.getId()));
+            remainingConstraints.add(constraintManager.createEqualityConstraint(slot, value));
+            unitConstraints++;
+        }
+    }
+
+    /**
+     * @return the variables whose value is forced, and their values
+     */
+    public Map<Integer, AnnotationMirror> getForcedValues() {
+        return forcedValues;
+    }
+
+    /**
+     * @return the constraints that are not satisfied by the forced values alone, followed by
+     * an equality constraint for each forced variable that occurs in them
+     */
+    public Collection<Constraint> getRemainingConstraints() {
+        return remainingConstraints;
+    }
+
+    /**
+     * @return the number of constraints that were removed
+     */
+    public int getRemovedConstraintCount() {
+        return removedConstraints;
+    }
+
+    /**
+     * @return the number of equality constraints that were added for forced variables
+     */
+    public int getUnitConstraintCount() {
+        return unitConstraints;
+    }
+
+    /**
+     * Adds the forced values to the solutions of the given result of solving the remaining
+     * constraints. A result without solution is returned as is.
+     */
+    public InferenceResult mergeResult(InferenceResult result) {
+        if (!result.hasSolution() || forcedValues.isEmpty()) {
+            return result;
+        }
+        Map<Integer, AnnotationMirror> solutions = new HashMap<>(forcedValues);
+        solutions.putAll(result.getSolutions());
+        return new DefaultInferenceResult(solutions);
+    }
+}
@@ -0,0 +1,172 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceResult;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.propagation.BoundsPropagation;
+import checkers.inference.solver.propagation.LatticeOperations;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * FixpointSolvingStrategy solves subtype and equality constraints over any lattice without
+ * an underlying solver:
+ *
+ * 1. Divide the constraints into components of constraints that share variable slots.
+ * 2. For each component that only has subtype and equality constraints between qualifiers of
+ *    the lattice, propagate the bounds of its variables with {@link BoundsPropagation}, and
+ *    take the least solution (or the greatest, see {@link FixpointSolvingStrategyArg#fixpointSolution}).
+ * 3. Solve the remaining components with the underlying solver. It is also asked to explain
+ *    the components that propagation finds unsatisfiable, and to solve the components whose
+ *    qualifiers do not form a lattice.
+ *
+ * Solutions are computed by a least upper bound (greatest lower bound) worklist over dense
+ * slot and qualifier numbers, so type systems that only generate subtype and equality
+ * constraints are solved without encoding anything for a SAT or SMT solver.
+ */
+public class FixpointSolvingStrategy extends AbstractSolvingStrategy {
+
+    public enum FixpointSolvingStrategyArg implements SolverArg {
+        /**
+         * "least" (default) to infer the least solution of each component, "greatest" to
+         * infer the greatest solution
+         */
+        fixpointSolution;
+    }
+
+    public FixpointSolvingStrategy(SolverFactory solverFactory) {
+        super(solverFactory);
+    }
+
+    @Override
+    public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+                                 Collection<Constraint> constraints, Lattice lattice) {
+
+        final boolean greatest = "greatest".equalsIgnoreCase(
+                solverEnvironment.getArg(FixpointSolvingStrategyArg.fixpointSolution));
+        final LatticeOperations operations = LatticeOperations.of(lattice);
+
+        final long solvingStart = System.currentTimeMillis();
+        Map<Integer, AnnotationMirror> solutions = new HashMap<>();
+        int propagatedComponents = 0;
+        int backendComponents = 0;
+
+        for (List<Constraint> component : separateComponents(constraints)) {
+            boolean supported = true;
+            for (Constraint constraint : component) {
+                if (!BoundsPropagation.isSupported(constraint, operations)) {
+                    supported = false;
+                    break;
+                }
+            }
+
+            if (supported) {
+                BoundsPropagation propagation = new BoundsPropagation(operations, component);
+                if (propagation.getResult() == BoundsPropagation.Result.SATISFIABLE) {
+                    solutions.putAll(propagation.getSolution(greatest));
+                    propagatedComponents++;
+                    continue;
+                }
+            }
+
+            backendComponents++;
+            Solver<?> underlyingSolver = solverFactory.createSolver(solverEnvironment, slots, component, lattice);
+            try {
+                Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
+                if (solution == null) {
+                    return new DefaultInferenceResult(underlyingSolver.explainUnsatisfiable());
+                }
+                solutions.putAll(solution);
+            } finally {
+                underlyingSolver.release();
+            }
+        }
+        final long solvingEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry("fixpoint_propagated_components", propagatedComponents);
+        Statistics.addOrIncrementEntry("fixpoint_backend_components", backendComponents);
+        Statistics.addOrIncrementEntry("fixpoint_solving_time(ms)", solvingEnd - solvingStart);
+        Statistics.addOrIncrementEntry("annotation_size", solutions.size());
+        return new DefaultInferenceResult(solutions);
+    }
+
+    /**
+     * Divides the constraints into components, such that two constraints are in the same
+     * component iff they are connected through variable slots. Constants do not connect
+     * constraints, so each constraint between constants is a component of its own.
+     */
+    private static Collection<List<Constraint>> separateComponents(Collection<Constraint> constraints) {
+        Map<Integer, Integer> variableIndex = new HashMap<>();
+        List<Integer> parents = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            int first = -1;
+            for (Slot slot : constraint.getSlots()) {
+                if (!slot.isVariable()) {
+                    continue;
+                }
+                Integer index = variableIndex.get(slot.getId());
+                if (index == null) {
+                    index = parents.size();
+                    variableIndex.put(slot.getId(), index);
+                    parents.add(index);
+                }
+                if (first < 0) {
+                    first = find(parents, index);
+                } else {
+                    parents.set(find(parents, index), first);
+                }
+            }
+        }
+
+        Map<Integer, List<Constraint>> components = new LinkedHashMap<>();
+        List<List<Constraint>> constantComponents = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            Integer root = null;
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable()) {
+                    root = find(parents, variableIndex.get(slot.getId()));
+                    break;
+                }
+            }
+            if (root == null) {
+                List<Constraint> component = new ArrayList<>(1);
+                component.add(constraint);
+                constantComponents.add(component);
+                continue;
+            }
+            List<Constraint> component = components.get(root);
+            if (component == null) {
+                component = new ArrayList<>();
+                components.put(root, component);
+            }
+            component.add(constraint);
+        }
+
+        List<List<Constraint>> result = new ArrayList<>(components.values());
+        result.addAll(constantComponents);
+        return result;
+    }
+
+    private static int find(List<Integer> parents, int index) {
+        while (parents.get(index) != index) {
+            int grandparent = parents.get(parents.get(index));
+            parents.set(index, grandparent);
+            index = grandparent;
+        }
+        return index;
+    }
+}
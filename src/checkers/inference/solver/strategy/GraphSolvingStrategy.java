@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -21,12 +22,15 @@ import checkers.inference.DefaultInferenceResult;
 import checkers.inference.InferenceResult;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
-import checkers.inference.solver.SolverEngine.SolverEngineArg;
 import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.backend.SolverFactory;
 import checkers.inference.solver.constraintgraph.ConstraintGraph;
 import checkers.inference.solver.constraintgraph.GraphBuilder;
 import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.propagation.BoundsPropagation;
+import checkers.inference.solver.propagation.LatticeOperations;
+import checkers.inference.solver.util.CanonicalComponent;
+import checkers.inference.solver.util.ComponentSolutionCache;
 import checkers.inference.solver.util.SolverArg;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
@@ -42,11 +46,89 @@ import com.sun.tools.javac.util.Pair;
  *
  * This solving strategy is useful when solving constraints for a type system with a huge number of qualifers.
  * Normal plain solving strategy meet exponentially increased solving time in this case.
+ *
+ * Most sub-graphs of real programs are trivial: their constraints only relate constants, or a single
+ * variable slot to constants. Such sub-graphs are solved directly with lattice operations instead of
+ * building an underlying solver for them, see {@link #createComponentSolver}.
+ *
+ * Sub-graphs of generated or similar code are often the same constraints up to a renaming of their
+ * variable slots. Only one sub-graph of each {@link CanonicalComponent canonical form} is given to an
+ * underlying solver, and its solution is mapped to the other sub-graphs of that form. If a
+ * {@link ComponentSolutionCache} is configured, the result of each form is looked up in the cache
+ * before an underlying solver is created for it, and stored after solving. Neither is done by
+ * default for underlying solvers with slot preferences, which may solve sub-graphs of the same
+ * form differently.
  */
 public class GraphSolvingStrategy extends AbstractSolvingStrategy {
 
     enum GraphSolveStrategyArg implements SolverArg {
-        solveInParallel;
+        solveInParallel,
+
+        /**
+         * Whether trivial sub-graphs are solved directly, see {@link #createComponentSolver}. By
+         * default they are, unless the underlying solver has slot preferences, see
+         * {@link SolverFactory#hasSlotPreferences}.
+         */
+        solveTrivialComponents,
+
+        /**
+         * Whether a sub-graph reuses the solution of a previous sub-graph with the same canonical
+         * form, or a cached solution, instead of being solved. By default it does, unless the
+         * underlying solver has slot preferences, see {@link SolverFactory#hasSlotPreferences}.
+         */
+        reuseIsomorphicComponents;
+    }
+
+    /**
+     * The number of threads that solve sub-graphs in parallel.
+     */
+    public static final int NUM_SOLVING_THREADS = 30;
+
+    /**
+     * Whether the trivial sub-graphs of the current {@link #solve} call are solved directly.
+     */
+    private boolean solveTrivialComponents;
+
+    /**
+     * Whether the sub-graphs of the current {@link #solve} call reuse the solutions of sub-graphs
+     * with the same canonical form.
+     */
+    private boolean reuseIsomorphicComponents;
+
+    /**
+     * The results of the sub-graphs that were solved without an underlying solver.
+     */
+    private final List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> directResults = new ArrayList<>();
+
+    /**
+     * The first sub-graph of each form that is given to an underlying solver, keyed by the
+     * fingerprint of its lattice and its form.
+     */
+    private final Map<String, Representative> representatives = new HashMap<>();
+
+    /**
+     * The sub-graphs whose solution is mapped from the solution of a representative with the same form.
+     */
+    private final List<Pair<CanonicalComponent, Representative>> duplicates = new ArrayList<>();
+
+    /**
+     * The cache of results of sub-graphs, or null if no cache is configured.
+     */
+    private ComponentSolutionCache solutionCache;
+
+    /**
+     * A sub-graph that is solved by an underlying solver on behalf of all sub-graphs of its form.
+     */
+    private static class Representative {
+        final CanonicalComponent canonical;
+        final Lattice lattice;
+        final Solver<?> solver;
+
+        Representative(CanonicalComponent canonical, Lattice lattice, Solver<?> solver) {
+            this.canonical = canonical;
+            this.lattice = lattice;
+            this.solver = solver;
+        }
     }
 
     public GraphSolvingStrategy(SolverFactory solverFactory) {
@@ -57,9 +139,18 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
     public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
                                  Collection<Constraint> constraints, Lattice lattice) {
 
-        //TODO: Remove the coupling of using SolverEngineArg.
-        final boolean solveInParallel = !"lingeling".equals(solverEnvironment.getArg(SolverEngineArg.solver))
-                && solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveInParallel);
+        final boolean solveInParallel = solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveInParallel);
+        directResults.clear();
+        representatives.clear();
+        duplicates.clear();
+        solveTrivialComponents = solverEnvironment.getArg(GraphSolveStrategyArg.solveTrivialComponents) != null
+                ? solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveTrivialComponents)
+                : !solverFactory.hasSlotPreferences(solverEnvironment);
+        reuseIsomorphicComponents = solverEnvironment.getArg(GraphSolveStrategyArg.reuseIsomorphicComponents) != null
+                ? solverEnvironment.getBoolArg(GraphSolveStrategyArg.reuseIsomorphicComponents)
+                : !solverFactory.hasSlotPreferences(solverEnvironment);
+        solutionCache = reuseIsomorphicComponents
+                ? ComponentSolutionCache.create(solverEnvironment, solverFactory) : null;
 
         // Build graph
         final long graphBuildingStart = System.currentTimeMillis();
@@ -85,6 +176,16 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
             }
         }
 
+        Map<Solver<?>, Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solverResults =
+                getSolverResults(separatedGraphSolvers, inferenceResults);
+        cacheRepresentativeResults(solverResults);
+        inferenceResults.addAll(mapRepresentativeResults(solverResults));
+        inferenceResults.addAll(directResults);
+        directResults.clear();
+        representatives.clear();
+        duplicates.clear();
+        solutionCache = null;
+
         // Merge solutions.
         InferenceResult result = mergeInferenceResults(inferenceResults);
 
@@ -114,12 +215,162 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
         List<Solver<?>> separatedGraphSovlers = new ArrayList<>();
 
         for (Set<Constraint> independentConstraints : constraintGraph.getIndependentPath()) {
-            separatedGraphSovlers.add(solverFactory.createSolver(solverEnvironment, slots, independentConstraints, lattice));
+            Solver<?> solver = createComponentSolver(solverEnvironment, slots, independentConstraints, lattice);
+            if (solver != null) {
+                separatedGraphSovlers.add(solver);
+            }
         }
 
         return separatedGraphSovlers;
     }
 
+    /**
+     * Creates an underlying solver for a separated sub-graph, unless the sub-graph is trivial:
+     *
+     * 1. Its constraints only relate constants.
+     * 2. Or its constraints only relate a single variable slot to constants.
+     *
+     * A trivial sub-graph of subtype and equality constraints between qualifiers of the lattice is
+     * solved directly by {@link BoundsPropagation}, which assigns the variable its least possible
+     * qualifier. Its solution is merged with the solutions of the underlying solvers. Sub-graphs
+     * that propagation finds unsatisfiable are left to an underlying solver, to explain them.
+     * Trivial sub-graphs are only solved directly if {@link GraphSolveStrategyArg#solveTrivialComponents}
+     * allows it, since an underlying solver with slot preferences may assign another qualifier.
+     *
+     * Otherwise, if a previous sub-graph with the same lattice has the same canonical form, the
+     * sub-graph reuses the underlying solver of that sub-graph, see {@link #mapRepresentativeResults}.
+     * Otherwise, if the result of its form is cached, the cached result is used. Both only happen
+     * if {@link GraphSolveStrategyArg#reuseIsomorphicComponents} allows it.
+     *
+     * The number of sub-graphs of each kind is recorded in {@link Statistics}.
+     *
+     * @return an underlying solver for the sub-graph, or null if it was solved directly or
+     * reuses the solution of another sub-graph
+     */
+    protected Solver<?> createComponentSolver(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+            Set<Constraint> constraints, Lattice lattice) {
+        Set<Integer> variables = new HashSet<>();
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable()) {
+                    variables.add(slot.getId());
+                }
+            }
+            if (variables.size() > 1) {
+                break;
+            }
+        }
+
+        if (solveTrivialComponents && variables.size() <= 1) {
+            LatticeOperations operations = LatticeOperations.of(lattice);
+            boolean supported = true;
+            for (Constraint constraint : constraints) {
+                if (!BoundsPropagation.isSupported(constraint, operations)) {
+                    supported = false;
+                    break;
+                }
+            }
+            if (supported) {
+                BoundsPropagation propagation = new BoundsPropagation(operations, constraints);
+                if (propagation.getResult() == BoundsPropagation.Result.SATISFIABLE) {
+                    directResults.add(new Pair<>(propagation.getSolution(false), new HashSet<>()));
+                    Statistics.addOrIncrementEntry(variables.isEmpty()
+                            ? "trivial_constant_components" : "trivial_single_variable_components", 1);
+                    return null;
+                }
+            }
+        }
+
+        CanonicalComponent canonical = CanonicalComponent.of(constraints);
+        String key = canonical == null ? null : lattice.getFingerprint() + "\n" + canonical.getForm();
+        if (key != null) {
+            Representative representative = representatives.get(key);
+            if (representative != null && reuseIsomorphicComponents) {
+                duplicates.add(new Pair<>(canonical, representative));
+                Statistics.addOrIncrementEntry("isomorphic_component_reuses", 1);
+                return null;
+            }
+            InferenceResult cachedResult = solutionCache == null ? null : solutionCache.get(canonical, lattice);
+            if (cachedResult != null) {
+                if (cachedResult.hasSolution()) {
+                    directResults.add(new Pair<>(cachedResult.getSolutions(), new HashSet<>()));
+                } else {
+                    directResults.add(new Pair<>(null, cachedResult.getUnsatisfiableConstraints()));
+                }
+                return null;
+            }
+        }
+
+        Statistics.addOrIncrementEntry("backend_components", 1);
+        Solver<?> solver = solverFactory.createSolver(solverEnvironment, slots, constraints, lattice);
+        if (key != null && !representatives.containsKey(key)) {
+            representatives.put(key, new Representative(canonical, lattice, solver));
+            Statistics.addOrIncrementEntry("isomorphic_component_classes", 1);
+        }
+        return solver;
+    }
+
+    /**
+     * @param underlyingSolvers the underlying solvers, in the order of their results
+     * @param inferenceResults the results of the underlying solvers
+     * @return the result of each underlying solver, or an empty map if solving failed
+     */
+    private static Map<Solver<?>, Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> getSolverResults(
+            List<Solver<?>> underlyingSolvers,
+            List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> inferenceResults) {
+        Map<Solver<?>, Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solverResults = new IdentityHashMap<>();
+        if (underlyingSolvers.size() != inferenceResults.size()) {
+            return solverResults;
+        }
+        for (int i = 0; i < underlyingSolvers.size(); i++) {
+            solverResults.put(underlyingSolvers.get(i), inferenceResults.get(i));
+        }
+        return solverResults;
+    }
+
+    /**
+     * Stores the result of each representative sub-graph in the solution cache, if one is configured.
+     */
+    private void cacheRepresentativeResults(
+            Map<Solver<?>, Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solverResults) {
+        if (solutionCache == null) {
+            return;
+        }
+        for (Representative representative : representatives.values()) {
+            Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>> result = solverResults.get(representative.solver);
+            if (result != null) {
+                solutionCache.put(representative.canonical, representative.lattice, result.fst, result.snd);
+            }
+        }
+    }
+
+    /**
+     * Maps the result of each representative sub-graph to the sub-graphs with the same canonical
+     * form: a solution through the renaming of the variable slots, an explanation of
+     * unsatisfiability through the order of the constraints in the canonical form.
+     *
+     * @param solverResults the result of each underlying solver
+     * @return the results of the sub-graphs that reuse the result of a representative
+     */
+    protected List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> mapRepresentativeResults(
+            Map<Solver<?>, Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solverResults) {
+        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> results = new ArrayList<>();
+        for (Pair<CanonicalComponent, Representative> duplicate : duplicates) {
+            CanonicalComponent canonical = duplicate.fst;
+            CanonicalComponent representative = duplicate.snd.canonical;
+            Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>> result = solverResults.get(duplicate.snd.solver);
+            if (result == null) {
+                continue;
+            }
+            if (result.fst != null) {
+                results.add(new Pair<>(canonical.mapSolution(representative, result.fst), new HashSet<>()));
+            } else {
+                results.add(new Pair<>(null, canonical.mapConstraints(representative, result.snd)));
+            }
+        }
+        return results;
+    }
+
     /**
      * This method is called if user wants to call all underlying solvers in parallel.
      *
@@ -131,19 +382,13 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
     protected List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solveInparallel(List<Solver<?>> underlyingSolvers)
             throws InterruptedException, ExecutionException {
 
-        ExecutorService service = Executors.newFixedThreadPool(30);
+        ExecutorService service = Executors.newFixedThreadPool(NUM_SOLVING_THREADS);
         List<Future<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>>> futures = new ArrayList<>();
 
         long solvingStart = System.currentTimeMillis();
         for (final Solver<?> underlyingSolver : underlyingSolvers) {
-            Callable<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> callable = () -> {
-                Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
-                if (solution != null) {
-                    return new Pair<>(solution, new HashSet<>());
-                } else {
-                    return new Pair<>(solution, underlyingSolver.explainUnsatisfiable());
-                }
-            };
+            Callable<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> callable =
+                    () -> solveAndExplain(underlyingSolver);
             futures.add(service.submit(callable));
         }
         service.shutdown();
@@ -159,6 +404,22 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
         return results;
     }
 
+    /**
+     * @return the solution of the given solver, or its unsatisfiable constraints if it has none
+     */
+    private static Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>> solveAndExplain(Solver<?> underlyingSolver) {
+        try {
+            Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
+            if (solution != null) {
+                return new Pair<>(solution, new HashSet<>());
+            } else {
+                return new Pair<>(solution, underlyingSolver.explainUnsatisfiable());
+            }
+        } finally {
+            underlyingSolver.release();
+        }
+    }
+
     /**
      * This method is called if user wants to call all underlying solvers in sequence.
      *
@@ -171,12 +432,7 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
 
         long solvingStart = System.currentTimeMillis();
         for (final Solver<?> underlyingSolver : underlyingSolvers) {
-            Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
-            if (solution != null) {
-                results.add(new Pair<>(solution, new HashSet<>()));
-            } else {
-                results.add(new Pair<>(solution, underlyingSolver.explainUnsatisfiable()));
-            }
+            results.add(solveAndExplain(underlyingSolver));
         }
         long solvingEnd = System.currentTimeMillis();
 
@@ -12,8 +12,18 @@ import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.backend.SolverFactory;
 import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.CanonicalComponent;
+import checkers.inference.solver.util.ComponentSolutionCache;
 import checkers.inference.solver.util.SolverEnvironment;
 
+/**
+ * PlainSolvingStrategy solves all constraints with a single underlying solver.
+ *
+ * If a {@link ComponentSolutionCache} is configured, the result is looked up in the cache by the
+ * canonical form of all constraints before the underlying solver is invoked, and stored after.
+ * The cache is not used for underlying solvers with slot preferences, see
+ * {@link SolverFactory#hasSlotPreferences}, since they may solve the same form differently.
+ */
 public class PlainSolvingStrategy extends AbstractSolvingStrategy{
 
     public PlainSolvingStrategy(SolverFactory solverFactory) {
@@ -24,14 +34,34 @@ public class PlainSolvingStrategy extends AbstractSolvingStrategy{
     public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
                                  Collection<Constraint> constraints, Lattice lattice) {
 
+        ComponentSolutionCache cache = solverFactory.hasSlotPreferences(solverEnvironment)
+                ? null : ComponentSolutionCache.create(solverEnvironment, solverFactory);
+        CanonicalComponent canonical = cache == null ? null : CanonicalComponent.of(constraints);
+        if (canonical != null) {
+            InferenceResult cachedResult = cache.get(canonical, lattice);
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+        }
+
         Solver<?> underlyingSolver = solverFactory.createSolver(solverEnvironment, slots, constraints, lattice);
 
-        Map<Integer, AnnotationMirror> solutions = underlyingSolver.solve();
+        Map<Integer, AnnotationMirror> solutions;
+        Collection<Constraint> unsatisfiableConstraints;
+        try {
+            solutions = underlyingSolver.solve();
+            unsatisfiableConstraints = solutions != null ? null : underlyingSolver.explainUnsatisfiable();
+        } finally {
+            underlyingSolver.release();
+        }
+        if (canonical != null) {
+            cache.put(canonical, lattice, solutions, unsatisfiableConstraints);
+        }
 
         if (solutions != null) {
             return new DefaultInferenceResult(solutions);
         } else {
-            return new DefaultInferenceResult(underlyingSolver.explainUnsatisfiable());
+            return new DefaultInferenceResult(unsatisfiableConstraints);
         }
     }
 }
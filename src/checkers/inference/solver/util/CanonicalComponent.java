@@ -0,0 +1,305 @@
+package checkers.inference.solver.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+
+/**
+ * The canonical form of a component of constraints: its constraints with the variable slots
+ * renamed to 0..n-1 by a canonical order, rendered as text and sorted. A renamed variable keeps
+ * its {@link Slot.Kind kind} and whether its location is missing. Two components with
+ * the same canonical form are the same constraints up to the renaming of their variables, so
+ * a solution of one is a solution of the other through {@link #mapSolution}.
+ *
+ * The order of the variables is found by refining a color of every variable: the kind of the
+ * constraints it occurs in, its position in them, and the constants and colors of the other
+ * slots, until the number of colors no longer grows or for a bounded number of rounds. Variables with the same color are ordered
+ * by slot id, so symmetric components may get different forms; this only loses reuse, since
+ * equal forms always describe the same constraints.
+ *
+ * Only components of constraints that are fully described by their slots are canonicalized,
+ * see {@link #of(Collection)}.
+ */
+public class CanonicalComponent {
+
+    /**
+     * The maximal number of rounds of color refinement. Long chains of constraints would need
+     * a round per slot; their remaining ties are broken by slot id.
+     */
+    private static final int MAX_REFINEMENT_ROUNDS = 8;
+
+    private final String form;
+
+    /**
+     * The slot id of every variable, indexed by its canonical number.
+     */
+    private final int[] variables;
+
+    /**
+     * The constraints of the component, in the order of their lines in the form.
+     */
+    private final List<Constraint> constraints;
+
+    private String hash;
+
+    private CanonicalComponent(String form, int[] variables, List<Constraint> constraints) {
+        this.form = form;
+        this.variables = variables;
+        this.constraints = constraints;
+    }
+
+    /**
+     * Computes the canonical form of the given constraints.
+     *
+     * @return the canonical form, or null if a constraint is not a subtype, equality,
+     * inequality, comparable, combine or preference constraint, or has an existential slot
+     */
+    public static /* @Nullable */ CanonicalComponent of(Collection<Constraint> constraints) {
+        Map<Integer, Integer> variableIndex = new LinkedHashMap<>();
+        List<Integer> slotIds = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (!isSupported(constraint)) {
+                return null;
+            }
+            for (Slot slot : constraint.getSlots()) {
+                if (slot.isVariable() && !variableIndex.containsKey(slot.getId())) {
+                    variableIndex.put(slot.getId(), variableIndex.size());
+                    slotIds.add(slot.getId());
+                }
+            }
+        }
+
+        // Refine the colors of the variables until they no longer split.
+        final int numVariables = slotIds.size();
+        int[] colors = new int[numVariables];
+        int numColors = numVariables == 0 ? 0 : 1;
+        for (int round = 0; round < MAX_REFINEMENT_ROUNDS && numColors < numVariables; round++) {
+            List<List<String>> signatures = new ArrayList<>(numVariables);
+            for (int i = 0; i < numVariables; i++) {
+                signatures.add(new ArrayList<>());
+            }
+            for (Constraint constraint : constraints) {
+                List<Slot> slots = constraint.getSlots();
+                for (int position = 0; position < slots.size(); position++) {
+                    Slot slot = slots.get(position);
+                    if (slot.isVariable()) {
+                        signatures.get(variableIndex.get(slot.getId())).add(position + ":"
+                                + render(constraint, variableIndex, colors));
+                    }
+                }
+            }
+            // The new color of a variable is its old color and its sorted signature, numbered by their order.
+            String[] keys = new String[numVariables];
+            TreeSet<String> distinctKeys = new TreeSet<>();
+            for (int i = 0; i < numVariables; i++) {
+                List<String> signature = signatures.get(i);
+                Collections.sort(signature);
+                keys[i] = colors[i] + "|" + String.join("|", signature);
+                distinctKeys.add(keys[i]);
+            }
+            if (distinctKeys.size() == numColors) {
+                break;
+            }
+            Map<String, Integer> keyColors = new HashMap<>();
+            for (String key : distinctKeys) {
+                keyColors.put(key, keyColors.size());
+            }
+            for (int i = 0; i < numVariables; i++) {
+                colors[i] = keyColors.get(keys[i]);
+            }
+            numColors = distinctKeys.size();
+        }
+
+        Integer[] order = new Integer[numVariables];
+        for (int i = 0; i < numVariables; i++) {
+            order[i] = i;
+        }
+        final int[] finalColors = colors;
+        Arrays.sort(order, (a, b) -> finalColors[a] != finalColors[b]
+                ? Integer.compare(finalColors[a], finalColors[b])
+                : Integer.compare(slotIds.get(a), slotIds.get(b)));
+
+        int[] variables = new int[numVariables];
+        int[] canonicalNumbers = new int[numVariables];
+        for (int i = 0; i < numVariables; i++) {
+            variables[i] = slotIds.get(order[i]);
+            canonicalNumbers[order[i]] = i;
+        }
+
+        List<Constraint> sortedConstraints = new ArrayList<>(constraints);
+        Map<Constraint, String> constraintLines = new HashMap<>();
+        for (Constraint constraint : sortedConstraints) {
+            constraintLines.put(constraint, render(constraint, variableIndex, canonicalNumbers));
+        }
+        sortedConstraints.sort((a, b) -> constraintLines.get(a).compareTo(constraintLines.get(b)));
+        List<String> lines = new ArrayList<>(sortedConstraints.size());
+        for (Constraint constraint : sortedConstraints) {
+            lines.add(constraintLines.get(constraint));
+        }
+
+        String form = numVariables + "\n" + String.join("\n", lines);
+        return new CanonicalComponent(form, variables, sortedConstraints);
+    }
+
+    private static boolean isSupported(Constraint constraint) {
+        if (!(constraint instanceof SubtypeConstraint || constraint instanceof EqualityConstraint
+                || constraint instanceof InequalityConstraint || constraint instanceof ComparableConstraint
+                || constraint instanceof CombineConstraint || constraint instanceof PreferenceConstraint)) {
+            return false;
+        }
+        for (Slot slot : constraint.getSlots()) {
+            if (slot.getKind() == Slot.Kind.EXISTENTIAL_VARIABLE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders a constraint with each variable replaced by its number in {@code numbers}, its
+     * kind and whether its location is missing, since solvers may treat these differently.
+     */
+    private static String render(Constraint constraint, Map<Integer, Integer> variableIndex, int[] numbers) {
+        StringBuilder line = new StringBuilder(constraint.getClass().getSimpleName()).append('(');
+        List<Slot> slots = constraint.getSlots();
+        for (int i = 0; i < slots.size(); i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            Slot slot = slots.get(i);
+            if (slot.isVariable()) {
+                line.append('v').append(numbers[variableIndex.get(slot.getId())]).append(':').append(slot.getKind());
+                if (hasMissingLocation(slot)) {
+                    line.append(" missing");
+                }
+            } else {
+                line.append(((ConstantSlot) slot).getValue());
+            }
+        }
+        line.append(')');
+        if (constraint instanceof PreferenceConstraint) {
+            line.append(" weight ").append(((PreferenceConstraint) constraint).getWeight());
+        }
+        return line.toString();
+    }
+
+    private static boolean hasMissingLocation(Slot slot) {
+        AnnotationLocation location = slot.getLocation();
+        return location != null && location.getKind() == AnnotationLocation.Kind.MISSING;
+    }
+
+    /**
+     * @return the constraints with their variables renamed, one per line, preceded by the
+     * number of variables
+     */
+    public String getForm() {
+        return form;
+    }
+
+    /**
+     * @return the SHA-256 of the form, in hexadecimal
+     */
+    public String getHash() {
+        if (hash == null) {
+            hash = sha256(form);
+        }
+        return hash;
+    }
+
+    /**
+     * @return the number of variables of the component
+     */
+    public int getNumVariables() {
+        return variables.length;
+    }
+
+    /**
+     * @return the slot id of the variable with the given canonical number
+     */
+    public int getVariable(int number) {
+        return variables[number];
+    }
+
+    /**
+     * @return the constraints of the component, in the order of their lines in the form
+     */
+    public List<Constraint> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Maps a solution of the given component, which must have the same form, to a solution of
+     * this component. Values of slots that are not variables of the other component are dropped.
+     */
+    public Map<Integer, AnnotationMirror> mapSolution(CanonicalComponent other,
+                                                      Map<Integer, AnnotationMirror> solution) {
+        if (!form.equals(other.form)) {
+            throw new BugInCF("Mapping a solution between components of different forms");
+        }
+        Map<Integer, AnnotationMirror> mapped = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            AnnotationMirror value = solution.get(other.variables[i]);
+            if (value != null) {
+                mapped.put(variables[i], value);
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Maps constraints of the given component, which must have the same form, to the
+     * constraints of this component at the same lines of the form.
+     */
+    public Collection<Constraint> mapConstraints(CanonicalComponent other, Collection<Constraint> otherConstraints) {
+        if (!form.equals(other.form)) {
+            throw new BugInCF("Mapping constraints between components of different forms");
+        }
+        List<Constraint> mapped = new ArrayList<>();
+        for (int i = 0; i < other.constraints.size(); i++) {
+            if (otherConstraints.contains(other.constraints.get(i))) {
+                mapped.add(constraints.get(i));
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * @return the SHA-256 of the given text, in hexadecimal
+     */
+    public static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new BugInCF("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package checkers.inference.solver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceResult;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.SolverEngine.SolverEngineArg;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * Caches the results of solving components of constraints on disk, so that components that
+ * did not change since a previous inference run are not solved again.
+ *
+ * A result is stored in {@code <cacheDir>/<key>.solution}, where the key is the SHA-256 of the
+ * {@link #FORMAT_VERSION format version}, the solver factory, the fingerprint of the lattice, the
+ * solver configuration and the {@link CanonicalComponent canonical form} of the component. The
+ * factory stands for the encoding of the backend, which the form does not describe. A solution
+ * is stored as the values of the variables by their canonical number, an unsatisfiable
+ * component as the lines of the form of its unsatisfiable constraints, so a result applies to
+ * every component with the same form.
+ *
+ * The first line of a file repeats the key and the SHA-256 of the rest of the file; a file
+ * whose first line does not match is ignored and overwritten. Files are written to a
+ * temporary file first and then moved into place, like {@link
+ * checkers.inference.solver.frontend.LatticeDiskCache}. When the files exceed the size
+ * limit, the least recently used ones are deleted.
+ *
+ * Only results that are determined by the constraints are cached: a solution that assigns slots
+ * that are not variables of the constraints, or qualifiers that are not in the lattice, is not
+ * stored, so a cached result assigns the same slots as solving the component.
+ */
+public class ComponentSolutionCache {
+
+    public static final Logger logger = Logger.getLogger(ComponentSolutionCache.class.getName());
+
+    /**
+     * The default size limit of the cache directory, in megabytes.
+     */
+    public static final long DEFAULT_SIZE = 64;
+
+    /**
+     * The version of the contents of the cache files and of the canonical forms. Files of other
+     * versions are never looked up, since the version is part of the key.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String SUFFIX = ".solution";
+
+    private static final String SATISFIABLE = "sat";
+
+    private static final String UNSATISFIABLE = "unsat";
+
+    private final File dir;
+
+    private final long maxBytes;
+
+    /**
+     * The version, the solver factory and the arguments that may change the result of solving,
+     * one per line.
+     */
+    private final String configuration;
+
+    /**
+     * The qualifiers of each lattice by their names, keyed by the fingerprint of the lattice.
+     */
+    private final Map<String, Map<String, AnnotationMirror>> latticeTypes = new HashMap<>();
+
+    /**
+     * The results read or written in this run, keyed by their key.
+     */
+    private final Map<String, String> entries = new HashMap<>();
+
+    private long totalBytes = -1;
+
+    private ComponentSolutionCache(File dir, long maxBytes, String configuration) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Creates the cache configured by {@link SolverEngineArg#solutionCacheDir} and
+     * {@link SolverEngineArg#solutionCacheSize}, for results of solvers of the given factory.
+     *
+     * @return the cache, or null if no cache directory is given
+     */
+    public static /* @Nullable */ ComponentSolutionCache create(SolverEnvironment solverEnvironment,
+                                                                SolverFactory solverFactory) {
+        String cacheDir = solverEnvironment.getArg(SolverEngineArg.solutionCacheDir);
+        if (cacheDir == null) {
+            return null;
+        }
+        String size = solverEnvironment.getArg(SolverEngineArg.solutionCacheSize);
+        long megabytes = size == null ? DEFAULT_SIZE : Long.parseLong(size);
+
+        // The arguments of the engine only control output and caching, except for the solver and strategy.
+        Map<String, String> arguments = new TreeMap<>(solverEnvironment.getArgs());
+        for (SolverEngineArg arg : SolverEngineArg.values()) {
+            if (arg != SolverEngineArg.solver && arg != SolverEngineArg.solvingStrategy) {
+                arguments.remove(arg.name());
+            }
+        }
+        StringBuilder configuration = new StringBuilder();
+        configuration.append("version=").append(FORMAT_VERSION).append('\n');
+        configuration.append("factory=").append(solverFactory.getClass().getName()).append('\n');
+        for (Map.Entry<String, String> argument : arguments.entrySet()) {
+            configuration.append(argument.getKey()).append('=').append(argument.getValue()).append('\n');
+        }
+        return new ComponentSolutionCache(new File(cacheDir), megabytes * 1024 * 1024, configuration.toString());
+    }
+
+    /**
+     * Returns the cached result of solving the given component over the given lattice.
+     *
+     * @return the result for the slots and constraints of the component, or null if it is not cached
+     */
+    public synchronized /* @Nullable */ InferenceResult get(CanonicalComponent component, Lattice lattice) {
+        String key = getKey(component, lattice);
+        String contents = entries.get(key);
+        if (contents == null) {
+            contents = read(key);
+        }
+        InferenceResult result = contents == null ? null : decode(contents, component, lattice);
+        if (result == null) {
+            Statistics.addOrIncrementEntry("solution_cache_misses", 1);
+            return null;
+        }
+        entries.put(key, contents);
+        Statistics.addOrIncrementEntry("solution_cache_hits", 1);
+        return result;
+    }
+
+    /**
+     * Stores the result of solving the given component over the given lattice: its solution, or
+     * its unsatisfiable constraints if {@code solution} is null.
+     */
+    public synchronized void put(CanonicalComponent component, Lattice lattice,
+                                 /* @Nullable */ Map<Integer, AnnotationMirror> solution,
+                                 Collection<Constraint> unsatisfiableConstraints) {
+        String contents = solution != null ? encodeSolution(component, lattice, solution)
+                                           : encodeUnsatisfiable(component, unsatisfiableConstraints);
+        if (contents == null) {
+            return;
+        }
+        String key = getKey(component, lattice);
+        entries.put(key, contents);
+        write(key, contents);
+    }
+
+    private String getKey(CanonicalComponent component, Lattice lattice) {
+        return CanonicalComponent.sha256(lattice.getFingerprint() + "\n" + configuration + "\n" + component.getForm());
+    }
+
+    private /* @Nullable */ String encodeSolution(CanonicalComponent component, Lattice lattice,
+                                                  Map<Integer, AnnotationMirror> solution) {
+        Map<String, AnnotationMirror> types = getTypes(lattice);
+        Map<Integer, Integer> numbers = new HashMap<>();
+        for (int i = 0; i < component.getNumVariables(); i++) {
+            numbers.put(component.getVariable(i), i);
+        }
+
+        String[] values = new String[component.getNumVariables()];
+        for (Map.Entry<Integer, AnnotationMirror> value : solution.entrySet()) {
+            Integer number = numbers.get(value.getKey());
+            if (number == null) {
+                // Backends may assign slots outside of the component, e.g. Z3SmtSolver assigns every variable slot.
+                return null;
+            }
+            String type = value.getValue().toString();
+            if (!types.containsKey(type)) {
+                return null;
+            }
+            values[number] = type;
+        }
+
+        StringBuilder contents = new StringBuilder(SATISFIABLE).append('\n');
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                contents.append(i).append(' ').append(values[i]).append('\n');
+            }
+        }
+        return contents.toString();
+    }
+
+    private String encodeUnsatisfiable(CanonicalComponent component,
+                                                       Collection<Constraint> unsatisfiableConstraints) {
+        StringBuilder contents = new StringBuilder(UNSATISFIABLE).append('\n');
+        List<Constraint> constraints = component.getConstraints();
+        for (int i = 0; i < constraints.size(); i++) {
+            if (unsatisfiableConstraints.contains(constraints.get(i))) {
+                contents.append(i).append('\n');
+            }
+        }
+        return contents.toString();
+    }
+
+    /**
+     * Decodes the contents of a cache file for the given component.
+     *
+     * @return the result, or null if the contents do not fit the component or lattice
+     */
+    private /* @Nullable */ InferenceResult decode(String contents, CanonicalComponent component, Lattice lattice) {
+        String[] lines = contents.split("\n");
+        try {
+            if (lines[0].equals(SATISFIABLE)) {
+                Map<String, AnnotationMirror> types = getTypes(lattice);
+                Map<Integer, AnnotationMirror> solution = new HashMap<>();
+                for (int i = 1; i < lines.length; i++) {
+                    int separator = lines[i].indexOf(' ');
+                    int number = Integer.parseInt(lines[i].substring(0, separator));
+                    AnnotationMirror type = types.get(lines[i].substring(separator + 1));
+                    if (type == null) {
+                        return null;
+                    }
+                    solution.put(component.getVariable(number), type);
+                }
+                return new DefaultInferenceResult(solution);
+            } else if (lines[0].equals(UNSATISFIABLE)) {
+                List<Constraint> unsatisfiableConstraints = new ArrayList<>();
+                for (int i = 1; i < lines.length; i++) {
+                    unsatisfiableConstraints.add(component.getConstraints().get(Integer.parseInt(lines[i])));
+                }
+                return new DefaultInferenceResult(unsatisfiableConstraints);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Ignoring malformed solution cache entry", e);
+        }
+        return null;
+    }
+
+    private Map<String, AnnotationMirror> getTypes(Lattice lattice) {
+        Map<String, AnnotationMirror> types = latticeTypes.get(lattice.getFingerprint());
+        if (types == null) {
+            types = new HashMap<>();
+            for (AnnotationMirror type : lattice.allTypes) {
+                types.put(type.toString(), type);
+            }
+            latticeTypes.put(lattice.getFingerprint(), types);
+        }
+        return types;
+    }
+
+    /**
+     * Reads the contents of the cache file with the given key, and marks it as recently used.
+     *
+     * @return the contents, or null if there is no valid file
+     */
+    private /* @Nullable */ String read(String key) {
+        File file = new File(dir, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            int headerEnd = text.indexOf('\n');
+            if (headerEnd >= 0) {
+                String contents = text.substring(headerEnd + 1);
+                if (text.substring(0, headerEnd).equals(getHeader(key, contents))) {
+                    file.setLastModified(System.currentTimeMillis());
+                    return contents;
+                }
+            }
+            logger.warning("Ignoring corrupt solution cache file " + file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read solution cache file " + file, e);
+        }
+        return null;
+    }
+
+    private void write(String key, String contents) {
+        File file = new File(dir, key + SUFFIX);
+        byte[] bytes = (getHeader(key, contents) + "\n" + contents).getBytes(StandardCharsets.UTF_8);
+        File tempFile = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            long oldLength = file.length();
+            tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+            Files.write(tempFile.toPath(), bytes);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            if (totalBytes < 0) {
+                totalBytes = 0;
+                for (File entry : listEntries()) {
+                    totalBytes += entry.length();
+                }
+            } else {
+                totalBytes += bytes.length - oldLength;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write solution cache file " + file, e);
+        } finally {
+            if (tempFile != null) {
+                // Only left over if the move failed.
+                tempFile.delete();
+            }
+        }
+        if (totalBytes > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the files take three quarters of the size limit.
+     */
+    private void evict() {
+        File[] files = listEntries();
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        totalBytes = 0;
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+            totalBytes += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+
+        int evicted = 0;
+        for (int i = 0; i < order.length && totalBytes > maxBytes / 4 * 3; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+                evicted++;
+            }
+        }
+        Statistics.addOrIncrementEntry("solution_cache_evictions", evicted);
+    }
+
+    private File[] listEntries() {
+        File[] files = dir.listFiles((directory, name) -> name.endsWith(SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    private static String getHeader(String key, String contents) {
+        return key + " " + CanonicalComponent.sha256(contents);
+    }
+}
@@ -1,10 +1,14 @@
 package checkers.inference.solver.util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -20,6 +24,13 @@ public class ExternalSolverUtils {
 
     public static final Logger logger = Logger.getLogger(ExternalSolverUtils.class.getName());
 
+    /**
+     * The status returned by {@link #runExternalSolver(String[], Consumer, Consumer, Consumer, long)}
+     * if the external solver was killed because it ran out of time. Exit statuses of processes
+     * are never negative.
+     */
+    public static final int TIMEOUT_EXIT_STATUS = -1;
+
     /**
      * Runs the external solver as given by command and uses the given
      * stdOutHandler and stdErrHandler lambdas to process stdOut and stdErr.
@@ -37,6 +48,49 @@ public class ExternalSolverUtils {
      */
     public static int runExternalSolver(String[] command, Consumer<BufferedReader> stdOutHandler,
             Consumer<BufferedReader> stdErrHandler) {
+        return runExternalSolver(command, null, stdOutHandler, stdErrHandler);
+    }
+
+    /**
+     * Runs the external solver as given by command, uses the given stdInHandler lambda
+     * to write the input of the solver to its stdIn, and uses the given stdOutHandler
+     * and stdErrHandler lambdas to process stdOut and stdErr.
+     *
+     * @param command
+     *            an external solver command to be executed, each string in the
+     *            array is space-concatenated to form the final command.
+     * @param stdInHandler
+     *            a lambda which takes a {@link BufferedWriter} connected to the
+     *            stdIn of the external solver and writes the solver input to it,
+     *            wrapping write failures in an {@link UncheckedIOException}.
+     *            The stdIn is closed after the lambda returns. If null, the stdIn
+     *            is closed right away.
+     * @param stdOutHandler
+     *            a lambda which takes a {@link BufferedReader} providing the
+     *            stdOut of the external solver and handles the stdOut.
+     * @param stdErrHandler
+     *            a lambda which takes a {@link BufferedReader} providing the
+     *            stdErr of the external solver and handles the stdErr.
+     * @return the exit status code of the external command.
+     */
+    public static int runExternalSolver(String[] command, Consumer<BufferedWriter> stdInHandler,
+            Consumer<BufferedReader> stdOutHandler, Consumer<BufferedReader> stdErrHandler) {
+        return runExternalSolver(command, stdInHandler, stdOutHandler, stdErrHandler, 0);
+    }
+
+    /**
+     * Like {@link #runExternalSolver(String[], Consumer, Consumer, Consumer)}, but kills the
+     * external solver if it is still running after the given timeout.
+     *
+     * @param timeoutMillis
+     *            the time in milliseconds the external solver may run, including
+     *            the time it takes to read its input. No timeout if not positive.
+     * @return the exit status code of the external command, or
+     *         {@link #TIMEOUT_EXIT_STATUS} if it was killed.
+     */
+    public static int runExternalSolver(String[] command, Consumer<BufferedWriter> stdInHandler,
+            Consumer<BufferedReader> stdOutHandler, Consumer<BufferedReader> stdErrHandler,
+            long timeoutMillis) {
 
         logger.info("Running external solver command \"" + String.join(" ", command) + "\".");
 
@@ -56,7 +110,42 @@ public class ExternalSolverUtils {
         stdOutHandlerThread.start();
         stdErrHandlerThread.start();
 
+        // Write the solver input while the outputs are drained, so that neither side blocks
+        final Process solverProcess = process;
+        Thread stdInHandlerThread = new Thread(() -> {
+            try (BufferedWriter stdIn = new BufferedWriter(new OutputStreamWriter(solverProcess.getOutputStream()))) {
+                if (stdInHandler != null) {
+                    stdInHandler.accept(stdIn);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // The solver exited before reading all of its input; its exit status tells why.
+                logger.warning("Could not write the input of the external solver: " + e.getMessage());
+            }
+        });
+        stdInHandlerThread.start();
+
+        boolean timedOut = false;
+        if (timeoutMillis > 0) {
+            try {
+                if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    logger.warning("External solver timed out after " + timeoutMillis + " ms, killing it.");
+                    process.destroyForcibly();
+                    timedOut = true;
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw new BugInCF("The threads for the external solver was interrupted.");
+            }
+        }
+
         // Wait for external solver threads to finish
+        try {
+            stdInHandlerThread.join();
+        } catch (InterruptedException e) {
+            throw new BugInCF(
+                    "The threads for handling stdIn of the external solver was interrupted.");
+        }
+
         try {
             stdOutHandlerThread.join();
         } catch (InterruptedException e) {
@@ -80,7 +169,7 @@ public class ExternalSolverUtils {
 
         logger.info("External solver process finished");
 
-        return exitStatus;
+        return timedOut ? TIMEOUT_EXIT_STATUS : exitStatus;
     }
 
     /**
@@ -39,6 +39,13 @@ public class SolverEnvironment {
         return options.get(arg.name());
     }
 
+    /**
+     * @return all arguments, from their names to their values
+     */
+    public Map<String, String> getArgs() {
+        return options;
+    }
+
     /**
      * Get the boolean value for a given argument name.
      *
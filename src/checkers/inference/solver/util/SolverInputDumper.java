@@ -0,0 +1,202 @@
+package checkers.inference.solver.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * Writes the inputs given to a solver to gzip-compressed files, for debugging and for
+ * reproducing a solver run outside of inference.
+ *
+ * Dumps are written on a background thread, so the solver does not wait for the disk.
+ * At most {@link #MAX_PENDING_DUMPS} dumps wait to be written; beyond that the dumping
+ * solver writes its dump itself.
+ *
+ * There are two layouts:
+ * <ul>
+ *     <li>Rotated: all dumps are appended to {@code <prefix>.<n>.<extension>.gz}. A new file is started
+ *     once the uncompressed size of the current one exceeds the maximum file size.</li>
+ *     <li>Per component: every dump gets its own file {@code <prefix>-component-<n>.<extension>.gz},
+ *     numbered in the order in which the dumps were made.</li>
+ * </ul>
+ * In both layouts the numbering continues after the highest number already in the dump
+ * directory, so dumps of earlier runs are kept.
+ *
+ * Dumpers are shared by all solvers of the same dump directory and prefix, and are
+ * closed when the JVM exits.
+ */
+public class SolverInputDumper {
+
+    public static final Logger logger = Logger.getLogger(SolverInputDumper.class.getName());
+
+    private static final int MAX_PENDING_DUMPS = 16;
+
+    private static final Map<File, SolverInputDumper> dumpers = new HashMap<>();
+
+    private final File dumpDir;
+    private final String prefix;
+    private final String extension;
+    private final long maxFileBytes;
+    private final boolean perComponent;
+
+    private final ExecutorService writerService;
+    private final AtomicInteger dumpCount = new AtomicInteger();
+
+    // Guarded by this: dumps are written by the thread of writerService, or by the
+    // dumping thread itself when too many dumps are pending.
+    private Writer currentWriter;
+    private int currentFileIndex;
+    private long currentFileBytes;
+
+    private SolverInputDumper(File dumpDir, String prefix, String extension, long maxFileBytes, boolean perComponent) {
+        this.dumpDir = dumpDir;
+        this.prefix = prefix;
+        this.extension = extension;
+        this.maxFileBytes = maxFileBytes;
+        this.perComponent = perComponent;
+        this.writerService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_DUMPS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "solver-input-dumper-" + prefix);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        seedIndices();
+    }
+
+    /**
+     * Continues the numbering of the dump files already in the dump directory.
+     */
+    private void seedIndices() {
+        String suffix = Pattern.quote("." + extension + ".gz");
+        Pattern rotatedName = Pattern.compile(Pattern.quote(prefix + ".") + "(\\d+)" + suffix);
+        Pattern componentName = Pattern.compile(Pattern.quote(prefix + "-component-") + "(\\d+)" + suffix);
+        String[] names = dumpDir.list();
+        if (names == null) {
+            return;
+        }
+        int maxComponentIndex = 0;
+        for (String name : names) {
+            Matcher rotated = rotatedName.matcher(name);
+            Matcher component = componentName.matcher(name);
+            try {
+                if (rotated.matches()) {
+                    currentFileIndex = Math.max(currentFileIndex, Integer.parseInt(rotated.group(1)));
+                } else if (component.matches()) {
+                    maxComponentIndex = Math.max(maxComponentIndex, Integer.parseInt(component.group(1)));
+                }
+            } catch (NumberFormatException e) {
+                // Too large to be one of ours.
+            }
+        }
+        dumpCount.set(maxComponentIndex);
+    }
+
+    /**
+     * Returns the dumper for the given directory and file prefix, creating the directory
+     * and the dumper on first use. The size and layout options of the first call win.
+     *
+     * @param dumpDir the directory the dump files are written to
+     * @param prefix the prefix of the dump file names
+     * @param extension the extension of the dump file names, before ".gz"
+     * @param maxFileBytes in the rotated layout, the uncompressed size after which a new file is started
+     * @param perComponent whether every dump is written to a file of its own
+     */
+    public static synchronized SolverInputDumper getDumper(String dumpDir, String prefix, String extension,
+                                                           long maxFileBytes, boolean perComponent) {
+        File dir = new File(dumpDir).getAbsoluteFile();
+        File key = new File(dir, prefix);
+        SolverInputDumper dumper = dumpers.get(key);
+        if (dumper != null) {
+            return dumper;
+        }
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new BugInCF("Could not create solver input dump directory " + dir);
+        }
+        final SolverInputDumper newDumper = new SolverInputDumper(dir, prefix, extension, maxFileBytes, perComponent);
+        dumpers.put(key, newDumper);
+        Runtime.getRuntime().addShutdownHook(new Thread(newDumper::close));
+        return newDumper;
+    }
+
+    /**
+     * Queues the given solver input to be written.
+     */
+    public void dump(final String contents) {
+        final int dumpIndex = dumpCount.incrementAndGet();
+        writerService.execute(() -> write(dumpIndex, contents));
+    }
+
+    private synchronized void write(int dumpIndex, String contents) {
+        try {
+            if (perComponent) {
+                try (Writer writer = openFile(new File(dumpDir, prefix + "-component-" + dumpIndex + "." + extension + ".gz"))) {
+                    writer.write(contents);
+                }
+                return;
+            }
+
+            if (currentWriter == null || currentFileBytes > maxFileBytes) {
+                closeCurrentFile();
+                currentFileIndex++;
+                currentWriter = openFile(new File(dumpDir, prefix + "." + currentFileIndex + "." + extension + ".gz"));
+                currentFileBytes = 0;
+            }
+            currentWriter.write(contents);
+            currentWriter.write('\n');
+            currentFileBytes += contents.length() + 1;
+
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to dump solver input to " + dumpDir, e);
+        }
+    }
+
+    private static Writer openFile(File file) throws IOException {
+        return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), StandardCharsets.UTF_8);
+    }
+
+    private void closeCurrentFile() throws IOException {
+        if (currentWriter != null) {
+            currentWriter.close();
+            currentWriter = null;
+        }
+    }
+
+    /**
+     * Writes the pending dumps and closes the current file.
+     */
+    public void close() {
+        writerService.shutdown();
+        try {
+            writerService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                closeCurrentFile();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to close solver input dump in " + dumpDir, e);
+            }
+        }
+    }
+}
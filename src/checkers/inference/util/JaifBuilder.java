@@ -4,9 +4,13 @@ import scenelib.annotations.io.ASTRecord;
 import scenelib.annotations.io.ASTPath;
 import scenelib.annotations.io.ASTPath.ASTEntry;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import checkers.inference.model.AnnotationLocation;
 import checkers.inference.model.AnnotationLocation.AstPathLocation;
@@ -28,7 +33,9 @@ import org.checkerframework.javacutil.Pair;
  * JaifBuilder creates Jaifs from a Map of ASTRecords to AnnotationMirrors.
  *
  * JaifBuilder first organizes ASTRecords by class and top level member, and then
- * builds a Jaif string.
+ * writes a Jaif. Classes are grouped and rendered in parallel, and their sections are
+ * written in order of class name as they are rendered, so the text of the whole Jaif
+ * is never held in memory unless {@link #createJaif()} is used.
  *
  * @author mcarthur
  *
@@ -36,10 +43,9 @@ import org.checkerframework.javacutil.Pair;
 public class JaifBuilder {
 
     /**
-     * Data structure that maps a class to its members (fields, variables, initializer)
-     * The nested Map maps a member to the List of VariableSlots for that member.
+     * The number of class sections that are rendered in parallel before they are written.
      */
-    private Map<String, ClassEntry> classesMap;
+    private static final int CLASS_BATCH_SIZE = 4 * Runtime.getRuntime().availableProcessors();
 
     /**
      * Represents a map of AnnotationLocation to the serialized form of the annotation
@@ -60,8 +66,6 @@ public class JaifBuilder {
 
     private final boolean insertMainModOfLocalVar;
 
-    private StringBuilder builder;
-
     public JaifBuilder(Map<AnnotationLocation, String> locationToAnno,
                         Set<? extends Class<? extends Annotation>> annotationMirrors) {
         this(locationToAnno, annotationMirrors, false);
@@ -79,24 +83,45 @@ public class JaifBuilder {
      * @return Jaif String
      */
     public String createJaif() {
-        classesMap = new HashMap<>();
-        builder = new StringBuilder();
-
-        // Organize by classes
-        buildClassEntries();
+        StringWriter writer = new StringWriter();
+        try {
+            writeJaif(writer);
+        } catch (IOException e) {
+            // StringWriter does not throw IOExceptions
+            throw new RuntimeException(e);
+        }
+        return writer.toString();
+    }
 
+    /**
+     * Writes a Jaif based on input slots to the given writer, one class section at a time.
+     *
+     * @param writer the destination of the Jaif, it is flushed but not closed
+     */
+    public void writeJaif(Writer writer) throws IOException {
         // Write out annotation definitions for all supported annotation mirrors
+        StringBuilder header = new StringBuilder();
         for (Class<? extends Annotation> annotation : supportedAnnotations) {
-            writeAnnotationHeader(annotation);
+            writeAnnotationHeader(annotation, header);
         }
+        writer.write(header.toString());
+
+        // Organize by classes
+        final Map<String, List<Entry<AnnotationLocation, String>>> locationsByClass = groupByClass();
+        List<String> classNames = new ArrayList<>(locationsByClass.keySet());
+        Collections.sort(classNames);
 
         // Write out each class
-        for (Map.Entry<String, ClassEntry> entry: classesMap.entrySet()) {
-            writeClassJaif(entry.getValue());
+        for (int start = 0; start < classNames.size(); start += CLASS_BATCH_SIZE) {
+            List<String> batch = classNames.subList(start, Math.min(start + CLASS_BATCH_SIZE, classNames.size()));
+            List<String> classJaifs = batch.parallelStream()
+                    .map(className -> buildClassJaif(className, locationsByClass.get(className)))
+                    .collect(Collectors.toList());
+            for (String classJaif : classJaifs) {
+                writer.write(classJaif);
+            }
         }
-
-        classesMap = null;
-        return builder.toString();
+        writer.flush();
     }
 
     /**
@@ -104,7 +129,7 @@ public class JaifBuilder {
      * annotations used as the return type of this annotation's methods. The annotations used as
      * return types must always be added as a header before the annotation using it in a method.
      */
-    private void writeAnnotationHeader(Class<? extends Annotation> annotation) {
+    private void writeAnnotationHeader(Class<? extends Annotation> annotation, StringBuilder builder) {
         // each annotation only needs to be written once to the header, skip if already written
         if (writeAnnotationHeaderCache.contains(annotation)) {
             // this case happens if a supported annotation contains multiple methods with the same
@@ -129,7 +154,7 @@ public class JaifBuilder {
             // if any return type is an annotation, then recursively create a header for the return
             // type and check the return type's fields for annotations
             if (methodReturnType.isAnnotation()) {
-                writeAnnotationHeader(methodReturnType.asSubclass(Annotation.class));
+                writeAnnotationHeader(methodReturnType.asSubclass(Annotation.class), builder);
             }
         }
 
@@ -215,7 +240,7 @@ public class JaifBuilder {
      * @param classEntry A unique entry for all members of a class that will be converted to
      *                   a jaif entry for that class
      */
-    private void writeClassJaif(ClassEntry classEntry) {
+    private void writeClassJaif(ClassEntry classEntry, StringBuilder builder) {
         builder.append("package " + classEntry.packageName + ":\n");
         builder.append("class " + classEntry.className + ":");
         if (!classEntry.declAnnos.isEmpty()) {
@@ -239,15 +264,15 @@ public class JaifBuilder {
         }
 
         for (Entry<String, MemberRecords> entry : initializers) {
-            writeMemberJaif(entry.getKey(), entry.getValue());
+            writeMemberJaif(entry.getKey(), entry.getValue(), builder);
         }
 
         for (Entry<String, MemberRecords> entry : fields) {
-            writeMemberJaif(entry.getKey(), entry.getValue());
+            writeMemberJaif(entry.getKey(), entry.getValue(), builder);
         }
 
         for (Entry<String, MemberRecords> entry : methods) {
-            writeMemberJaif(entry.getKey(), entry.getValue());
+            writeMemberJaif(entry.getKey(), entry.getValue(), builder);
         }
     }
 
@@ -256,7 +281,7 @@ public class JaifBuilder {
      * @param memberName the member
      * @param memberRecords the records for the member
      */
-    private void writeMemberJaif(String memberName, MemberRecords memberRecords) {
+    private void writeMemberJaif(String memberName, MemberRecords memberRecords, StringBuilder builder) {
 
         // Member name is null for InstanceInitializers
         if (memberName != null) {
@@ -289,16 +314,55 @@ public class JaifBuilder {
     }
 
     /**
-     * Iterate through each variable and add it to the appropriate Class and Member list.
+     * Group the locations by the fully qualified name of the class they belong to.
+     * Locations that are MISSING are dropped.
+     */
+    private Map<String, List<Entry<AnnotationLocation, String>>> groupByClass() {
+        return locationToAnno.entrySet().parallelStream()
+                .filter(entry -> entry.getKey().getKind() != AnnotationLocation.Kind.MISSING)
+                .collect(Collectors.groupingBy(entry -> getClassName(entry.getKey(), entry.getValue())));
+    }
+
+    private static String getClassName(AnnotationLocation location, String annotation) {
+        switch (location.getKind()) {
+            case AST_PATH:
+                return ((AstPathLocation) location).getAstRecord().className;
+
+            case CLASS_DECL:
+                return ((ClassDeclLocation) location).getFullyQualifiedClassName();
+
+            default:
+                throw new RuntimeException("Unhandled AnnotationLocation " + location +
+                        " with value " + annotation);
+        }
+    }
+
+    /**
+     * Build the jaif section of a single class.
+     *
+     * @param fullyQualified the class
+     * @param locations all locations in that class with the annotation to insert there
+     */
+    private String buildClassJaif(String fullyQualified, List<Entry<AnnotationLocation, String>> locations) {
+        Pair<String, String> packageToClass = ASTPathUtil.splitFullyQualifiedClass(fullyQualified);
+        ClassEntry classEntry = new ClassEntry(packageToClass.first, packageToClass.second);
+        buildClassEntry(classEntry, locations);
+
+        StringBuilder builder = new StringBuilder();
+        writeClassJaif(classEntry, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Iterate through each variable of a class and add it to the appropriate Member list.
      */
-    private void buildClassEntries() {
-        for (Entry<AnnotationLocation, String> entry: locationToAnno.entrySet()) {
+    private void buildClassEntry(ClassEntry classEntry, List<Entry<AnnotationLocation, String>> locations) {
+        for (Entry<AnnotationLocation, String> entry: locations) {
             AnnotationLocation location = entry.getKey();
             String annotation = entry.getValue();
             switch (location.getKind()) {
                 case AST_PATH:
                     AstPathLocation astLocation = (AstPathLocation) location;
-                    ClassEntry classEntry = getClassEntry(astLocation);
                     ASTRecord astRecord = astLocation.getAstRecord();
 
                     MemberRecords memberRecords = classEntry.getMemberRecords(astRecord.methodName, astRecord.varName);
@@ -317,14 +381,9 @@ public class JaifBuilder {
                     break;
 
                 case CLASS_DECL:
-                    ClassDeclLocation declLocation = (ClassDeclLocation) location;
-                    classEntry = getClassEntry(declLocation);
                     classEntry.addDeclarationAnnotation(annotation);
                     break;
 
-                case MISSING:
-                    break;
-
                 default:
                     throw new RuntimeException("Unhandled AnnotationLocation " + location +
                             " with value " + annotation);
@@ -402,40 +461,6 @@ public class JaifBuilder {
         return entry.getTreeKind() == kind && entry.getChildSelector().equals(childSelector);
     }
 
-    private ClassEntry getClassEntry(AstPathLocation location) {
-        return getClassEntry(location.getAstRecord().className);
-    }
-
-    private ClassEntry getClassEntry(ClassDeclLocation location) {
-        return getClassEntry(location.getFullyQualifiedClassName());
-    }
-
-    /**
-     * Lookup or create, for a given class, a map of Members of that class
-     * to a list of VariableSlots for those members.
-     *
-     * @param fullyQualified The class to look up.
-     */
-    private ClassEntry getClassEntry(String fullyQualified) {
-        ClassEntry classEntry = this.classesMap.get(fullyQualified);
-        if (classEntry == null) {
-            Pair<String, String> packageToClass = ASTPathUtil.splitFullyQualifiedClass(fullyQualified);
-            classEntry = new ClassEntry(packageToClass.first, packageToClass.second);
-            this.classesMap.put(fullyQualified, classEntry);
-        }
-        return classEntry;
-    }
-
-    /**
-     * Lookup or create, for a given class, a map of Members of that class
-     * to a list of VariableSlots for those members.
-     *
-     * @param record a record identifying a unique class
-     */
-    private ClassEntry getClassMembers(ASTRecord record) {
-        return getClassEntry(record.className);
-    }
-
     private static String getMemberString(String methodName, String variableName) {
         String result = "";
         // Write out the member type
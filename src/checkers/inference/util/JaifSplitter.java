@@ -33,6 +33,8 @@ import checkers.inference.util.JaifFileReader.JaifPackage;
  *
  *   To use JaifSplitter from source code, create a new JaifSplitter and call jaifSplitter.split()
  *   To use JaifSplitter from the command-line, run scripts/splitJaif or scripts/debugSplitJaif
+ *
+ *   To split a jaif and insert the packages concurrently without a shell script, see {@link ParallelJaifInserter}
  */
 public class JaifSplitter {
 
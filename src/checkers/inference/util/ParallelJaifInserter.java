@@ -0,0 +1,270 @@
+package checkers.inference.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.checkerframework.framework.util.ExecUtil;
+
+import checkers.inference.util.JaifFileReader.Block;
+import checkers.inference.util.JaifFileReader.JaifPackage;
+
+/**
+ * Inserts a JAIF into source code by running insert-annotations-to-source once per package,
+ * with a bounded number of insertions running at the same time.
+ *
+ * Like {@link JaifSplitter}, the JAIF is split by package. Each package's JAIF contains the
+ * annotation definitions of the original JAIF and is inserted only into the source files
+ * that declare that package. Packages are independent, so their insertions run concurrently
+ * and a failure in one package does not prevent insertion into the others.
+ *
+ * Progress is reported on the given stream as each package finishes.
+ */
+public class ParallelJaifInserter {
+
+    private static final Pattern PACKAGE_DECL = Pattern.compile("(?:^|\\s)package\\s+([\\w.]+)\\s*;$");
+
+    private final String insertAnnotationsScript;
+
+    /**
+     * Options passed to every insert-annotations-to-source run, excluding the JAIF and the source files.
+     */
+    private final List<String> afuOptions;
+
+    /**
+     * The directory in which the per-package JAIFs are written.
+     */
+    private final File splitJaifDir;
+
+    private final int numThreads;
+
+    private final PrintStream outStream;
+
+    public ParallelJaifInserter(String insertAnnotationsScript, List<String> afuOptions,
+                                File splitJaifDir, int numThreads, PrintStream outStream) {
+        this.insertAnnotationsScript = insertAnnotationsScript;
+        this.afuOptions = afuOptions;
+        this.splitJaifDir = splitJaifDir;
+        this.numThreads = numThreads;
+        this.outStream = outStream;
+    }
+
+    /**
+     * The outcome of inserting the annotations of one package.
+     */
+    public static class PackageInsertion {
+        public final String packageName;
+        public final List<String> javaFiles;
+        public int returnCode;
+        public String output;
+
+        PackageInsertion(String packageName) {
+            this.packageName = packageName;
+            this.javaFiles = new ArrayList<>();
+        }
+
+        public boolean failed() {
+            return returnCode != 0;
+        }
+    }
+
+    /**
+     * Insert the annotations in jaifFile into javaFiles.
+     *
+     * @return one PackageInsertion per package declared by javaFiles, in the order in which
+     * the packages first occur in javaFiles
+     */
+    public List<PackageInsertion> insert(File jaifFile, String [] javaFiles) {
+        Map<String, PackageInsertion> insertions = groupByPackage(javaFiles);
+
+        StringBuilder header = new StringBuilder();
+        Map<String, List<JaifPackage>> packageSections = new LinkedHashMap<>();
+        splitJaif(jaifFile, header, packageSections);
+        final String headerText = header.toString();
+
+        JaifSplitter.makeDirectoryOrFail(splitJaifDir);
+
+        ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, insertions.size())));
+        CompletionService<PackageInsertion> completionService = new ExecutorCompletionService<>(service);
+        for (final PackageInsertion insertion : insertions.values()) {
+            final List<JaifPackage> sections = packageSections.get(insertion.packageName);
+            completionService.submit(() -> insertPackage(insertion, headerText, sections));
+        }
+        service.shutdown();
+
+        int completed = 0;
+        for (int i = 0; i < insertions.size(); i++) {
+            try {
+                PackageInsertion insertion = completionService.take().get();
+                ++completed;
+                outStream.println("Inserted package " + displayName(insertion.packageName)
+                        + (insertion.failed() ? " -- FAILED" : "")
+                        + " (" + completed + " / " + insertions.size() + ")");
+                outStream.flush();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return new ArrayList<>(insertions.values());
+    }
+
+    private PackageInsertion insertPackage(PackageInsertion insertion, String header, List<JaifPackage> sections) {
+        ByteArrayOutputStream insertOut = new ByteArrayOutputStream();
+        try {
+            String jaifName = insertion.packageName.isEmpty() ? "default-package" : insertion.packageName;
+            File packageJaif = new File(splitJaifDir, jaifName + ".jaif");
+            writePackageJaif(packageJaif, header, sections);
+
+            List<String> options = new ArrayList<>(afuOptions.size() + insertion.javaFiles.size() + 2);
+            options.add(insertAnnotationsScript);
+            options.addAll(afuOptions);
+            options.add(packageJaif.getAbsolutePath());
+            options.addAll(insertion.javaFiles);
+
+            insertion.returnCode = ExecUtil.execute(options.toArray(new String[options.size()]), insertOut, insertOut);
+
+        } catch (RuntimeException | IOException e) {
+            e.printStackTrace(new PrintStream(insertOut, true));
+            insertion.returnCode = 1;
+        }
+
+        insertion.output = insertOut.toString();
+        return insertion;
+    }
+
+    /**
+     * Separates the annotation definitions at the head of the JAIF from the package sections
+     * that hold the insertions. Sections of the same package are collected together.
+     */
+    private static void splitJaif(File jaifFile, StringBuilder header, Map<String, List<JaifPackage>> packageSections) {
+        for (JaifPackage jaifPackage : new JaifFileReader(jaifFile)) {
+            if (jaifPackage.name == null) {
+                // empty jaif
+                continue;
+            }
+
+            List<Block> definitions = new ArrayList<>();
+            for (Block block : jaifPackage.entries) {
+                if (!block.lines.isEmpty() && block.lines.get(0).startsWith("annotation ")) {
+                    definitions.add(block);
+                }
+            }
+
+            if (definitions.isEmpty()) {
+                List<JaifPackage> sections = packageSections.get(jaifPackage.name);
+                if (sections == null) {
+                    sections = new ArrayList<>();
+                    packageSections.put(jaifPackage.name, sections);
+                }
+                sections.add(jaifPackage);
+
+            } else {
+                header.append("package ").append(jaifPackage.name).append(":\n");
+                for (Block definition : definitions) {
+                    header.append(definition).append("\n\n");
+                }
+            }
+        }
+    }
+
+    private static void writePackageJaif(File packageJaif, String header, List<JaifPackage> sections) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(packageJaif))) {
+            writer.write(header);
+            writer.newLine();
+            if (sections != null) {
+                for (JaifPackage section : sections) {
+                    for (String line : section.getLines()) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Group the source files by the package they declare. Files in packages that have no
+     * annotations to insert are still passed to the AFU so that its output is the same as
+     * when inserting all files at once.
+     */
+    private static Map<String, PackageInsertion> groupByPackage(String [] javaFiles) {
+        Map<String, PackageInsertion> insertions = new LinkedHashMap<>();
+        for (String javaFile : javaFiles) {
+            String packageName = readPackageName(new File(javaFile));
+            PackageInsertion insertion = insertions.get(packageName);
+            if (insertion == null) {
+                insertion = new PackageInsertion(packageName);
+                insertions.put(packageName, insertion);
+            }
+            insertion.javaFiles.add(javaFile);
+        }
+        return insertions;
+    }
+
+    /**
+     * @return the package declared by the given source file, or the empty string for the
+     * default package
+     */
+    private static String readPackageName(File javaFile) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(javaFile))) {
+            Matcher matcher = PACKAGE_DECL.matcher(readFirstDeclaration(reader));
+            return matcher.find() ? matcher.group(1) : "";
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read " + javaFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Reads the source up to the end of its first declaration, the first ';' or '{', without
+     * comments, so that a package declaration in a comment is not mistaken for the real one.
+     */
+    private static String readFirstDeclaration(BufferedReader reader) throws IOException {
+        StringBuilder declaration = new StringBuilder();
+        int previous = -1;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (previous == '/' && c == '/') {
+                declaration.setLength(declaration.length() - 1);
+                reader.readLine();
+                declaration.append('\n');
+                c = -1;
+            } else if (previous == '/' && c == '*') {
+                declaration.setLength(declaration.length() - 1);
+                int last = -1;
+                while ((c = reader.read()) != -1 && !(last == '*' && c == '/')) {
+                    last = c;
+                }
+                declaration.append(' ');
+                c = -1;
+            } else {
+                declaration.append((char) c);
+                if (c == ';' || c == '{') {
+                    break;
+                }
+            }
+            previous = c;
+        }
+        return declaration.toString();
+    }
+
+    private static String displayName(String packageName) {
+        return packageName.isEmpty() ? "<default>" : packageName;
+    }
+}
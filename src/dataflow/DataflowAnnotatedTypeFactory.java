@@ -108,8 +108,53 @@ public class DataflowAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         return pt;
     }
 
+    /**
+     * The type names and roots of a {@code @DataFlow} annotation as bitsets over the type
+     * names interned by {@link DataFlowQualifierHierarchy}, together with the type names and
+     * roots of the annotation simplified by {@link #refineDataflow(AnnotationMirror)}.
+     */
+    private static final class DataflowDescriptor {
+        final long[] typeNames;
+        final long[] roots;
+        final long[] refinedTypeNames;
+        final long[] refinedRoots;
+
+        DataflowDescriptor(long[] typeNames, long[] roots, long[] refinedTypeNames, long[] refinedRoots) {
+            this.typeNames = typeNames;
+            this.roots = roots;
+            this.refinedTypeNames = refinedTypeNames;
+            this.refinedRoots = refinedRoots;
+        }
+    }
+
     private final class DataFlowQualifierHierarchy extends GraphQualifierHierarchy {
 
+        /**
+         * The type names and roots seen in {@code @DataFlow} annotations, indexed by their
+         * bit position in a {@link DataflowDescriptor}.
+         */
+        private final List<String> typeNames = new ArrayList<>();
+
+        private final Map<String, Integer> typeNameBits = new HashMap<>();
+
+        private final Map<AnnotationMirror, DataflowDescriptor> descriptors = AnnotationUtils.createAnnotationMap();
+
+        /**
+         * For each type name, the bits of the type names whose subtype relation to it has been
+         * computed, and the bits of those that are subtypes of it.
+         */
+        private long[][] subtypeKnown = new long[0][];
+        private long[][] subtypes = new long[0][];
+
+        /**
+         * Scratch bitsets of the combined annotation of {@link #isSubtypeWithRoots}, which are
+         * reused by every check.
+         */
+        private long[] combinedTypeNames = new long[0];
+        private long[] combinedRoots = new long[0];
+        private long[] refinedCombinedTypeNames = new long[0];
+        private long[] refinedCombinedRoots = new long[0];
+
         public DataFlowQualifierHierarchy(MultiGraphFactory f, AnnotationMirror bottom) {
             super(f, bottom);
         }
@@ -117,38 +162,184 @@ public class DataflowAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         /**
          * This method checks whether rhs is subtype of lhs. rhs and lhs are
          * both Dataflow types with typeNameRoots argument.
+         *
+         * rhs is a subtype of lhs iff the combined type names and roots of both, simplified
+         * as in {@link #refineDataflow(AnnotationMirror)}, are the simplified type names and
+         * roots of lhs. The check is done on the cached bitsets of both annotations.
          * 
          * @param rhs
          * @param lhs
          * @return true is rhs is subtype of lhs, otherwise return false.
          */
         private boolean isSubtypeWithRoots(AnnotationMirror rhs, AnnotationMirror lhs) {
+            DataflowDescriptor rDescriptor = getDescriptor(rhs);
+            DataflowDescriptor lDescriptor = getDescriptor(lhs);
+
+            int words = (typeNames.size() + 63) / 64;
+            if (combinedTypeNames.length < words) {
+                combinedTypeNames = new long[words];
+                combinedRoots = new long[words];
+                refinedCombinedTypeNames = new long[words];
+                refinedCombinedRoots = new long[words];
+            }
+            union(rDescriptor.typeNames, lDescriptor.typeNames, combinedTypeNames);
+            union(rDescriptor.roots, lDescriptor.roots, combinedRoots);
+            refine(combinedTypeNames, combinedRoots, refinedCombinedTypeNames, refinedCombinedRoots);
 
-            Set<String> rTypeNamesSet = new HashSet<String>(Arrays.asList(DataflowUtils
-                    .getTypeNames(rhs)));
-            Set<String> lTypeNamesSet = new HashSet<String>(Arrays.asList(DataflowUtils
-                    .getTypeNames(lhs)));
-            Set<String> rRootsSet = new HashSet<String>(Arrays.asList(DataflowUtils
-                    .getTypeNameRoots(rhs)));
-            Set<String> lRootsSet = new HashSet<String>(Arrays.asList(DataflowUtils
-                    .getTypeNameRoots(lhs)));
-            Set<String> combinedTypeNames = new HashSet<String>();
-            combinedTypeNames.addAll(rTypeNamesSet);
-            combinedTypeNames.addAll(lTypeNamesSet);
-            Set<String> combinedRoots = new HashSet<String>();
-            combinedRoots.addAll(rRootsSet);
-            combinedRoots.addAll(lRootsSet);
-
-            AnnotationMirror combinedAnno = DataflowUtils.createDataflowAnnotationWithRoots(
-                    combinedTypeNames, combinedRoots, processingEnv);
-            AnnotationMirror refinedCombinedAnno = refineDataflow(combinedAnno);
-            AnnotationMirror refinedLhs = refineDataflow(lhs);
-
-            if (AnnotationUtils.areSame(refinedCombinedAnno, refinedLhs)) {
-                return true;
-            } else {
-                return false;
+            return sameBits(refinedCombinedRoots, lDescriptor.refinedRoots)
+                    && sameBits(refinedCombinedTypeNames, lDescriptor.refinedTypeNames);
+        }
+
+        private DataflowDescriptor getDescriptor(AnnotationMirror anno) {
+            DataflowDescriptor descriptor = descriptors.get(anno);
+            if (descriptor == null) {
+                long[] annoTypeNames = toBits(DataflowUtils.getTypeNames(anno));
+                long[] annoRoots = toBits(DataflowUtils.getTypeNameRoots(anno));
+                long[] refinedTypeNames = new long[annoTypeNames.length];
+                long[] refinedRoots = new long[annoRoots.length];
+                refine(annoTypeNames, annoRoots, refinedTypeNames, refinedRoots);
+                descriptor = new DataflowDescriptor(annoTypeNames, annoRoots, refinedTypeNames, refinedRoots);
+                descriptors.put(anno, descriptor);
+            }
+            return descriptor;
+        }
+
+        /**
+         * Simplifies the given type names and roots like {@link #refineDataflow(AnnotationMirror)}:
+         * only the roots that are not subtypes of another root are kept, and if there are
+         * roots, only the type names that are not subtypes of a kept root.
+         */
+        private void refine(long[] names, long[] roots, long[] refinedNames, long[] refinedRoots) {
+            boolean hasRoots = false;
+            for (int i = 0; i < refinedRoots.length; i++) {
+                long word = i < roots.length ? roots[i] : 0;
+                long refinedWord = 0;
+                while (word != 0) {
+                    int root = i * 64 + Long.numberOfTrailingZeros(word);
+                    if (!isSubtypeOfAny(root, roots, true)) {
+                        refinedWord |= 1L << (root % 64);
+                    }
+                    word &= word - 1;
+                }
+                refinedRoots[i] = refinedWord;
+                hasRoots |= refinedWord != 0;
+            }
+
+            Integer emptyName = typeNameBits.get("");
+            for (int i = 0; i < refinedNames.length; i++) {
+                long word = i < names.length ? names[i] : 0;
+                if (!hasRoots) {
+                    refinedNames[i] = word;
+                    continue;
+                }
+                long refinedWord = 0;
+                while (word != 0) {
+                    int name = i * 64 + Long.numberOfTrailingZeros(word);
+                    if ((emptyName == null || name != emptyName) && !isSubtypeOfAny(name, refinedRoots, false)) {
+                        refinedWord |= 1L << (name % 64);
+                    }
+                    word &= word - 1;
+                }
+                refinedNames[i] = refinedWord;
+            }
+        }
+
+        /**
+         * Whether the given type name is a subtype of one of the given types. Type names and
+         * roots share their bits, so a type name is a subtype of the root with the same name.
+         * If {@code onlyStrict} is set, the type name itself does not count, and a type with the
+         * same type mirror only counts if it has a lower bit, so that exactly one of several
+         * equivalent roots is kept.
+         */
+        private boolean isSubtypeOfAny(int typeName, long[] types, boolean onlyStrict) {
+            for (int i = 0; i < types.length; i++) {
+                long word = types[i];
+                while (word != 0) {
+                    int type = i * 64 + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if ((onlyStrict && type == typeName) || !isTypeNameSubtype(typeName, type)) {
+                        continue;
+                    }
+                    if (!onlyStrict || type < typeName || !isTypeNameSubtype(type, typeName)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether the type of the first type name is a subtype of the type of the second. The
+         * result is memoized, so javac is asked at most once per pair of type names.
+         */
+        private boolean isTypeNameSubtype(int subtype, int supertype) {
+            long mask = 1L << (subtype % 64);
+            if ((subtypeKnown[supertype][subtype / 64] & mask) == 0) {
+                String subtypeName = typeNames.get(subtype);
+                String supertypeName = typeNames.get(supertype);
+                if (!subtypeName.isEmpty() && !supertypeName.isEmpty()
+                        && types.isSubtype(getTypeMirror(subtypeName), getTypeMirror(supertypeName))) {
+                    subtypes[supertype][subtype / 64] |= mask;
+                }
+                subtypeKnown[supertype][subtype / 64] |= mask;
+            }
+            return (subtypes[supertype][subtype / 64] & mask) != 0;
+        }
+
+        private long[] toBits(String[] names) {
+            for (String name : names) {
+                internTypeName(name);
+            }
+            long[] bits = new long[(typeNames.size() + 63) / 64];
+            for (String name : names) {
+                int bit = typeNameBits.get(name);
+                bits[bit / 64] |= 1L << (bit % 64);
+            }
+            return bits;
+        }
+
+        private void internTypeName(String name) {
+            if (typeNameBits.containsKey(name)) {
+                return;
+            }
+            int bit = typeNames.size();
+            typeNames.add(name);
+            typeNameBits.put(name, bit);
+
+            int words = (typeNames.size() + 63) / 64;
+            if (bit >= subtypeKnown.length) {
+                subtypeKnown = Arrays.copyOf(subtypeKnown, Math.max(16, 2 * subtypeKnown.length));
+                subtypes = Arrays.copyOf(subtypes, subtypeKnown.length);
+            }
+            subtypeKnown[bit] = new long[words];
+            subtypes[bit] = new long[words];
+            if (bit % 64 == 0) {
+                for (int i = 0; i < bit; i++) {
+                    subtypeKnown[i] = Arrays.copyOf(subtypeKnown[i], words);
+                    subtypes[i] = Arrays.copyOf(subtypes[i], words);
+                }
+            }
+        }
+
+        /**
+         * Stores the union of a and b in result, which is at least as long as both.
+         */
+        private void union(long[] a, long[] b, long[] result) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (i < a.length ? a[i] : 0) | (i < b.length ? b[i] : 0);
+            }
+        }
+
+        /**
+         * Whether a and b have the same bits set; missing words count as 0.
+         */
+        private boolean sameBits(long[] a, long[] b) {
+            for (int i = 0; i < Math.max(a.length, b.length); i++) {
+                if ((i < a.length ? a[i] : 0) != (i < b.length ? b[i] : 0)) {
+                    return false;
+                }
             }
+            return true;
         }
 
         /**
@@ -21,25 +21,64 @@ public class DataflowResult extends DefaultInferenceResult {
     private final Map<Integer, Set<String>> typeRootResults;
     private final Map<Integer, Boolean> idToExistance;
     private final DataflowAnnotatedTypeFactory realTypeFactory;
+    private final ProcessingEnvironment processingEnv;
 
     public DataflowResult(Collection<DatatypeSolution> solutions, ProcessingEnvironment processingEnv) {
+        this(processingEnv);
+        mergeSolutions(solutions);
+        completeMerge();
+    }
+
+    /**
+     * Creates an empty result that solutions are merged into one at a time with
+     * {@link #mergeSolution(DatatypeSolution)}, as the datatype solvers finish. The
+     * annotations are created by {@link #completeMerge()} once all solutions are merged.
+     */
+    public DataflowResult(ProcessingEnvironment processingEnv) {
         // Legacy solver doesn't support explanation
         super();
         this.typeNameResults = new HashMap<>();
         this.typeRootResults = new HashMap<>();
         this.idToExistance = new HashMap<>();
         this.realTypeFactory = (DataflowAnnotatedTypeFactory)InferenceMain.getInstance().getRealTypeFactory();
-        mergeSolutions(solutions);
-        createAnnotations(processingEnv);
-        simplifyAnnotation();
-        PrintUtils.printSolutions(varIdToAnnotation);
+        this.processingEnv = processingEnv;
     }
 
     public void mergeSolutions(Collection<DatatypeSolution> solutions) {
         for (DatatypeSolution solution : solutions) {
-            mergeSingleSolution(solution);
-            mergeIdToExistance(solution);
+            mergeSolution(solution);
+        }
+    }
+
+    public void mergeSolution(DatatypeSolution solution) {
+        mergeSingleSolution(solution);
+        mergeIdToExistance(solution);
+    }
+
+    /**
+     * Merges the type names, or the roots, inferred for one slot by a solver that infers
+     * all datatypes of a slot at once.
+     */
+    public void mergeDatatypes(int id, Collection<String> datatypes, boolean isRoot) {
+        Map<Integer, Set<String>> results = isRoot ? typeRootResults : typeNameResults;
+        Set<String> slotDatatypes = results.get(id);
+        if (slotDatatypes == null) {
+            slotDatatypes = new TreeSet<>();
+            results.put(id, slotDatatypes);
         }
+        slotDatatypes.addAll(datatypes);
+        if (!idToExistance.containsKey(id)) {
+            idToExistance.put(id, !datatypes.isEmpty());
+        }
+    }
+
+    /**
+     * Creates the annotations of the merged solutions.
+     */
+    public void completeMerge() {
+        createAnnotations(processingEnv);
+        simplifyAnnotation();
+        PrintUtils.printSolutions(varIdToAnnotation);
     }
 
     private void mergeSingleSolution(DatatypeSolution solution) {
@@ -2,11 +2,13 @@ package dataflow.solvers.classic;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -18,6 +20,7 @@ import javax.lang.model.util.Elements;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.BugInCF;
 
 import checkers.inference.InferenceResult;
 import checkers.inference.InferenceSolver;
@@ -32,11 +35,20 @@ import dataflow.util.DataflowUtils;
 /**
  * A solver for dataflow type system that is independent from GeneralSolver.
  *
+ * There is one {@link DatatypeSolver} per type name or root on a constant path. They
+ * are solved on a pool of at most one thread per processor that is shared by all
+ * dataflow solvers, and each solution is merged into the {@link DataflowResult} as
+ * soon as its solver finishes. A datatype solution only holds the slots on the constant
+ * path of its datatype, so the variable slots that are on no constant path are given an
+ * empty {@link DataFlow} afterwards.
+ *
  * @author jianchu
  *
  */
 public class DataflowSolver implements InferenceSolver {
 
+    private static ExecutorService solverService;
+
     protected AnnotationMirror DATAFLOW;
 
     @Override
@@ -68,48 +80,70 @@ public class DataflowSolver implements InferenceSolver {
             }
         }
 
-        List<DatatypeSolution> solutions = new ArrayList<>();
-        try {
-            if (dataflowSolvers.size() > 0) {
-                solutions = solveInparallel(dataflowSolvers);
+        DataflowResult result = createResult(processingEnvironment);
+        if (dataflowSolvers.size() == 1) {
+            result.mergeSolution(dataflowSolvers.get(0).solve());
+        } else if (dataflowSolvers.size() > 1) {
+            solveInparallel(dataflowSolvers, result);
+        }
+        if (!dataflowSolvers.isEmpty()) {
+            for (Slot slot : slots) {
+                if (slot.isVariable() && !result.containsSolutionForVariable(slot.getId())) {
+                    result.mergeDatatypes(slot.getId(), Collections.emptySet(), false);
+                }
             }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
         }
-
-        return getMergedResultFromSolutions(processingEnvironment, solutions);
+        result.completeMerge();
+        return result;
     }
 
-    private List<DatatypeSolution> solveInparallel(List<DatatypeSolver> dataflowSolvers)
-            throws InterruptedException, ExecutionException {
-        ExecutorService service = Executors.newFixedThreadPool(dataflowSolvers.size());
-
-        List<Future<DatatypeSolution>> futures = new ArrayList<Future<DatatypeSolution>>();
-
-        for (final DatatypeSolver solver : dataflowSolvers) {
-            Callable<DatatypeSolution> callable = new Callable<DatatypeSolution>() {
-                @Override
-                public DatatypeSolution call() throws Exception {
-                    return solver.solve();
-                }
-            };
-            futures.add(service.submit(callable));
+    /**
+     * Returns the pool shared by all dataflow solvers, with at most one daemon thread
+     * per processor.
+     */
+    private static synchronized ExecutorService getSolverService() {
+        if (solverService == null) {
+            solverService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "dataflow-datatype-solver");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
         }
-        service.shutdown();
+        return solverService;
+    }
 
-        List<DatatypeSolution> solutions = new ArrayList<>();
-        for (Future<DatatypeSolution> future : futures) {
-            solutions.add(future.get());
+    private void solveInparallel(List<DatatypeSolver> dataflowSolvers, DataflowResult result) {
+        CompletionService<DatatypeSolution> service = new ExecutorCompletionService<>(getSolverService());
+
+        List<Future<DatatypeSolution>> futures = new ArrayList<>();
+        try {
+            for (DatatypeSolver solver : dataflowSolvers) {
+                futures.add(service.submit(solver::solve));
+            }
+            for (int i = 0; i < dataflowSolvers.size(); i++) {
+                result.mergeSolution(service.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BugInCF("Interrupted while solving datatypes.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BugInCF("Error solving datatypes.", e.getCause());
+        } finally {
+            for (Future<DatatypeSolution> future : futures) {
+                future.cancel(true);
+            }
         }
-        return solutions;
     }
 
     protected DataflowSerializer getSerializer(String datatype, boolean isRoot) {
         return new DataflowSerializer(datatype, isRoot);
     }
 
-    protected InferenceResult getMergedResultFromSolutions(ProcessingEnvironment processingEnvironment,
-                                                           List<DatatypeSolution> solutions) {
-        return new DataflowResult(solutions, processingEnvironment);
+    protected DataflowResult createResult(ProcessingEnvironment processingEnvironment) {
+        return new DataflowResult(processingEnvironment);
     }
 }
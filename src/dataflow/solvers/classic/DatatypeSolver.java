@@ -2,6 +2,7 @@ package dataflow.solvers.classic;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -10,20 +11,29 @@ import java.util.Map;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
 
-import checkers.inference.InferenceMain;
-import checkers.inference.SlotManager;
 import checkers.inference.model.Constraint;
 
+/**
+ * Solves the constraints on the constant path of one datatype with Sat4j.
+ *
+ * The clauses only mention the slots on that path, so the slot ids (and the ids of
+ * existential variables) are renumbered to dense SAT variables 1..n. The solver then only
+ * allocates variables for these slots instead of for every slot of the program, and the
+ * solution only holds the slots on the path.
+ */
 public class DatatypeSolver {
-    private final SlotManager slotManager;
     private final String datatype;
     private final DataflowSerializer serializer;
     private final List<VecInt> clauses;
 
+    /**
+     * The slot or existential id of each dense variable, indexed by the variable.
+     */
+    private int[] varToId;
+
     public DatatypeSolver(String datatype, Collection<Constraint> constraints, DataflowSerializer serializer) {
         this.datatype = datatype;
         this.serializer = serializer;
-        this.slotManager = InferenceMain.getInstance().getSlotManager();
         this.clauses = convertToCNF(constraints);
         // writeCNF();
     }
@@ -56,14 +66,46 @@ public class DatatypeSolver {
     }
 
     private List<VecInt> convertToCNF(Collection<Constraint> constraints) {
-        return serializer.convertAll(constraints);
+        return renumberVariables(serializer.convertAll(constraints));
+    }
+
+    /**
+     * Replaces the ids in the given clauses by dense variables, in the order in which the
+     * ids first occur, and records the id of each variable in {@link #varToId}.
+     */
+    private List<VecInt> renumberVariables(List<VecInt> idClauses) {
+        Map<Integer, Integer> idToVar = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        ids.add(0);
+        List<VecInt> varClauses = new ArrayList<>(idClauses.size());
+        for (VecInt idClause : idClauses) {
+            int[] literals = new int[idClause.size()];
+            for (int i = 0; i < literals.length; i++) {
+                int literal = idClause.get(i);
+                int id = Math.abs(literal);
+                Integer var = idToVar.get(id);
+                if (var == null) {
+                    var = ids.size();
+                    idToVar.put(id, var);
+                    ids.add(id);
+                }
+                literals[i] = literal > 0 ? var : -var;
+            }
+            varClauses.add(new VecInt(literals));
+        }
+
+        varToId = new int[ids.size()];
+        for (int var = 1; var < varToId.length; var++) {
+            varToId[var] = ids.get(var);
+        }
+        return varClauses;
     }
 
     public DatatypeSolution solve() {
         Map<Integer, Boolean> idToExistence = new HashMap<>();
         Map<Integer, Boolean> result = new HashMap<>();
 
-        final int totalVars = slotManager.getNumberOfSlots();
+        final int totalVars = varToId.length - 1;
         final int totalClauses = clauses.size();
 
         try {
@@ -93,6 +135,11 @@ public class DatatypeSolver {
                     boolean varIsTrue = var > 0;
                     //Need postive var
                     var = Math.abs(var);
+                    if (var > totalVars) {
+                        // Selector variable of a soft clause
+                        continue;
+                    }
+                    var = varToId[var];
                     Integer potential = existentialToPotentialIds.get(var);
                     if (potential != null) {
                         idToExistence.put(potential, varIsTrue);
@@ -112,6 +159,9 @@ public class DatatypeSolver {
             }
 
         } catch (Throwable th) {
+            if (clauses.isEmpty()) {
+                throw new RuntimeException("Error MAX-SAT solving!", th);
+            }
             VecInt lastClause = clauses.get(clauses.size() - 1);
             throw new RuntimeException("Error MAX-SAT solving! " + lastClause, th);
         }
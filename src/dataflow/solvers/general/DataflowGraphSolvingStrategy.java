@@ -72,12 +72,12 @@ public class DataflowGraphSolvingStrategy extends GraphSolvingStrategy {
                     AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotation(
                             DataflowUtils.convert(dataflowValues), processingEnvironment);
                     TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
-                    solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+                    addComponentSolver(solvers, solverEnvironment, slots, entry.getValue(), latticeFor2);
                 } else if (dataflowRoots.length == 1) {
                     AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotationForByte(
                             DataflowUtils.convert(dataflowRoots), processingEnvironment);
                     TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
-                    solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+                    addComponentSolver(solvers, solverEnvironment, slots, entry.getValue(), latticeFor2);
                 }
             }
         }
@@ -85,6 +85,14 @@ public class DataflowGraphSolvingStrategy extends GraphSolvingStrategy {
         return solvers;
     }
 
+    private void addComponentSolver(List<Solver<?>> solvers, SolverEnvironment solverEnvironment,
+            Collection<Slot> slots, Set<Constraint> constraints, Lattice lattice) {
+        Solver<?> solver = createComponentSolver(solverEnvironment, slots, constraints, lattice);
+        if (solver != null) {
+            solvers.add(solver);
+        }
+    }
+
     @Override
     protected ConstraintGraph generateGraph(Collection<Slot> slots, Collection<Constraint> constraints,
             ProcessingEnvironment processingEnvironment) {
@@ -0,0 +1,288 @@
+package dataflow.solvers.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceResult;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.solver.propagation.BitSetPropagation;
+import dataflow.qual.DataFlow;
+import dataflow.solvers.classic.DataflowResult;
+import dataflow.util.DataflowUtils;
+
+/**
+ * A solver for the dataflow type system that computes the type names and roots of every
+ * slot by propagation, without SAT solving.
+ *
+ * The type names of {@code @DataFlow} qualifiers form a powerset lattice, and the
+ * {@link dataflow.solvers.classic.DataflowSolver} solves one SAT problem per type name
+ * on the constant path of that type name. The least solution of these problems is the
+ * least fixpoint of propagating each type name from its constant along the constraints:
+ * from the subtype to the supertype of a subtype constraint, and both ways along an
+ * equality constraint. Like the constant paths of {@link
+ * checkers.inference.solver.constraintgraph.GraphBuilder}, propagation starts at the
+ * {@code @DataFlow} constants with a single type name (or else a single root), and does not
+ * continue through constants or through slots with a missing location.
+ *
+ * Type names and roots are interned to bit positions, so the set of each slot is a bitset
+ * propagated by a {@link BitSetPropagation}. Like in the classic solver, the variable slots
+ * that no type name or root reaches get an empty {@code @DataFlow}.
+ *
+ * Propagation only satisfies the lower bounds of the slots. Afterwards, every subtype or
+ * equality constraint between a variable and a constant is checked against the result, and
+ * the violated ones, for example where a constant bounds a slot from above, are returned as
+ * the unsatisfiable constraints instead of a solution. Other constraints are ignored, so the
+ * result only matches the one of the classic solver when all constraints are subtype and
+ * equality constraints.
+ */
+public class DataflowPropagationSolver implements InferenceSolver {
+
+    private AnnotationMirror DATAFLOW;
+
+    /**
+     * The type names and roots seen on the constants, indexed by their bit position.
+     */
+    private final List<String> datatypes = new ArrayList<>();
+
+    private final List<Boolean> datatypeIsRoot = new ArrayList<>();
+
+    private final Map<String, Integer> typeNameBits = new HashMap<>();
+
+    private final Map<String, Integer> typeRootBits = new HashMap<>();
+
+    /**
+     * Dense index of every variable slot id that occurs in a constraint, in order of occurrence.
+     */
+    private final Map<Integer, Integer> variableIndex = new LinkedHashMap<>();
+
+    @Override
+    public InferenceResult solve(Map<String, String> configuration,
+                                 Collection<Slot> slots, Collection<Constraint> constraints,
+                                 QualifierHierarchy qualHierarchy,
+                                 ProcessingEnvironment processingEnvironment) {
+
+        DATAFLOW = AnnotationBuilder.fromClass(processingEnvironment.getElementUtils(), DataFlow.class);
+
+        // Index the flows of the constraints: from a slot to a variable slot whose set must include it.
+        // Variable flows hold the index of both slots, constant flows the datatype bit and the index.
+        List<int[]> variableFlows = new ArrayList<>();
+        List<int[]> constantFlows = new ArrayList<>();
+        int ignoredConstraints = 0;
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                Slot subtype = ((SubtypeConstraint) constraint).getSubtype();
+                Slot supertype = ((SubtypeConstraint) constraint).getSupertype();
+                addFlow(variableFlows, constantFlows, subtype, supertype);
+            } else if (constraint instanceof EqualityConstraint) {
+                Slot first = ((EqualityConstraint) constraint).getFirst();
+                Slot second = ((EqualityConstraint) constraint).getSecond();
+                addFlow(variableFlows, constantFlows, first, second);
+                addFlow(variableFlows, constantFlows, second, first);
+            } else {
+                ignoredConstraints++;
+            }
+        }
+        if (ignoredConstraints > 0) {
+            InferenceMain.getInstance().logger.log(Level.INFO,
+                    "Ignoring " + ignoredConstraints + " constraints that are neither subtype nor equality constraints");
+        }
+
+        // All datatypes are interned now, so every bitset has the same width.
+        BitSetPropagation propagation = new BitSetPropagation(variableIndex.size(), datatypes.size());
+        for (int[] flow : variableFlows) {
+            propagation.addEdge(flow[0], flow[1]);
+        }
+        for (int[] flow : constantFlows) {
+            propagation.addBit(flow[1], flow[0]);
+        }
+        propagation.propagate();
+
+        DataflowResult result = createResult(propagation, slots, processingEnvironment);
+        List<Constraint> violated = findViolatedConstantBounds(result, constraints, qualHierarchy);
+        if (!violated.isEmpty()) {
+            return new DefaultInferenceResult(violated);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the subtype and equality constraints between a variable and a constant that the
+     * given result violates. Propagation gives every variable the least set its lower bounds
+     * allow, so a constant that bounds a variable from above and is exceeded cannot be met.
+     */
+    private static List<Constraint> findViolatedConstantBounds(DataflowResult result,
+                                                               Collection<Constraint> constraints,
+                                                               QualifierHierarchy qualHierarchy) {
+        List<Constraint> violated = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                Slot subtype = ((SubtypeConstraint) constraint).getSubtype();
+                Slot supertype = ((SubtypeConstraint) constraint).getSupertype();
+                if (subtype.isVariable() && supertype.isConstant()
+                        && !isSubtype(result, subtype, supertype, qualHierarchy)) {
+                    violated.add(constraint);
+                }
+            } else if (constraint instanceof EqualityConstraint) {
+                Slot first = ((EqualityConstraint) constraint).getFirst();
+                Slot second = ((EqualityConstraint) constraint).getSecond();
+                if (first.isConstant() != second.isConstant()
+                        && (!isSubtype(result, first, second, qualHierarchy)
+                            || !isSubtype(result, second, first, qualHierarchy))) {
+                    violated.add(constraint);
+                }
+            }
+        }
+        return violated;
+    }
+
+    /**
+     * @return whether the value of subtype in the result is a subtype of the value of
+     * supertype, or true if either has no value
+     */
+    private static boolean isSubtype(DataflowResult result, Slot subtype, Slot supertype,
+                                     QualifierHierarchy qualHierarchy) {
+        AnnotationMirror subtypeValue = getValue(result, subtype);
+        AnnotationMirror supertypeValue = getValue(result, supertype);
+        return subtypeValue == null || supertypeValue == null
+                || qualHierarchy.isSubtype(subtypeValue, supertypeValue);
+    }
+
+    private static /* @Nullable */ AnnotationMirror getValue(DataflowResult result, Slot slot) {
+        if (slot.isConstant()) {
+            return ((ConstantSlot) slot).getValue();
+        }
+        return result.containsSolutionForVariable(slot.getId()) ? result.getSolutionForVariable(slot.getId()) : null;
+    }
+
+    private DataflowResult createResult(BitSetPropagation propagation, Collection<Slot> slots,
+                                        ProcessingEnvironment processingEnvironment) {
+        DataflowResult result = new DataflowResult(processingEnvironment);
+        for (Map.Entry<Integer, Integer> variable : variableIndex.entrySet()) {
+            long[] bits = propagation.getBits(variable.getValue());
+            if (BitSetPropagation.isEmpty(bits)) {
+                continue;
+            }
+            Set<String> typeNames = new TreeSet<>();
+            Set<String> typeRoots = new TreeSet<>();
+            for (int i = 0; i < bits.length; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    int bit = i * 64 + Long.numberOfTrailingZeros(word);
+                    if (datatypeIsRoot.get(bit)) {
+                        typeRoots.add(datatypes.get(bit));
+                    } else {
+                        typeNames.add(datatypes.get(bit));
+                    }
+                    word &= word - 1;
+                }
+            }
+            if (!typeNames.isEmpty()) {
+                result.mergeDatatypes(variable.getKey(), typeNames, false);
+            }
+            if (!typeRoots.isEmpty()) {
+                result.mergeDatatypes(variable.getKey(), typeRoots, true);
+            }
+        }
+        if (!datatypes.isEmpty()) {
+            for (Slot slot : slots) {
+                if (slot.isVariable() && !result.containsSolutionForVariable(slot.getId())) {
+                    result.mergeDatatypes(slot.getId(), Collections.emptySet(), false);
+                }
+            }
+        }
+        result.completeMerge();
+        return result;
+    }
+
+    /**
+     * Records that the set of {@code to} must include the set of {@code from}, if {@code to}
+     * is a variable slot and something propagates from {@code from}.
+     */
+    private void addFlow(List<int[]> variableFlows, List<int[]> constantFlows, Slot from, Slot to) {
+        if (!to.isVariable()) {
+            return;
+        }
+        int toIndex = indexVariable(to);
+        if (from.isVariable()) {
+            int fromIndex = indexVariable(from);
+            if (!hasMissingLocation(from)) {
+                variableFlows.add(new int[] {fromIndex, toIndex});
+            }
+        } else if (from.isConstant()) {
+            int bit = getDatatypeBit((ConstantSlot) from);
+            if (bit >= 0) {
+                constantFlows.add(new int[] {bit, toIndex});
+            }
+        }
+    }
+
+    private int indexVariable(Slot slot) {
+        Integer index = variableIndex.get(slot.getId());
+        if (index == null) {
+            index = variableIndex.size();
+            variableIndex.put(slot.getId(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the bit of the datatype that propagates from the given constant, interning it
+     * on first use, or -1 if no datatype propagates from it. This is the single type name of
+     * a {@code @DataFlow} constant, or else its single root.
+     */
+    private int getDatatypeBit(ConstantSlot constant) {
+        AnnotationMirror anno = constant.getValue();
+        if (!AnnotationUtils.areSameByName(anno, DATAFLOW)) {
+            return -1;
+        }
+        String[] typeNames = DataflowUtils.getTypeNames(anno);
+        if (typeNames.length == 1) {
+            return internDatatype(typeNames[0], false);
+        }
+        String[] typeRoots = DataflowUtils.getTypeNameRoots(anno);
+        if (typeRoots.length == 1) {
+            return internDatatype(typeRoots[0], true);
+        }
+        return -1;
+    }
+
+    private int internDatatype(String datatype, boolean isRoot) {
+        Map<String, Integer> bits = isRoot ? typeRootBits : typeNameBits;
+        Integer bit = bits.get(datatype);
+        if (bit == null) {
+            bit = datatypes.size();
+            datatypes.add(datatype);
+            datatypeIsRoot.add(isRoot);
+            bits.put(datatype, bit);
+        }
+        return bit;
+    }
+
+    private static boolean hasMissingLocation(Slot slot) {
+        AnnotationLocation location = slot.getLocation();
+        return location != null && location.getKind() == AnnotationLocation.Kind.MISSING;
+    }
+}
@@ -6,10 +6,12 @@ import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationBuilder;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +31,7 @@ import checkers.inference.model.Slot;
 import checkers.inference.model.Slot.Kind;
 import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.propagation.BitSetPropagation;
 import sparta.checkers.qual.Sink;
 import sparta.checkers.qual.Source;
 
@@ -51,9 +54,9 @@ import sparta.checkers.qual.Source;
  * For both modes, an equality constraint causes the Sets for both involved Slots
  * to be equal and include all Strings from either set.
  *
- * The algorithm processes list of constraints, adding the Strings to the inferredValues
- * map as needed. The entire list of constraints is processed repeatedly until the inferredValues map
- * no longer changes.
+ * The algorithm first indexes the constraints as edges between slots along which Strings flow,
+ * and interns every String to a bit position, so that the Strings of a slot are a bitset.
+ * It then propagates the Strings with a {@link BitSetPropagation}.
  *
  * @author mcarthur
  */
@@ -68,9 +71,21 @@ public abstract class IFlowSolver implements InferenceSolver {
     private Map<String, String> configuration;
 
     /**
-     * Map of inferred Strings for an VariableSlot's id.
+     * The Strings seen in the constraints, indexed by their bit position.
      */
-    private final Map<Integer, Set<String>> inferredValues = new HashMap<>();
+    private final List<String> permissions = new ArrayList<>();
+
+    private final Map<String, Integer> permissionBits = new HashMap<>();
+
+    /**
+     * The bitsets of the Strings of the constant slots, by slot id.
+     */
+    private final Map<Integer, long[]> constantValues = new HashMap<>();
+
+    /**
+     * Dense index of every VariableSlot id that occurs in a constraint, in order of occurrence.
+     */
+    private final Map<Integer, Integer> variableIndex = new LinkedHashMap<>();
 
     // private final Map<String, Set<String>> flowPolicy = new HashMap<>();
 
@@ -85,58 +100,64 @@ public abstract class IFlowSolver implements InferenceSolver {
         this.processingEnvironment = processingEnvironment;
         this.configuration = configuration;
 
-        // Fixed point
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-
-            for (Constraint constraint : constraints) {
-                if (constraint instanceof SubtypeConstraint) {
-                    Slot subtype = ((SubtypeConstraint)constraint).getSubtype();
-                    Slot supertype = ((SubtypeConstraint)constraint).getSupertype();
-
-                    Set<String> subtypePerms = getInferredSlotPermissions(subtype);
-                    Set<String> supertypePerms = getInferredSlotPermissions(supertype);
-
-                    if (isSinkSolver()) {
-                        if (subtype.isVariable()) {
-                            changed |= subtypePerms.addAll(supertypePerms);
-                        }
-                    } else {
-                        if (supertype.isVariable()) {
-                            changed |= supertypePerms.addAll(subtypePerms);
-                        }
-                    }
-                } else if (constraint instanceof EqualityConstraint) {
-                    Slot first = ((EqualityConstraint)constraint).getFirst();
-                    Slot second = ((EqualityConstraint)constraint).getSecond();
+        // Index the flows of the constraints: from a slot to a variable slot whose set must include it.
+        List<Slot[]> flows = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                Slot subtype = ((SubtypeConstraint)constraint).getSubtype();
+                Slot supertype = ((SubtypeConstraint)constraint).getSupertype();
+                indexSlot(subtype);
+                indexSlot(supertype);
 
-                    Set<String> firstPerms = getInferredSlotPermissions(first);
-                    Set<String> secondPerms = getInferredSlotPermissions(second);
-
-                    if (first.isVariable()) {
-                        changed |= firstPerms.addAll(secondPerms);
-                    }
-
-                    if (second.isVariable()) {
-                        changed |= secondPerms.addAll(firstPerms);
+                if (isSinkSolver()) {
+                    if (subtype.isVariable()) {
+                        flows.add(new Slot[] {supertype, subtype});
                     }
                 } else {
-                    logger.info("Ignoring constraint type: " + constraint.getClass());
+                    if (supertype.isVariable()) {
+                        flows.add(new Slot[] {subtype, supertype});
+                    }
+                }
+            } else if (constraint instanceof EqualityConstraint) {
+                Slot first = ((EqualityConstraint)constraint).getFirst();
+                Slot second = ((EqualityConstraint)constraint).getSecond();
+                indexSlot(first);
+                indexSlot(second);
+
+                if (first.isVariable()) {
+                    flows.add(new Slot[] {second, first});
                 }
+
+                if (second.isVariable()) {
+                    flows.add(new Slot[] {first, second});
+                }
+            } else {
+                logger.info("Ignoring constraint type: " + constraint.getClass());
+            }
+        }
+
+        // All Strings are interned now, so every bitset has the same width.
+        BitSetPropagation propagation = new BitSetPropagation(variableIndex.size(), permissions.size());
+        for (Slot[] flow : flows) {
+            int to = variableIndex.get(flow[1].getId());
+            if (flow[0].isVariable()) {
+                propagation.addEdge(variableIndex.get(flow[0].getId()), to);
+            } else if (flow[0].isConstant()) {
+                propagation.addBits(to, constantValues.get(flow[0].getId()));
             }
         }
+        propagation.propagate();
 
-        Map<Integer, AnnotationMirror> solutions = createAnnotations();
+        Map<Integer, AnnotationMirror> solutions = createAnnotations(propagation);
 
         return new DefaultInferenceResult(solutions);
     }
 
-    private Map<Integer, AnnotationMirror> createAnnotations() {
+    private Map<Integer, AnnotationMirror> createAnnotations(BitSetPropagation propagation) {
         // Create annotations of the inferred sets.
         Map<Integer, AnnotationMirror> solutions = new HashMap<>();
-        for (Entry<Integer, Set<String>> inferredEntry : inferredValues.entrySet()) {
-            Set<String> strings = inferredEntry.getValue();
+        for (Entry<Integer, Integer> variable : variableIndex.entrySet()) {
+            Set<String> strings = toStrings(propagation.getBits(variable.getValue()));
             if (!(strings.size() == 1 && strings.contains("ANY"))) {
                 strings.remove("ANY");
                 AnnotationMirror atm;
@@ -151,33 +172,35 @@ public abstract class IFlowSolver implements InferenceSolver {
                     }
                     atm = createAnnotationMirror(strings, Source.class);
                 }
-                solutions.put(inferredEntry.getKey(), atm);
+                solutions.put(variable.getKey(), atm);
             }
         }
         return solutions;
     }
 
-
     /**
-     * Look up the set of inferred Strings for a Slot.
+     * Index a Slot of a constraint.
+     *
+     * If the Slot is a VariableSlot, give it a dense index in variableIndex.
      *
-     * If the Slot is a VariableSlot, return its entry in inferredValues.
+     * If the Slot is a ConstantSlot, intern the Strings used in the constant slots value
+     * and record their bitset in constantValues.
      *
-     * If the Slot is a ConstantSlot, return an unmodifiable set based
-     * on the Strings used in the constant slots value.
+     * Other slots are ignored; they neither receive nor provide Strings.
      *
-     * @param slot The slot to lookup
-     * @return The slots current Set of Strings.
+     * @param slot The slot to index
      */
-    private Set<String> getInferredSlotPermissions(Slot slot) {
+    private void indexSlot(Slot slot) {
         if (slot.isVariable()) {
             if (slot.getKind() == Kind.EXISTENTIAL_VARIABLE) {
                 throw new IllegalArgumentException("Unexpected variable type:" + slot);
             }
-            return getFlowSet(slot.getId());
+            if (!variableIndex.containsKey(slot.getId())) {
+                variableIndex.put(slot.getId(), variableIndex.size());
+            }
 
-        } else if (slot.isConstant()) {
-            Set<String> constantSet = new HashSet<>();
+        } else if (slot.isConstant() && !constantValues.containsKey(slot.getId())) {
+            List<Integer> bits = new ArrayList<>();
             for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
                     ((ConstantSlot) slot).getValue().getElementValues().entrySet()) {
                 if (entry.getKey().getSimpleName().toString().equals("value")) {
@@ -186,41 +209,51 @@ public abstract class IFlowSolver implements InferenceSolver {
                         String flowPermString = elem.toString();
                         flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
                         flowPermString = flowPermString.replace("\"", "");
-                        constantSet.add(String.valueOf(flowPermString).intern());
+                        bits.add(internPermission(flowPermString));
                     }
                 }
             }
-            // The set of constants should not be modified
-            return Collections.unmodifiableSet(constantSet);
-        } else {
-            return new HashSet<>();
-//            throw new BugInCF("Found slot that was neither a variable or a constant: " + slot);
+            // Bitsets are widened once all Strings are known, see BitSetPropagation.union.
+            long[] constantSet = new long[0];
+            for (int bit : bits) {
+                if (bit / 64 >= constantSet.length) {
+                    constantSet = Arrays.copyOf(constantSet, bit / 64 + 1);
+                }
+                constantSet[bit / 64] |= 1L << (bit % 64);
+            }
+            constantValues.put(slot.getId(), constantSet);
         }
     }
 
+    private int internPermission(String permission) {
+        Integer bit = permissionBits.get(permission);
+        if (bit == null) {
+            bit = permissions.size();
+            permissions.add(permission);
+            permissionBits.put(permission, bit);
+        }
+        return bit;
+    }
+
+    private Set<String> toStrings(long[] bits) {
+        Set<String> strings = new LinkedHashSet<>();
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                strings.add(permissions.get(i * 64 + bit));
+                word &= word - 1;
+            }
+        }
+        return strings;
+    }
+
     private AnnotationMirror createAnnotationMirror(Set<String> strings, Class<? extends Annotation> clazz) {
         AnnotationBuilder builder = new AnnotationBuilder( processingEnvironment, clazz);
         builder.setValue("value", strings.toArray());
         return builder.build();
     }
 
-    /**
-     * Get the Set of Strings in aggregatedValues map for the given id.
-     * Create the Set and add it to the map if it does not already exist.
-     *
-     * @param id The id of the VariableSlot
-     * @return The set of Strings for the id
-     */
-    private Set<String> getFlowSet(int id) {
-        if (inferredValues.containsKey(id)) {
-            return inferredValues.get(id);
-        } else {
-            Set<String> newSet = new HashSet<>();
-            inferredValues.put(id, newSet);
-            return newSet;
-        }
-    }
-
     /**
      * Configure the mode of the solver.
      *
@@ -1,6 +1,7 @@
 package sparta.checkers.sat;
 
 import checkers.inference.InferenceMain;
+import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.serialization.CnfVecIntSerializer;
 import sparta.checkers.iflow.util.PFPermission;
 
@@ -14,4 +15,7 @@ public abstract class IFlowSerializer extends CnfVecIntSerializer {
         super(InferenceMain.getInstance().getSlotManager());
         this.permission = permission;
     }
+
+    @Override
+    public abstract boolean isTop(ConstantSlot constantSlot);
 }
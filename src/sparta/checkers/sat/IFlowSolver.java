@@ -1,19 +1,34 @@
 package sparta.checkers.sat;
 
+import checkers.inference.InferenceMain;
 import checkers.inference.InferenceResult;
 import checkers.inference.InferenceSolver;
+import checkers.inference.model.BinaryConstraint;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.BugInCF;
+import org.sat4j.core.VecInt;
 import sparta.checkers.iflow.util.PFPermission;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 
 /**
  * Created by smillst on 9/17/15.
+ *
+ * Solves one MaxSAT problem per permission used. The problems only differ in the clauses of
+ * constraints with a constant slot, which depend on whether the constant is top for the
+ * permission. So the other clauses are serialized once and shared, permissions for which every
+ * constant slot is top or not alike get the same problem and are solved once, and the distinct
+ * problems are solved in parallel.
  */
 public abstract class IFlowSolver implements InferenceSolver {
 
@@ -24,24 +39,128 @@ public abstract class IFlowSolver implements InferenceSolver {
                                  QualifierHierarchy qualHierarchy,
                                  ProcessingEnvironment processingEnvironment) {
         Collection<PFPermission> permissionsUsed = getPermissionsUsed(slots);
-        List<PermissionSolver> permissionSolvers = new ArrayList<>();
+        List<ConstantSlot> constantSlots = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (slot instanceof ConstantSlot) {
+                constantSlots.add((ConstantSlot) slot);
+            }
+        }
 
-        // Configure permission solvers
+        // Serialize the constraints between variables once, they are the same for all permissions
+        IFlowSerializer structureSerializer = getSerializer(PFPermission.ANY);
+        List<VecInt[]> sharedClauses = new ArrayList<>(constraints.size());
+        for (Constraint constraint : constraints) {
+            sharedClauses.add(isIndependentOfPermission(constraint) ? constraint.serialize(structureSerializer) : null);
+        }
+
+        // Configure permission solvers, one per distinct problem
+        Map<BitSet, PermissionSolver> solverOfTopConstants = new LinkedHashMap<>();
+        Map<PFPermission, PermissionSolver> solverOfPermission = new LinkedHashMap<>();
         for (PFPermission permission : permissionsUsed) {
-            PermissionSolver solver = new PermissionSolver(permission);
-            solver.configure(constraints, getSerializer(permission));
-            permissionSolvers.add(solver);
+            IFlowSerializer serializer = getSerializer(permission);
+            BitSet topConstants = new BitSet(constantSlots.size());
+            for (int i = 0; i < constantSlots.size(); i++) {
+                if (serializer.isTop(constantSlots.get(i))) {
+                    topConstants.set(i);
+                }
+            }
+
+            PermissionSolver solver = solverOfTopConstants.get(topConstants);
+            if (solver == null) {
+                solver = new PermissionSolver(permission);
+                solver.configure(convertToCNF(constraints, sharedClauses, serializer), serializer);
+                solverOfTopConstants.put(topConstants, solver);
+            }
+            solverOfPermission.put(permission, solver);
         }
+        InferenceMain.getInstance().logger.log(Level.INFO, "Solving " + solverOfTopConstants.size()
+                + " distinct problems for " + permissionsUsed.size() + " permissions");
 
         // Solve
+        Map<PermissionSolver, PermissionSolution> solutionOfSolver = solveAll(solverOfTopConstants.values());
         List<PermissionSolution> solutions = new ArrayList<>();
-        for (PermissionSolver solver : permissionSolvers) {
-            solutions.add(solver.solve());
+        for (Map.Entry<PFPermission, PermissionSolver> entry : solverOfPermission.entrySet()) {
+            PermissionSolution solution = solutionOfSolver.get(entry.getValue());
+            if (!solution.getPermission().equals(entry.getKey())) {
+                solution = solution.withPermission(entry.getKey());
+            }
+            solutions.add(solution);
         }
 
         return getMergedResultFromSolutions(processingEnvironment, solutions);
     }
 
+    /**
+     * Whether the clauses of the constraint are the same for every permission, which is the
+     * case if the constraint does not involve a constant slot.
+     */
+    private static boolean isIndependentOfPermission(Constraint constraint) {
+        if (!(constraint instanceof BinaryConstraint)) {
+            return false;
+        }
+        BinaryConstraint binaryConstraint = (BinaryConstraint) constraint;
+        return !(binaryConstraint.getFirst() instanceof ConstantSlot)
+                && !(binaryConstraint.getSecond() instanceof ConstantSlot);
+    }
+
+    /**
+     * Serializes the constraints with the given serializer, reusing the shared clauses, in the
+     * order of the constraints.
+     */
+    private static List<VecInt> convertToCNF(Collection<Constraint> constraints, List<VecInt[]> sharedClauses,
+                                             IFlowSerializer serializer) {
+        List<VecInt> clauses = new ArrayList<>();
+        int i = 0;
+        for (Constraint constraint : constraints) {
+            VecInt[] constraintClauses = sharedClauses.get(i++);
+            if (constraintClauses == null) {
+                constraintClauses = constraint.serialize(serializer);
+            }
+            for (VecInt clause : constraintClauses) {
+                if (clause.size() != 0) {
+                    clauses.add(clause);
+                }
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Solves the given solvers on a pool of at most one thread per processor.
+     */
+    private static Map<PermissionSolver, PermissionSolution> solveAll(Collection<PermissionSolver> solvers) {
+        Map<PermissionSolver, PermissionSolution> solutions = new IdentityHashMap<>();
+        if (solvers.size() <= 1) {
+            for (PermissionSolver solver : solvers) {
+                solutions.put(solver, solver.solve());
+            }
+            return solutions;
+        }
+
+        int threads = Math.min(solvers.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        try {
+            Map<PermissionSolver, Future<PermissionSolution>> futures = new IdentityHashMap<>();
+            for (PermissionSolver solver : solvers) {
+                futures.put(solver, service.submit(solver::solve));
+            }
+            for (Map.Entry<PermissionSolver, Future<PermissionSolution>> future : futures.entrySet()) {
+                solutions.put(future.getKey(), future.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BugInCF("Interrupted while solving permissions.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BugInCF("Error solving permissions.", e.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+        return solutions;
+    }
+
     private Collection<PFPermission> getPermissionsUsed(Collection<Slot> solts) {
         Set<PFPermission> permissions = new TreeSet<>();
         for (Slot slot : solts) {
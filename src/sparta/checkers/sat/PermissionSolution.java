@@ -40,6 +40,13 @@ public class PermissionSolution {
         return permission;
     }
 
+    /**
+     * Returns this solution for another permission whose problem has the same clauses.
+     */
+    public PermissionSolution withPermission(PFPermission permission) {
+        return new PermissionSolution(result, idToExistence, permission);
+    }
+
     public static PermissionSolution noSolution(PFPermission permission) {
         return new PermissionSolution(permission);
     }
@@ -28,6 +28,16 @@ public class PermissionSolver {
         this.clauses = convertToCNF(constraints);
     }
 
+    /**
+     * Configures this solver with clauses that were already serialized with the given serializer.
+     * The clauses may be shared with other solvers, they are not modified.
+     */
+    public void configure(List<VecInt> clauses, IFlowSerializer serializer) {
+        this.serializer = serializer;
+        this.slotManager = InferenceMain.getInstance().getSlotManager();
+        this.clauses = clauses;
+    }
+
     private List<VecInt> convertToCNF(Collection<Constraint> constraints) {
         return serializer.convertAll(constraints);
     }
@@ -51,7 +61,10 @@ public class PermissionSolver {
             // Arbitrary timeout
             solver.setTimeoutMs(1000000);
             for (VecInt clause : clauses) {
-                solver.addSoftClause(clause);
+                // The solver appends a selector variable to a soft clause, so give it a copy.
+                VecInt copy = new VecInt(clause.size() + 1);
+                clause.copyTo(copy);
+                solver.addSoftClause(copy);
             }
 
             // **** Solve ****
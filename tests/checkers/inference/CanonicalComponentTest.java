@@ -0,0 +1,129 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.annotation;
+import static checkers.inference.SolverFixtures.chain;
+import static checkers.inference.SolverFixtures.constant;
+import static checkers.inference.SolverFixtures.variable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ImplicationConstraint;
+import checkers.inference.model.RefinementVariableSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.util.CanonicalComponent;
+
+public class CanonicalComponentTest {
+
+    private final AnnotationMirror top = annotation("Top");
+    private final AnnotationMirror bottom = annotation("Bottom");
+
+    @Test
+    public void renamedComponentsHaveTheSameForm() throws Exception {
+        CanonicalComponent first = CanonicalComponent.of(chain(constant(top, 1), variable(5), variable(7), variable(6)));
+        CanonicalComponent second = CanonicalComponent.of(chain(constant(top, 2), variable(12), variable(11), variable(10)));
+
+        assertEquals(first.getForm(), second.getForm());
+        assertEquals(first.getHash(), second.getHash());
+        assertEquals(3, first.getNumVariables());
+    }
+
+    @Test
+    public void colorRefinementOrdersVariablesByTheirPlaceInTheConstraints() throws Exception {
+        // The chain starts at the variable with the highest id in one component and at the one
+        // with the lowest id in the other, so only the colors can give both the same order.
+        CanonicalComponent first = CanonicalComponent.of(chain(constant(top, 1), variable(9), variable(8), variable(7)));
+        CanonicalComponent second = CanonicalComponent.of(chain(constant(top, 1), variable(7), variable(8), variable(9)));
+
+        assertEquals(first.getForm(), second.getForm());
+        for (int i = 0; i < first.getNumVariables(); i++) {
+            assertEquals(16, first.getVariable(i) + second.getVariable(i));
+        }
+    }
+
+    @Test
+    public void slotKindIsPartOfTheForm() throws Exception {
+        VariableSlot refined = variable(6);
+        Slot refinement = new RefinementVariableSlot(new AnnotationLocation.ClassDeclLocation("Slot7"), 7, refined);
+        CanonicalComponent plain = CanonicalComponent.of(chain(constant(top, 1), variable(5), variable(7), variable(6)));
+        CanonicalComponent withRefinement = CanonicalComponent.of(chain(constant(top, 1), variable(5), refinement, refined));
+
+        assertNotEquals(plain.getForm(), withRefinement.getForm());
+    }
+
+    @Test
+    public void missingLocationIsPartOfTheForm() throws Exception {
+        CanonicalComponent located = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        CanonicalComponent missing = CanonicalComponent.of(chain(constant(top, 1), new VariableSlot(5, null)));
+
+        assertNotEquals(located.getForm(), missing.getForm());
+    }
+
+    @Test
+    public void constantsArePartOfTheForm() throws Exception {
+        CanonicalComponent fromTop = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        CanonicalComponent fromBottom = CanonicalComponent.of(chain(constant(bottom, 2), variable(5)));
+
+        assertNotEquals(fromTop.getForm(), fromBottom.getForm());
+    }
+
+    @Test
+    public void unsupportedConstraintsHaveNoForm() throws Exception {
+        List<Constraint> constraints = chain(constant(top, 1), variable(5));
+        assertNotNull(CanonicalComponent.of(constraints));
+
+        constraints.set(0, mock(ImplicationConstraint.class));
+        assertNull(CanonicalComponent.of(constraints));
+    }
+
+    @Test
+    public void mapSolutionRenamesVariablesAndDropsOtherSlots() throws Exception {
+        CanonicalComponent first = CanonicalComponent.of(chain(constant(top, 1), variable(5), variable(7)));
+        CanonicalComponent second = CanonicalComponent.of(chain(constant(top, 2), variable(12), variable(11)));
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        solution.put(5, top);
+        solution.put(7, bottom);
+        solution.put(42, top);
+
+        Map<Integer, AnnotationMirror> expected = new HashMap<>();
+        expected.put(12, top);
+        expected.put(11, bottom);
+        assertEquals(expected, second.mapSolution(first, solution));
+    }
+
+    @Test
+    public void mapConstraintsKeepsTheLinesOfTheForm() throws Exception {
+        List<Constraint> firstConstraints = chain(constant(top, 1), variable(5), variable(7));
+        List<Constraint> secondConstraints = chain(constant(top, 2), variable(12), variable(11));
+        CanonicalComponent first = CanonicalComponent.of(firstConstraints);
+        CanonicalComponent second = CanonicalComponent.of(secondConstraints);
+
+        assertEquals(Collections.singletonList(secondConstraints.get(1)),
+                second.mapConstraints(first, Collections.singleton(firstConstraints.get(1))));
+    }
+
+    @Test
+    public void mappingBetweenDifferentFormsFails() throws Exception {
+        CanonicalComponent first = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        CanonicalComponent second = CanonicalComponent.of(chain(constant(bottom, 1), variable(5)));
+
+        assertThrows(BugInCF.class, () -> second.mapSolution(first, Collections.emptyMap()));
+        assertThrows(BugInCF.class, () -> second.mapConstraints(first, Collections.emptySet()));
+    }
+}
@@ -0,0 +1,186 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.annotation;
+import static checkers.inference.SolverFixtures.chain;
+import static checkers.inference.SolverFixtures.constant;
+import static checkers.inference.SolverFixtures.variable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.CanonicalComponent;
+import checkers.inference.solver.util.ComponentSolutionCache;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * Stores and looks up the results of components in a temporary cache directory, over the
+ * lattice Top > Bottom.
+ */
+public class ComponentSolutionCacheTest {
+
+    private final AnnotationMirror top = annotation("Top");
+    private final AnnotationMirror bottom = annotation("Bottom");
+    private final Lattice lattice = lattice(top, bottom);
+    private File dir;
+
+    @Before
+    public void createCacheDir() throws Exception {
+        dir = Files.createTempDirectory("solution-cache").toFile();
+        Statistics.clearStatistics();
+    }
+
+    @After
+    public void deleteCacheDir() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+        Statistics.clearStatistics();
+    }
+
+    @Test
+    public void storedSolutionIsFoundForRenamedComponent() throws Exception {
+        CanonicalComponent first = CanonicalComponent.of(chain(constant(top, 1), variable(5), variable(7)));
+        CanonicalComponent second = CanonicalComponent.of(chain(constant(top, 2), variable(12), variable(11)));
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        solution.put(5, top);
+        solution.put(7, bottom);
+        create(Collections.emptyMap(), new FirstSolverFactory()).put(first, lattice, solution, Collections.emptySet());
+
+        InferenceResult result = create(Collections.emptyMap(), new FirstSolverFactory()).get(second, lattice);
+
+        Map<Integer, AnnotationMirror> expected = new HashMap<>();
+        expected.put(12, top);
+        expected.put(11, bottom);
+        assertTrue(result.hasSolution());
+        assertEquals(expected, result.getSolutions());
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("solution_cache_hits"));
+    }
+
+    @Test
+    public void otherComponentsFactoriesAndArgumentsMiss() throws Exception {
+        CanonicalComponent component = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        CanonicalComponent other = CanonicalComponent.of(chain(constant(bottom, 1), variable(5)));
+        create(Collections.emptyMap(), new FirstSolverFactory())
+                .put(component, lattice, Collections.singletonMap(5, top), Collections.emptySet());
+
+        assertNull(create(Collections.emptyMap(), new FirstSolverFactory()).get(other, lattice));
+        assertNull(create(Collections.emptyMap(), new SecondSolverFactory()).get(component, lattice));
+        assertNull(create(Collections.singletonMap("optimizingMode", "true"), new FirstSolverFactory())
+                .get(component, lattice));
+        assertEquals(Long.valueOf(3), Statistics.getStatistics().get("solution_cache_misses"));
+        assertFalse(Statistics.getStatistics().containsKey("solution_cache_hits"));
+    }
+
+    @Test
+    public void corruptFileIsIgnored() throws Exception {
+        CanonicalComponent component = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        create(Collections.emptyMap(), new FirstSolverFactory())
+                .put(component, lattice, Collections.singletonMap(5, top), Collections.emptySet());
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        String text = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.UTF_8);
+        Files.write(files[0].toPath(), text.replace("@Top", "@Bottom").getBytes(StandardCharsets.UTF_8));
+
+        assertNull(create(Collections.emptyMap(), new FirstSolverFactory()).get(component, lattice));
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("solution_cache_misses"));
+    }
+
+    @Test
+    public void leastRecentlyUsedFilesAreEvicted() throws Exception {
+        File old = new File(dir, "old.solution");
+        Files.write(old.toPath(), new byte[1024 * 1024]);
+        old.setLastModified(0);
+        CanonicalComponent component = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+
+        create(Collections.singletonMap("solutionCacheSize", "1"), new FirstSolverFactory())
+                .put(component, lattice, Collections.singletonMap(5, top), Collections.emptySet());
+
+        assertFalse(old.exists());
+        assertEquals(1, dir.listFiles().length);
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("solution_cache_evictions"));
+        assertTrue(create(Collections.emptyMap(), new FirstSolverFactory()).get(component, lattice).hasSolution());
+    }
+
+    @Test
+    public void solutionAssigningSlotsOutsideTheComponentIsNotStored() throws Exception {
+        CanonicalComponent component = CanonicalComponent.of(chain(constant(top, 1), variable(5)));
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        solution.put(5, top);
+        solution.put(42, bottom);
+        create(Collections.emptyMap(), new FirstSolverFactory()).put(component, lattice, solution, Collections.emptySet());
+
+        assertEquals(0, dir.listFiles().length);
+        assertNull(create(Collections.emptyMap(), new FirstSolverFactory()).get(component, lattice));
+    }
+
+    @Test
+    public void unsatisfiableConstraintsAreFoundForRenamedComponent() throws Exception {
+        List<Constraint> firstConstraints = chain(constant(top, 1), variable(5), constant(bottom, 2));
+        List<Constraint> secondConstraints = chain(constant(top, 3), variable(12), constant(bottom, 4));
+        create(Collections.emptyMap(), new FirstSolverFactory()).put(CanonicalComponent.of(firstConstraints), lattice,
+                null, Collections.singleton(firstConstraints.get(1)));
+
+        InferenceResult result = create(Collections.emptyMap(), new FirstSolverFactory())
+                .get(CanonicalComponent.of(secondConstraints), lattice);
+
+        assertFalse(result.hasSolution());
+        assertEquals(Collections.singletonList(secondConstraints.get(1)), result.getUnsatisfiableConstraints());
+    }
+
+    private ComponentSolutionCache create(Map<String, String> arguments, SolverFactory solverFactory) {
+        Map<String, String> options = new HashMap<>(arguments);
+        options.put("solutionCacheDir", dir.getPath());
+        return ComponentSolutionCache.create(new SolverEnvironment(options, null), solverFactory);
+    }
+
+    private static Lattice lattice(AnnotationMirror top, AnnotationMirror bottom) {
+        Set<AnnotationMirror> allTypes = new LinkedHashSet<>(Arrays.asList(top, bottom));
+        Map<AnnotationMirror, Collection<AnnotationMirror>> subTypes = new HashMap<>();
+        subTypes.put(top, Arrays.asList(top, bottom));
+        subTypes.put(bottom, Collections.singletonList(bottom));
+        Map<AnnotationMirror, Collection<AnnotationMirror>> superTypes = new HashMap<>();
+        superTypes.put(top, Collections.singletonList(top));
+        superTypes.put(bottom, Arrays.asList(bottom, top));
+        return new Lattice(subTypes, superTypes, new HashMap<>(), allTypes, top, bottom, 2, allTypes, null);
+    }
+
+    private static class FirstSolverFactory implements SolverFactory {
+        @Override
+        public Solver<?> createSolver(SolverEnvironment solverOptions, Collection<Slot> slots,
+                                      Collection<Constraint> constraints, Lattice lattice) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class SecondSolverFactory extends FirstSolverFactory {
+    }
+}
@@ -0,0 +1,116 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.Test;
+
+import dataflow.DataflowAnnotatedTypeFactory;
+import dataflow.util.DataflowUtils;
+
+/**
+ * Compares the subtype checks of the dataflow qualifier hierarchy with the checks on the
+ * annotations simplified by {@link DataflowAnnotatedTypeFactory#refineDataflow}.
+ */
+public class DataflowQualifierHierarchyTest {
+
+    @Test
+    public void typeNameIsSubtypeOfEqualRoot() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            QualifierHierarchy hierarchy = factory.getQualifierHierarchy();
+            AnnotationMirror string = annotation(processingEnv, names("java.lang.String"), names());
+            AnnotationMirror stringRoot = annotation(processingEnv, names(), names("java.lang.String"));
+
+            assertTrue(hierarchy.isSubtype(string, stringRoot));
+            assertFalse(hierarchy.isSubtype(stringRoot, string));
+        });
+    }
+
+    @Test
+    public void equalRootsAreKeptOnce() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            QualifierHierarchy hierarchy = factory.getQualifierHierarchy();
+            AnnotationMirror number = annotation(processingEnv, names(), names("java.lang.Number"));
+            AnnotationMirror numberAndInteger = annotation(processingEnv, names("java.lang.Integer"),
+                    names("java.lang.Number", "java.lang.Integer"));
+
+            assertTrue(hierarchy.isSubtype(number, numberAndInteger));
+            assertTrue(hierarchy.isSubtype(numberAndInteger, number));
+        });
+    }
+
+    @Test
+    public void emptyTypeNameIsDroppedOnlyWithRoots() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            QualifierHierarchy hierarchy = factory.getQualifierHierarchy();
+            AnnotationMirror empty = annotation(processingEnv, names(""), names());
+            AnnotationMirror none = annotation(processingEnv, names(), names());
+            AnnotationMirror object = annotation(processingEnv, names(), names("java.lang.Object"));
+
+            assertFalse(hierarchy.isSubtype(empty, none));
+            assertTrue(hierarchy.isSubtype(none, empty));
+            assertTrue(hierarchy.isSubtype(empty, object));
+        });
+    }
+
+    @Test
+    public void matchesRefinedAnnotations() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            List<AnnotationMirror> annotations = Arrays.asList(
+                    annotation(processingEnv, names(), names()),
+                    annotation(processingEnv, names(""), names()),
+                    annotation(processingEnv, names(""), names("java.lang.Number")),
+                    annotation(processingEnv, names("java.lang.String"), names()),
+                    annotation(processingEnv, names("java.lang.Integer", "java.lang.String"), names()),
+                    annotation(processingEnv, names("java.lang.String"), names("java.lang.String")),
+                    annotation(processingEnv, names(), names("java.lang.String")),
+                    annotation(processingEnv, names(), names("java.lang.Integer")),
+                    annotation(processingEnv, names(), names("java.lang.Number")),
+                    annotation(processingEnv, names("java.lang.Integer"), names("java.lang.Number")),
+                    annotation(processingEnv, names("java.lang.Number"), names("java.lang.Integer")),
+                    annotation(processingEnv, names("java.lang.String"), names("java.lang.Number", "java.lang.Integer")),
+                    annotation(processingEnv, names(), names("java.lang.Object")),
+                    annotation(processingEnv, names("java.lang.String"), names("java.lang.Object")));
+            QualifierHierarchy hierarchy = factory.getQualifierHierarchy();
+            for (AnnotationMirror rhs : annotations) {
+                for (AnnotationMirror lhs : annotations) {
+                    assertEquals(rhs + " <: " + lhs, isRefinedSubtype(factory, processingEnv, rhs, lhs),
+                            hierarchy.isSubtype(rhs, lhs));
+                }
+            }
+        });
+    }
+
+    /**
+     * rhs is a subtype of lhs iff the simplified union of both is lhs simplified.
+     */
+    private static boolean isRefinedSubtype(DataflowAnnotatedTypeFactory factory, ProcessingEnvironment processingEnv,
+                                            AnnotationMirror rhs, AnnotationMirror lhs) {
+        Set<String> typeNames = names(DataflowUtils.getTypeNames(rhs));
+        typeNames.addAll(names(DataflowUtils.getTypeNames(lhs)));
+        Set<String> roots = names(DataflowUtils.getTypeNameRoots(rhs));
+        roots.addAll(names(DataflowUtils.getTypeNameRoots(lhs)));
+        AnnotationMirror combined = annotation(processingEnv, typeNames, roots);
+        return AnnotationUtils.areSame(factory.refineDataflow(combined), factory.refineDataflow(lhs));
+    }
+
+    private static AnnotationMirror annotation(ProcessingEnvironment processingEnv, Set<String> typeNames,
+                                               Set<String> roots) {
+        return DataflowUtils.createDataflowAnnotationWithRoots(typeNames, roots, processingEnv);
+    }
+
+    private static Set<String> names(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,155 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.equality;
+import static checkers.inference.SolverFixtures.subtype;
+import static checkers.inference.SolverFixtures.variable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.Test;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import dataflow.DataflowAnnotatedTypeFactory;
+import dataflow.solvers.classic.DataflowSolver;
+import dataflow.solvers.propagation.DataflowPropagationSolver;
+import dataflow.util.DataflowUtils;
+
+/**
+ * Solves small dataflow programs with the dataflow solvers.
+ */
+public class DataflowSolversTest {
+
+    @Test
+    public void slotsOnNoConstantPathGetEmptyDataflow() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            DataflowTypeFactories.setInferenceMainField("slotManager", mock(SlotManager.class));
+            ConstantSlot string = new ConstantSlot(typeNames(processingEnv, "java.lang.String"), 1);
+            VariableSlot assigned = variable(2);
+            VariableSlot unconstrained = variable(3);
+            VariableSlot other = variable(4);
+            List<Slot> slots = Arrays.asList(string, assigned, unconstrained, other);
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(string, assigned),
+                    subtype(unconstrained, other));
+
+            InferenceResult result = solve(new DataflowSolver(), slots, constraints, factory, processingEnv);
+
+            assertSame(typeNames(processingEnv, "java.lang.String"), result.getSolutionForVariable(2));
+            assertSame(typeNames(processingEnv), result.getSolutionForVariable(3));
+            assertSame(typeNames(processingEnv), result.getSolutionForVariable(4));
+        });
+    }
+
+    @Test
+    public void noConstantPathGivesNoSolutions() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            DataflowTypeFactories.setInferenceMainField("slotManager", mock(SlotManager.class));
+            VariableSlot first = variable(1);
+            VariableSlot second = variable(2);
+
+            InferenceResult result = solve(new DataflowSolver(), Arrays.asList(first, second),
+                    Collections.singletonList(subtype(first, second)), factory, processingEnv);
+
+            assertTrue(result.getSolutions().isEmpty());
+        });
+    }
+
+    @Test
+    public void propagationSolverMatchesClassicSolver() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            DataflowTypeFactories.setInferenceMainField("slotManager", mock(SlotManager.class));
+            // Two type names meet through subtype and equality constraints, a type name meets a
+            // root, and two slots are on no constant path.
+            ConstantSlot string = new ConstantSlot(typeNames(processingEnv, "java.lang.String"), 1);
+            ConstantSlot integer = new ConstantSlot(typeNames(processingEnv, "java.lang.Integer"), 2);
+            ConstantSlot number = new ConstantSlot(roots(processingEnv, "java.lang.Number"), 3);
+            List<VariableSlot> variables = new ArrayList<>();
+            for (int id = 4; id <= 10; id++) {
+                variables.add(variable(id));
+            }
+            List<Slot> slots = new ArrayList<Slot>(Arrays.asList(string, integer, number));
+            slots.addAll(variables);
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(string, variables.get(0)),
+                    subtype(variables.get(0), variables.get(1)),
+                    subtype(integer, variables.get(1)),
+                    equality(variables.get(1), variables.get(2)),
+                    subtype(number, variables.get(3)),
+                    subtype(variables.get(3), variables.get(4)),
+                    subtype(integer, variables.get(4)),
+                    subtype(variables.get(5), variables.get(6)));
+
+            InferenceResult classic = solve(new DataflowSolver(), slots, constraints, factory, processingEnv);
+            InferenceResult propagation = solve(new DataflowPropagationSolver(), slots, constraints, factory, processingEnv);
+
+            assertEquals(classic.getSolutions().keySet(), propagation.getSolutions().keySet());
+            for (VariableSlot variable : variables) {
+                assertSame(classic.getSolutionForVariable(variable.getId()),
+                        propagation.getSolutionForVariable(variable.getId()));
+            }
+            assertSame(typeNames(processingEnv, "java.lang.Integer", "java.lang.String"),
+                    propagation.getSolutionForVariable(6));
+            assertSame(typeNames(processingEnv), propagation.getSolutionForVariable(9));
+        });
+    }
+
+    @Test
+    public void propagationSolverReportsViolatedConstantBounds() throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            DataflowTypeFactories.setInferenceMainField("slotManager", mock(SlotManager.class));
+            ConstantSlot string = new ConstantSlot(typeNames(processingEnv, "java.lang.String"), 1);
+            ConstantSlot integer = new ConstantSlot(typeNames(processingEnv, "java.lang.Integer"), 2);
+            ConstantSlot integerOrString = new ConstantSlot(
+                    typeNames(processingEnv, "java.lang.Integer", "java.lang.String"), 3);
+            VariableSlot bounded = variable(4);
+            List<Slot> slots = Arrays.asList(string, integer, integerOrString, bounded);
+            Constraint lowerBound = subtype(string, bounded);
+            Constraint metUpperBound = subtype(bounded, integerOrString);
+            Constraint exceededUpperBound = subtype(bounded, integer);
+
+            InferenceResult met = solve(new DataflowPropagationSolver(), slots,
+                    Arrays.asList(lowerBound, metUpperBound), factory, processingEnv);
+            assertTrue(met.hasSolution());
+            assertSame(typeNames(processingEnv, "java.lang.String"), met.getSolutionForVariable(4));
+
+            InferenceResult exceeded = solve(new DataflowPropagationSolver(), slots,
+                    Arrays.asList(lowerBound, metUpperBound, exceededUpperBound), factory, processingEnv);
+            assertFalse(exceeded.hasSolution());
+            assertEquals(Collections.singletonList(exceededUpperBound),
+                    new ArrayList<>(exceeded.getUnsatisfiableConstraints()));
+        });
+    }
+
+    static InferenceResult solve(InferenceSolver solver, Collection<Slot> slots, Collection<Constraint> constraints,
+                                 DataflowAnnotatedTypeFactory factory, ProcessingEnvironment processingEnv) {
+        return solver.solve(Collections.emptyMap(), slots, constraints, factory.getQualifierHierarchy(), processingEnv);
+    }
+
+    static AnnotationMirror typeNames(ProcessingEnvironment processingEnv, String... typeNames) {
+        return DataflowUtils.createDataflowAnnotation(new HashSet<>(Arrays.asList(typeNames)), processingEnv);
+    }
+
+    static AnnotationMirror roots(ProcessingEnvironment processingEnv, String... roots) {
+        return DataflowUtils.createDataflowAnnotationWithoutName(new HashSet<>(Arrays.asList(roots)), processingEnv);
+    }
+
+    static void assertSame(AnnotationMirror expected, AnnotationMirror actual) {
+        assertTrue("expected " + expected + " but was " + actual, AnnotationUtils.areSame(expected, actual));
+    }
+}
@@ -0,0 +1,98 @@
+package checkers.inference;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+import dataflow.DataflowAnnotatedTypeFactory;
+import dataflow.DataflowChecker;
+
+/**
+ * Runs test code against a live {@link DataflowAnnotatedTypeFactory}. An empty class is
+ * compiled with the {@link DataflowChecker} as annotation processor, and the test code runs
+ * when the compilation finished, while the factory and the elements are still usable.
+ */
+final class DataflowTypeFactories {
+
+    interface FactoryTest {
+        void run(DataflowAnnotatedTypeFactory factory, ProcessingEnvironment processingEnv) throws Exception;
+    }
+
+    private DataflowTypeFactories() {
+    }
+
+    /**
+     * Runs the given test with the factory of a fresh {@link DataflowChecker}. The factory is
+     * also the real type factory of a fresh {@link InferenceMain}, which is cleared afterwards.
+     */
+    static void withFactory(FactoryTest test) throws Exception {
+        File dir = Files.createTempDirectory("dataflow-factory").toFile();
+        File source = new File(dir, "Empty.java");
+        Files.write(source.toPath(), "class Empty {}".getBytes(StandardCharsets.UTF_8));
+        Exception[] failure = new Exception[1];
+        Error[] error = new Error[1];
+        try {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjects(source));
+            DataflowChecker checker = new DataflowChecker();
+            task.setProcessors(Collections.singletonList(checker));
+            task.addTaskListener(new TaskListener() {
+                @Override
+                public void finished(TaskEvent event) {
+                    if (event.getKind() != TaskEvent.Kind.COMPILATION) {
+                        return;
+                    }
+                    try {
+                        DataflowAnnotatedTypeFactory factory = (DataflowAnnotatedTypeFactory) checker.getTypeFactory();
+                        setInferenceMainField("realTypeFactory", factory);
+                        test.run(factory, checker.getProcessingEnvironment());
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    } catch (Error e) {
+                        error[0] = e;
+                    }
+                }
+            });
+            task.call();
+        } finally {
+            InferenceMain.clearInstance();
+            source.delete();
+            dir.delete();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Sets a private field of a fresh {@link InferenceMain}, like the slot manager, that is
+     * otherwise created from the inference checker.
+     */
+    static void setInferenceMainField(String name, Object value) throws ReflectiveOperationException {
+        InferenceMain inferenceMain = InferenceMain.getInstance();
+        if (inferenceMain == null) {
+            inferenceMain = InferenceMain.resetInstance();
+        }
+        Field field = InferenceMain.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(inferenceMain, value);
+    }
+}
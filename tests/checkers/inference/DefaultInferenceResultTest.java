@@ -0,0 +1,44 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Test;
+
+public class DefaultInferenceResultTest {
+
+    @Test
+    public void solutionsByIdIndexesSolutions() {
+        AnnotationMirror top = mock(AnnotationMirror.class);
+        AnnotationMirror bottom = mock(AnnotationMirror.class);
+        Map<Integer, AnnotationMirror> solutions = new HashMap<>();
+        solutions.put(1, top);
+        solutions.put(3, bottom);
+        // Out of range ids are left out.
+        solutions.put(7, top);
+
+        AnnotationMirror[] solutionsById = new DefaultInferenceResult(solutions).getSolutionsById(4);
+
+        assertArrayEquals(new AnnotationMirror[] {null, top, null, bottom, null}, solutionsById);
+    }
+
+    @Test
+    public void solutionsByIdIsBuiltOnce() {
+        DefaultInferenceResult result = new DefaultInferenceResult(
+                Collections.singletonMap(0, mock(AnnotationMirror.class)));
+        assertSame(result.getSolutionsById(2), result.getSolutionsById(2));
+    }
+
+    @Test
+    public void noSolutionsByIdWithoutSolution() {
+        assertNull(new DefaultInferenceResult(Collections.emptySet()).getSolutionsById(2));
+    }
+}
@@ -0,0 +1,168 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.UserError;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+
+import checkers.inference.solver.backend.externalmaxsat.ExternalMaxSatSolver;
+import checkers.inference.solver.backend.externalmaxsat.ExternalMaxSatSolver.ExternalMaxSatSolverArg;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.SolverEnvironment;
+
+/**
+ * Runs {@link ExternalMaxSatSolver} against a stub solver script that records its input and
+ * prints a fixed output.
+ */
+public class ExternalMaxSatSolverTest {
+
+    private File dir;
+    private File input;
+
+    /**
+     * Solves fixed clauses instead of encoding constraints, and records the literals of the model.
+     */
+    private static class StubClausesSolver extends ExternalMaxSatSolver {
+        List<Integer> model;
+
+        StubClausesSolver(Map<String, String> args, int numTypes) {
+            super(new SolverEnvironment(args, null), Collections.emptyList(), Collections.emptyList(),
+                    null, new Lattice(new HashMap<>(), new HashMap<>(), new HashMap<>(), Collections.emptySet(),
+                            null, null, numTypes, Collections.emptyList(), null));
+        }
+
+        @Override
+        public void encodeAllConstraints() {
+            hardClauses.add(new VecInt(new int[] {1, 2}));
+            VecInt preferred = new VecInt(new int[] {1});
+            softClauses.add(preferred);
+            softClauseWeights.put(preferred, 3);
+            VecInt indifferent = new VecInt(new int[] {2});
+            softClauses.add(indifferent);
+            softClauseWeights.put(indifferent, 0);
+        }
+
+        @Override
+        protected Map<Integer, AnnotationMirror> decode(int[] solution) {
+            model = new ArrayList<>();
+            for (int literal : solution) {
+                model.add(literal);
+            }
+            return new HashMap<>();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("external-maxsat-test").toFile();
+        input = new File(dir, "input.wcnf");
+        InferenceMain inferenceMain = InferenceMain.resetInstance();
+        SlotManager slotManager = mock(SlotManager.class);
+        when(slotManager.getNumberOfSlots()).thenReturn(1);
+        Field slotManagerField = InferenceMain.class.getDeclaredField("slotManager");
+        slotManagerField.setAccessible(true);
+        slotManagerField.set(inferenceMain, slotManager);
+    }
+
+    @After
+    public void tearDown() {
+        InferenceMain.clearInstance();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void bitStringModel() throws IOException {
+        StubClausesSolver solver = newSolver("s OPTIMUM FOUND\nv 10", 2);
+        assertTrue(solver.solve().isEmpty());
+        assertEquals(Arrays.asList(1, -2), solver.model);
+    }
+
+    @Test
+    public void singleLiteralIsNotABitString() throws IOException {
+        // With ten variables, "10" is the literal of the tenth.
+        StubClausesSolver solver = newSolver("s OPTIMUM FOUND\nv 10", 10);
+        solver.solve();
+        assertEquals(Collections.singletonList(10), solver.model);
+    }
+
+    @Test
+    public void literalModel() throws IOException {
+        StubClausesSolver solver = newSolver("s SATISFIABLE\nv 1 -2\nv 0", 2);
+        solver.solve();
+        assertEquals(Arrays.asList(1, -2), solver.model);
+    }
+
+    @Test
+    public void unsatisfiable() throws IOException {
+        assertNull(newSolver("s UNSATISFIABLE", 2).solve());
+    }
+
+    @Test
+    public void noSolutionIsUserError() throws IOException {
+        assertThrows(UserError.class, () -> newSolver("s UNKNOWN", 2).solve());
+    }
+
+    @Test
+    public void zeroWeightSoftClausesAreLeftOut() throws IOException {
+        newSolver("s OPTIMUM FOUND\nv 1 2 0", 2).solve();
+
+        List<String> lines = Files.readAllLines(input.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.contains("p wcnf 2 2 4"));
+        assertTrue(lines.contains("4 1 2 0"));
+        assertTrue(lines.contains("3 1 0"));
+        for (String line : lines) {
+            assertFalse(line, line.startsWith("0 "));
+        }
+    }
+
+    @Test
+    public void malformedTimeoutIsUserError() throws IOException {
+        Map<String, String> args = stubArgs("s UNSATISFIABLE");
+        args.put(ExternalMaxSatSolverArg.externalSolverTimeout.name(), "1m");
+        UserError error = assertThrows(UserError.class, () -> new StubClausesSolver(args, 2).solve());
+        assertTrue(error.getMessage().contains("1m"));
+    }
+
+    private StubClausesSolver newSolver(String output, int numTypes) throws IOException {
+        return new StubClausesSolver(stubArgs(output), numTypes);
+    }
+
+    /**
+     * @return solver arguments that run a script which writes its stdin to {@link #input} and
+     * prints the given output
+     */
+    private Map<String, String> stubArgs(String output) throws IOException {
+        File script = new File(dir, "solver.sh");
+        Files.write(script.toPath(), ("cat > '" + input.getAbsolutePath() + "'\nprintf '%s\\n' '"
+                + output.replace("\n", "' '") + "'\n").getBytes(StandardCharsets.UTF_8));
+        Map<String, String> args = new HashMap<>();
+        args.put(ExternalMaxSatSolverArg.externalSolverCommand.name(), "sh " + script.getAbsolutePath());
+        return args;
+    }
+}
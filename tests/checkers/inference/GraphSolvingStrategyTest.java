@@ -0,0 +1,276 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.constant;
+import static checkers.inference.SolverFixtures.subtype;
+import static checkers.inference.SolverFixtures.variable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.constraintgraph.ConstraintGraph;
+import checkers.inference.solver.constraintgraph.GraphBuilder;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.strategy.GraphSolvingStrategy;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+import dataflow.util.DataflowUtils;
+
+/**
+ * Solves constraint graphs over the lattice Top > Mid > Bottom, with a solver factory that
+ * records the components given to it.
+ */
+public class GraphSolvingStrategyTest {
+
+    private AnnotationMirror top;
+    private AnnotationMirror mid;
+    private AnnotationMirror bottom;
+    private Lattice lattice;
+
+    @Before
+    public void clearStatistics() {
+        Statistics.clearStatistics();
+    }
+
+    @After
+    public void clearStatisticsAfterwards() {
+        Statistics.clearStatistics();
+    }
+
+    @Test
+    public void trivialComponentsAreSolvedDirectly() throws Exception {
+        withLattice(processingEnv -> {
+            RecordingSolverFactory factory = new RecordingSolverFactory(false);
+            VariableSlot assigned = variable(1);
+            VariableSlot first = variable(2);
+            VariableSlot second = variable(3);
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(constant(mid, 10), assigned),
+                    subtype(first, second));
+
+            InferenceResult result = solve(factory, Collections.emptyMap(), constraints, processingEnv);
+
+            assertTrue(result.hasSolution());
+            assertTrue(AnnotationUtils.areSame(mid, result.getSolutionForVariable(1)));
+            assertEquals(1, factory.components.size());
+            assertEquals(Collections.singleton(constraints.get(1)), factory.components.get(0));
+            assertEquals(Long.valueOf(1), Statistics.getStatistics().get("trivial_single_variable_components"));
+            assertEquals(Long.valueOf(1), Statistics.getStatistics().get("backend_components"));
+        });
+    }
+
+    @Test
+    public void unsatisfiableTrivialComponentIsLeftToTheBackend() throws Exception {
+        withLattice(processingEnv -> {
+            RecordingSolverFactory factory = new RecordingSolverFactory(false);
+            VariableSlot variable = variable(1);
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(constant(top, 10), variable),
+                    subtype(variable, constant(mid, 11)));
+
+            solve(factory, Collections.emptyMap(), constraints, processingEnv);
+
+            assertEquals(1, factory.components.size());
+            assertNull(Statistics.getStatistics().get("trivial_single_variable_components"));
+            assertEquals(Long.valueOf(1), Statistics.getStatistics().get("backend_components"));
+        });
+    }
+
+    @Test
+    public void slotPreferencesKeepTrivialComponentsInTheBackend() throws Exception {
+        withLattice(processingEnv -> {
+            RecordingSolverFactory factory = new RecordingSolverFactory(true);
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(constant(mid, 10), variable(1)),
+                    subtype(constant(bottom, 11), variable(2)));
+
+            solve(factory, Collections.emptyMap(), constraints, processingEnv);
+
+            assertEquals(2, factory.components.size());
+            assertFalse(Statistics.getStatistics().containsKey("trivial_single_variable_components"));
+            assertEquals(Long.valueOf(2), Statistics.getStatistics().get("backend_components"));
+        });
+    }
+
+    @Test
+    public void argumentOverridesSlotPreferences() throws Exception {
+        withLattice(processingEnv -> {
+            List<Constraint> constraints = Collections.singletonList(
+                    subtype(constant(mid, 10), variable(1)));
+
+            RecordingSolverFactory withPreferences = new RecordingSolverFactory(true);
+            solve(withPreferences, Collections.singletonMap("solveTrivialComponents", "true"), constraints, processingEnv);
+            assertTrue(withPreferences.components.isEmpty());
+
+            RecordingSolverFactory withoutPreferences = new RecordingSolverFactory(false);
+            solve(withoutPreferences, Collections.singletonMap("solveTrivialComponents", "false"), constraints, processingEnv);
+            assertEquals(1, withoutPreferences.components.size());
+        });
+    }
+
+    @Test
+    public void isomorphicComponentsReuseOneSolverUnlessDisabled() throws Exception {
+        withLattice(processingEnv -> {
+            List<Constraint> constraints = Arrays.asList(
+                    subtype(variable(1), variable(2)),
+                    subtype(variable(3), variable(4)));
+
+            RecordingSolverFactory reusing = new RecordingSolverFactory(false);
+            solve(reusing, Collections.emptyMap(), constraints, processingEnv);
+            assertEquals(1, reusing.components.size());
+            assertEquals(Long.valueOf(1), Statistics.getStatistics().get("isomorphic_component_reuses"));
+
+            Statistics.clearStatistics();
+            RecordingSolverFactory notReusing = new RecordingSolverFactory(false);
+            solve(notReusing, Collections.singletonMap("reuseIsomorphicComponents", "false"), constraints, processingEnv);
+            assertEquals(2, notReusing.components.size());
+            assertFalse(Statistics.getStatistics().containsKey("isomorphic_component_reuses"));
+            assertEquals(Long.valueOf(1), Statistics.getStatistics().get("isomorphic_component_classes"));
+        });
+    }
+
+    @Test
+    public void slotPreferencesDisableReuseAndCachingUnlessEnabled() throws Exception {
+        File cacheDir = Files.createTempDirectory("solution-cache").toFile();
+        try {
+            withLattice(processingEnv -> {
+                List<Constraint> constraints = Arrays.asList(
+                        subtype(variable(1), variable(2)),
+                        subtype(variable(3), variable(4)));
+                Map<String, String> arguments = new HashMap<>();
+                arguments.put("solutionCacheDir", cacheDir.getPath());
+
+                RecordingSolverFactory notReusing = new RecordingSolverFactory(true);
+                solve(notReusing, arguments, constraints, processingEnv);
+                assertEquals(2, notReusing.components.size());
+                assertFalse(Statistics.getStatistics().containsKey("isomorphic_component_reuses"));
+                assertEquals(0, cacheDir.listFiles().length);
+
+                arguments.put("reuseIsomorphicComponents", "true");
+                RecordingSolverFactory reusing = new RecordingSolverFactory(true);
+                solve(reusing, arguments, constraints, processingEnv);
+                assertEquals(1, reusing.components.size());
+                assertEquals(Long.valueOf(1), Statistics.getStatistics().get("isomorphic_component_reuses"));
+                assertEquals(1, cacheDir.listFiles().length);
+            });
+        } finally {
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            cacheDir.delete();
+        }
+    }
+
+    private interface LatticeTest {
+        void run(ProcessingEnvironment processingEnv) throws Exception;
+    }
+
+    /**
+     * Runs the given test with the lattice of three {@code @DataFlow} qualifiers.
+     */
+    private void withLattice(LatticeTest test) throws Exception {
+        DataflowTypeFactories.withFactory((factory, processingEnv) -> {
+            top = DataflowUtils.createDataflowAnnotation("Top", processingEnv);
+            mid = DataflowUtils.createDataflowAnnotation("Mid", processingEnv);
+            bottom = DataflowUtils.createDataflowAnnotation("Bottom", processingEnv);
+            Set<AnnotationMirror> allTypes = new LinkedHashSet<>(Arrays.asList(top, mid, bottom));
+            Map<AnnotationMirror, Collection<AnnotationMirror>> subTypes = AnnotationUtils.createAnnotationMap();
+            subTypes.put(top, Arrays.asList(top, mid, bottom));
+            subTypes.put(mid, Arrays.asList(mid, bottom));
+            subTypes.put(bottom, Collections.singletonList(bottom));
+            Map<AnnotationMirror, Collection<AnnotationMirror>> superTypes = AnnotationUtils.createAnnotationMap();
+            superTypes.put(top, Collections.singletonList(top));
+            superTypes.put(mid, Arrays.asList(mid, top));
+            superTypes.put(bottom, Arrays.asList(bottom, mid, top));
+            lattice = new Lattice(subTypes, superTypes, new HashMap<>(), allTypes, top, bottom, 3, allTypes, null);
+            // The graph builder asks for the visitor when a constant path reaches a constant.
+            DataflowTypeFactories.setInferenceMainField("visitor", mock(InferenceVisitor.class));
+            test.run(processingEnv);
+        });
+    }
+
+    private InferenceResult solve(SolverFactory factory, Map<String, String> arguments, List<Constraint> constraints,
+                                  ProcessingEnvironment processingEnv) {
+        Set<Slot> slots = new LinkedHashSet<>();
+        for (Constraint constraint : constraints) {
+            slots.addAll(constraint.getSlots());
+        }
+        return new TopBoundedGraphSolvingStrategy(factory, top)
+                .solve(new SolverEnvironment(arguments, processingEnv), slots, constraints, lattice);
+    }
+
+    /**
+     * Stops the constant paths of the graph at the top qualifier, like the dataflow strategy.
+     */
+    private static class TopBoundedGraphSolvingStrategy extends GraphSolvingStrategy {
+        private final AnnotationMirror top;
+
+        TopBoundedGraphSolvingStrategy(SolverFactory solverFactory, AnnotationMirror top) {
+            super(solverFactory);
+            this.top = top;
+        }
+
+        @Override
+        protected ConstraintGraph generateGraph(Collection<Slot> slots, Collection<Constraint> constraints,
+                                                ProcessingEnvironment processingEnvironment) {
+            return new GraphBuilder(slots, constraints, top).buildGraph();
+        }
+    }
+
+    /**
+     * Records the constraints of every component it creates a solver for. The solvers assign
+     * no qualifiers.
+     */
+    private static class RecordingSolverFactory implements SolverFactory {
+        final List<Set<Constraint>> components = new ArrayList<>();
+        private final boolean hasSlotPreferences;
+
+        RecordingSolverFactory(boolean hasSlotPreferences) {
+            this.hasSlotPreferences = hasSlotPreferences;
+        }
+
+        @Override
+        public Solver<?> createSolver(SolverEnvironment solverOptions, Collection<Slot> slots,
+                                      Collection<Constraint> constraints, Lattice lattice) {
+            components.add(new LinkedHashSet<>(constraints));
+            Solver<?> solver = mock(Solver.class);
+            when(solver.solve()).thenReturn(new HashMap<>());
+            return solver;
+        }
+
+        @Override
+        public boolean hasSlotPreferences(SolverEnvironment solverOptions) {
+            return hasSlotPreferences;
+        }
+    }
+}
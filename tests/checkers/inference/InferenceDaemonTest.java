@@ -0,0 +1,137 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.checkerframework.javacutil.UserError;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InferenceDaemonTest {
+
+    private File tokenDir;
+    private File tokenFile;
+    private InferenceDaemon daemon;
+    private Thread daemonThread;
+
+    @Before
+    public void startDaemon() throws Exception {
+        tokenDir = Files.createTempDirectory("inference-daemon-test").toFile();
+        tokenFile = new File(new File(tokenDir, "tokens"), "daemon.token");
+        daemon = new InferenceDaemon(0, tokenFile);
+        daemonThread = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        daemonThread.setDaemon(true);
+        daemonThread.start();
+        for (int i = 0; i < 500 && daemon.getLocalPort() < 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue("daemon did not start", daemon.getLocalPort() > 0);
+    }
+
+    @After
+    public void stopDaemon() throws Exception {
+        if (daemonThread.isAlive()) {
+            new InferenceDaemonClient(daemon.getLocalPort(), tokenFile, new PrintStream(new ByteArrayOutputStream()))
+                    .send(InferenceDaemon.SHUTDOWN_COMMAND, Collections.emptyList());
+            daemonThread.join(5000);
+        }
+        InferenceOptions.resetOptions();
+        InferenceMain.clearInstance();
+        new File(tokenDir, "other.token").delete();
+        new File(tokenDir, "tokens").delete();
+        tokenDir.delete();
+    }
+
+    @Test
+    public void pingWithToken() {
+        assertEquals(0, newClient(new ByteArrayOutputStream()).send(InferenceDaemon.PING_COMMAND, Collections.emptyList()));
+    }
+
+    @Test
+    public void tokenFileIsOnlyReadableByOwner() throws IOException {
+        assertTrue(tokenFile.isFile());
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+            assertEquals("rwx------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(tokenFile.getParentFile().toPath())));
+        }
+    }
+
+    @Test
+    public void wrongTokenIsRejected() throws IOException {
+        File otherToken = new File(tokenDir, "other.token");
+        Files.write(otherToken.toPath(), "not-the-token".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InferenceDaemonClient client = new InferenceDaemonClient(daemon.getLocalPort(), otherToken,
+                new PrintStream(output, true));
+
+        assertEquals(1, client.send(InferenceDaemon.PING_COMMAND, Collections.emptyList()));
+        assertTrue(output.toString().contains("Wrong inference daemon token"));
+
+        // The daemon still serves requests with the right token afterwards.
+        assertEquals(0, newClient(new ByteArrayOutputStream()).send(InferenceDaemon.PING_COMMAND, Collections.emptyList()));
+    }
+
+    @Test
+    public void missingTokenFileFailsInClient() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InferenceDaemonClient client = new InferenceDaemonClient(daemon.getLocalPort(),
+                new File(tokenDir, "missing.token"), new PrintStream(output, true));
+        assertEquals(1, client.send(InferenceDaemon.PING_COMMAND, Collections.emptyList()));
+        assertTrue(output.toString().contains("Could not read inference daemon token file"));
+    }
+
+    @Test
+    public void unknownCheckerReturnsFiveAndDaemonSurvives() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int status = newClient(output).infer(Arrays.asList("--checker", "no.such.Checker", "--solver", "no.such.Solver"));
+
+        assertEquals(5, status);
+        assertTrue(output.toString().contains("no.such.Checker"));
+        assertEquals(0, newClient(new ByteArrayOutputStream()).send(InferenceDaemon.PING_COMMAND, Collections.emptyList()));
+    }
+
+    @Test
+    public void shutdownDeletesTokenFile() throws InterruptedException {
+        assertEquals(0, newClient(new ByteArrayOutputStream()).send(InferenceDaemon.SHUTDOWN_COMMAND, Collections.emptyList()));
+        daemonThread.join(5000);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(tokenFile.exists());
+    }
+
+    @Test
+    public void solverInstantiationFailureThrowsInsteadOfExiting() {
+        InferenceOptions.resetOptions();
+        InferenceOptions.solver = String.class.getName();
+        InferenceMain inferenceMain = InferenceMain.resetInstance();
+        inferenceMain.setExitOnInstantiationFailure(false);
+
+        UserError error = assertThrows(UserError.class, inferenceMain::getSolver);
+        assertTrue(error.getMessage().contains(String.class.getName()));
+        assertTrue(inferenceMain.hasInstantiationFailed());
+    }
+
+    private InferenceDaemonClient newClient(ByteArrayOutputStream output) {
+        return new InferenceDaemonClient(daemon.getLocalPort(), tokenFile, new PrintStream(output, true));
+    }
+}
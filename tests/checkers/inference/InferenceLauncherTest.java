@@ -0,0 +1,86 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class InferenceLauncherTest {
+
+    @After
+    public void resetOptions() {
+        InferenceOptions.resetOptions();
+    }
+
+    @Test
+    public void roundtripInProcessInsertsInANewProcess() {
+        InferenceOptions.resetOptions();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<String> steps = new ArrayList<>();
+        InferenceLauncher launcher = new InferenceLauncher(new PrintStream(output, true), System.err) {
+            @Override
+            protected void inferInProcess() {
+                steps.add("infer");
+            }
+
+            @Override
+            public List<String> insertJaif() {
+                steps.add("insert");
+                return Collections.singletonList("A.java");
+            }
+
+            @Override
+            protected void typecheckInProcess(String[] javaFiles) {
+                steps.add("typecheck " + String.join(" ", javaFiles));
+            }
+        };
+
+        launcher.roundtripInProcess(true);
+
+        assertEquals(Arrays.asList("infer", "insert", "typecheck A.java"), steps);
+        assertTrue(output.toString().contains("Insert annotations: "));
+    }
+
+    @Test
+    public void insertionByPackageDeletesSplitJaifs() throws IOException {
+        File dir = Files.createTempDirectory("inference-launcher-test").toFile();
+        File javaFile = new File(dir, "A.java");
+        Files.write(javaFile.toPath(), "package a;\nclass A {}\n".getBytes(StandardCharsets.UTF_8));
+        File jaifFile = new File(dir, "inference.jaif");
+        Files.write(jaifFile.toPath(), "package a:\nclass A:\n".getBytes(StandardCharsets.UTF_8));
+        InferenceOptions.resetOptions();
+        InferenceOptions.inPlace = true;
+        InferenceOptions.jaifFile = jaifFile.getAbsolutePath();
+        InferenceOptions.javaFiles = new String[] {javaFile.getAbsolutePath()};
+        InferenceOptions.insertionThreads = 1;
+
+        Set<String> tempDirsBefore = listSplitJaifDirs();
+        InferenceLauncher launcher = new InferenceLauncher(new PrintStream(new ByteArrayOutputStream()), System.err);
+        launcher.insertJaifByPackage("true");
+
+        assertEquals(tempDirsBefore, listSplitJaifDirs());
+        javaFile.delete();
+        jaifFile.delete();
+        assertTrue(dir.delete());
+    }
+
+    private static Set<String> listSplitJaifDirs() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list(
+                (directory, name) -> name.startsWith("inference-jaifs"));
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,178 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.annotation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import checkers.inference.solver.backend.logiql.LogiQLParser;
+import checkers.inference.solver.backend.logiql.LogiQLPredicateGenerator;
+import checkers.inference.solver.backend.logiql.datalog.DatalogProgram;
+import checkers.inference.solver.frontend.Lattice;
+
+/**
+ * Evaluates the LogiQL encoding of the lattice Top > Mid > Bottom with the embedded Datalog
+ * engine. The expected values are those LogicBlox computes for the same encoding and data.
+ */
+public class LogiQLDatalogTest {
+
+    private AnnotationMirror top;
+    private AnnotationMirror mid;
+    private AnnotationMirror bottom;
+    private String encoding;
+
+    @Before
+    public void generateEncoding() {
+        top = annotation("Top");
+        mid = annotation("Mid");
+        bottom = annotation("Bottom");
+        Set<AnnotationMirror> allTypes = new LinkedHashSet<>(Arrays.asList(top, mid, bottom));
+
+        Map<AnnotationMirror, Collection<AnnotationMirror>> subTypes = new HashMap<>();
+        subTypes.put(top, Arrays.asList(top, mid, bottom));
+        subTypes.put(mid, Arrays.asList(mid, bottom));
+        subTypes.put(bottom, Collections.singletonList(bottom));
+        Map<AnnotationMirror, Collection<AnnotationMirror>> superTypes = new HashMap<>();
+        superTypes.put(top, Collections.singletonList(top));
+        superTypes.put(mid, Arrays.asList(mid, top));
+        superTypes.put(bottom, Arrays.asList(bottom, mid, top));
+        Lattice lattice = new Lattice(subTypes, superTypes, new HashMap<>(), allTypes, top, bottom, 3,
+                allTypes, null);
+
+        encoding = new LogiQLPredicateGenerator("unused", lattice, 1).getLogiqlEncoding();
+    }
+
+    @Test
+    public void subtypeConstraints() {
+        DatalogProgram program = evaluate(
+                "+subtypeConstraintRightConstant(v, c), +variable(v), +hasvariableName[v] = 1, "
+                        + "+constant(c), +hasconstantName[c] = \"Bottom\" .\n"
+                + "+subtypeConstraintLeftConstant(c, v), +constant(c), +hasconstantName[c] = \"Top\", "
+                        + "+variable(v), +hasvariableName[v] = 2.\n"
+                + "+subtypeConstraint(v1, v2), +variable(v1), +hasvariableName[v1] = 2, "
+                        + "+variable(v2), +hasvariableName[v2] = 3.\n"
+                + "+subtypeConstraint(v1, v2), +variable(v1), +hasvariableName[v1] = 4, "
+                        + "+variable(v2), +hasvariableName[v2] = 1.\n",
+                1, 2, 3, 4);
+
+        Map<Integer, String> expected = new TreeMap<>();
+        expected.put(1, "Bottom");
+        expected.put(2, "Top");
+        expected.put(3, "Top");
+        expected.put(4, "Bottom");
+        assertEquals(expected, annotations(program));
+        assertTrue(program.getFunctionalDependencyViolations().isEmpty());
+    }
+
+    @Test
+    public void subtypeOfMidExcludesTop() {
+        DatalogProgram program = evaluate(
+                "+subtypeConstraintRightConstant(v, c), +variable(v), +hasvariableName[v] = 1, "
+                        + "+constant(c), +hasconstantName[c] = \"Mid\" .\n",
+                1);
+
+        assertTrue(program.getRelation("isTop").contains(Arrays.asList(1, false)));
+        assertFalse(program.getRelation("isMid").contains(Arrays.asList(1, false)));
+        assertEquals(Collections.emptyMap(), annotations(program));
+    }
+
+    @Test
+    public void equalityConstraints() {
+        DatalogProgram program = evaluate(
+                "+equalityConstraintContainsConstant(c, v), +constant(c), +hasconstantName[c] = \"Mid\", "
+                        + "+variable(v), +hasvariableName[v] = 5.\n"
+                + "+equalityConstraint(v1, v2), +variable(v1), +hasvariableName[v1] = 5, "
+                        + "+variable(v2), +hasvariableName[v2] = 6.\n",
+                5, 6);
+
+        Map<Integer, String> expected = new TreeMap<>();
+        expected.put(5, "Mid");
+        expected.put(6, "Mid");
+        assertEquals(expected, annotations(program));
+        assertTrue(program.getRelation("isTop").contains(Arrays.asList(6, false)));
+    }
+
+    @Test
+    public void inequalityConstraints() {
+        DatalogProgram program = evaluate(
+                "+inequalityConstraintContainsConstant(c, v), +constant(c), +hasconstantName[c] = \"Top\", "
+                        + "+variable(v), +hasvariableName[v] = 7.\n",
+                7);
+
+        assertTrue(program.getRelation("isTop").contains(Arrays.asList(7, false)));
+        assertEquals(Collections.emptyMap(), annotations(program));
+        assertTrue(program.getFunctionalDependencyViolations().isEmpty());
+    }
+
+    @Test
+    public void seqOrdersVariables() {
+        DatalogProgram program = evaluate("", 30, 10, 20);
+
+        Set<List<Object>> expected = new HashSet<>(Arrays.asList(
+                Arrays.<Object>asList(0, 10), Arrays.<Object>asList(1, 20), Arrays.<Object>asList(2, 30)));
+        assertEquals(expected, new HashSet<>(program.getRelation("orderVariable").getTuples()));
+    }
+
+    @Test
+    public void conflictingValuesViolateFunctionalDependency() {
+        // Top <: v8 <: Bottom gives v8 both isTop[v8] = true and isTop[v8] = false, which
+        // LogicBlox rejects.
+        DatalogProgram program = evaluate(
+                "+subtypeConstraintLeftConstant(c, v), +constant(c), +hasconstantName[c] = \"Top\", "
+                        + "+variable(v), +hasvariableName[v] = 8.\n"
+                + "+subtypeConstraintRightConstant(v, c), +variable(v), +hasvariableName[v] = 8, "
+                        + "+constant(c), +hasconstantName[c] = \"Bottom\" .\n",
+                8);
+
+        List<List<Object>> violations = program.getFunctionalDependencyViolations();
+        assertFalse(violations.isEmpty());
+        for (List<Object> violation : violations) {
+            assertEquals(8, violation.get(1));
+        }
+    }
+
+    /**
+     * Parses the encoding and the given data, with the facts of the given variables and of
+     * the constants in front as LogiQLSolver puts them, and evaluates the program.
+     */
+    private DatalogProgram evaluate(String data, int... variables) {
+        StringBuilder facts = new StringBuilder();
+        for (int variable : variables) {
+            facts.append("+variable(v), +hasvariableName[v] = ").append(variable).append(".\n");
+        }
+        for (String constant : Arrays.asList("Top", "Mid", "Bottom")) {
+            facts.append("+constant(c), +hasconstantName[c] = \"").append(constant).append("\".\n");
+        }
+        LogiQLParser predicates = new LogiQLParser();
+        predicates.parse(encoding);
+        LogiQLParser parser = new LogiQLParser(predicates);
+        parser.parse(facts + data);
+        DatalogProgram program = parser.getProgram();
+        program.evaluate();
+        return program;
+    }
+
+    private static Map<Integer, String> annotations(DatalogProgram program) {
+        Map<Integer, String> annotations = new TreeMap<>();
+        for (List<Object> tuple : program.getRelation("orderedAnnotationOf").getTuples()) {
+            annotations.put((Integer) tuple.get(0), (String) tuple.get(1));
+        }
+        return annotations;
+    }
+}
@@ -0,0 +1,82 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import checkers.inference.util.ParallelJaifInserter;
+import checkers.inference.util.ParallelJaifInserter.PackageInsertion;
+
+/**
+ * Groups source files by package, inserting with {@code true} in place of the AFU.
+ */
+public class ParallelJaifInserterTest {
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("parallel-jaif-inserter").toFile();
+    }
+
+    @After
+    public void deleteDir() {
+        deleteRecursively(dir);
+    }
+
+    @Test
+    public void packageDeclarationsInCommentsAreIgnored() throws IOException {
+        String[] javaFiles = {
+                source("A.java", "/**\n * Moved from\npackage wrong;\n */\npackage a;\nclass A {}\n"),
+                source("B.java", "// package wrong;\n/* package wrong; */ package b;\n"),
+                source("C.java", "/* package wrong; */\nimport java.util.List;\nclass C {}\n"),
+                source("D.java", "@Deprecated\npackage/**/a;\n")
+        };
+
+        List<PackageInsertion> insertions = insert(javaFiles);
+
+        List<String> packages = new ArrayList<>();
+        for (PackageInsertion insertion : insertions) {
+            packages.add(insertion.packageName);
+        }
+        assertEquals(Arrays.asList("a", "b", ""), packages);
+        assertEquals(Arrays.asList(javaFiles[0], javaFiles[3]), insertions.get(0).javaFiles);
+    }
+
+    private List<PackageInsertion> insert(String[] javaFiles) throws IOException {
+        File jaifFile = new File(dir, "inference.jaif");
+        Files.write(jaifFile.toPath(), "package a:\nclass A:\n".getBytes(StandardCharsets.UTF_8));
+        ParallelJaifInserter inserter = new ParallelJaifInserter("true", Collections.emptyList(),
+                new File(dir, "jaifs"), 2, new PrintStream(new ByteArrayOutputStream()));
+        return inserter.insert(jaifFile, javaFiles);
+    }
+
+    private String source(String name, String contents) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file.getAbsolutePath();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,88 @@
+package checkers.inference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Slots, constraints and qualifiers for solver tests, built without a type factory or a
+ * constraint manager.
+ */
+final class SolverFixtures {
+
+    private SolverFixtures() {
+    }
+
+    static VariableSlot variable(int id) {
+        return new VariableSlot(new AnnotationLocation.ClassDeclLocation("Slot" + id), id, null);
+    }
+
+    static ConstantSlot constant(AnnotationMirror value, int id) {
+        return new ConstantSlot(value, id);
+    }
+
+    /**
+     * Creates a subtype constraint without normalizing it, as the constraint manager needs
+     * the inference type factory.
+     */
+    static Constraint subtype(Slot subtype, Slot supertype) throws ReflectiveOperationException {
+        Constructor<SubtypeConstraint> constructor =
+                SubtypeConstraint.class.getDeclaredConstructor(Slot.class, Slot.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(subtype, supertype);
+    }
+
+    /**
+     * Creates an equality constraint without normalizing it.
+     */
+    static Constraint equality(Slot first, Slot second) throws ReflectiveOperationException {
+        Constructor<EqualityConstraint> constructor =
+                EqualityConstraint.class.getDeclaredConstructor(Slot.class, Slot.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(first, second);
+    }
+
+    /**
+     * @return the subtype constraints between each slot and the next one
+     */
+    static List<Constraint> chain(Slot... slots) throws ReflectiveOperationException {
+        Constraint[] constraints = new Constraint[slots.length - 1];
+        for (int i = 0; i < constraints.length; i++) {
+            constraints[i] = subtype(slots[i], slots[i + 1]);
+        }
+        return Arrays.asList(constraints);
+    }
+
+    /**
+     * Mocks an annotation with the given simple name, which is also its qualified name and
+     * its {@code toString()}.
+     */
+    static AnnotationMirror annotation(String simpleName) {
+        Name name = mock(Name.class);
+        when(name.toString()).thenReturn(simpleName);
+        TypeElement element = mock(TypeElement.class);
+        when(element.getSimpleName()).thenReturn(name);
+        when(element.getQualifiedName()).thenReturn(name);
+        DeclaredType type = mock(DeclaredType.class);
+        when(type.asElement()).thenReturn(element);
+        AnnotationMirror annotation = mock(AnnotationMirror.class, "@" + simpleName);
+        when(annotation.getAnnotationType()).thenReturn(type);
+        return annotation;
+    }
+}
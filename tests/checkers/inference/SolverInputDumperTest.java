@@ -0,0 +1,65 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import checkers.inference.solver.util.SolverInputDumper;
+
+public class SolverInputDumperTest {
+
+    private File dumpDir;
+
+    @Before
+    public void createDumpDir() throws IOException {
+        dumpDir = Files.createTempDirectory("solver-input-dumper-test").toFile();
+    }
+
+    @After
+    public void deleteDumpDir() {
+        for (File file : dumpDir.listFiles()) {
+            file.delete();
+        }
+        dumpDir.delete();
+    }
+
+    @Test
+    public void rotatedDumpsContinueAfterExistingFiles() throws IOException {
+        new File(dumpDir, "input.1.smt.gz").createNewFile();
+        new File(dumpDir, "input.3.smt.gz").createNewFile();
+        new File(dumpDir, "other.7.smt.gz").createNewFile();
+
+        SolverInputDumper dumper = SolverInputDumper.getDumper(dumpDir.getPath(), "input", "smt", 1024, false);
+        dumper.dump("(check-sat)");
+        dumper.close();
+
+        assertFiles("input.1.smt.gz", "input.3.smt.gz", "input.4.smt.gz", "other.7.smt.gz");
+    }
+
+    @Test
+    public void componentDumpsContinueAfterExistingFiles() throws IOException {
+        new File(dumpDir, "input-component-2.smt.gz").createNewFile();
+        new File(dumpDir, "input.9.smt.gz").createNewFile();
+
+        SolverInputDumper dumper = SolverInputDumper.getDumper(dumpDir.getPath(), "input", "smt", 1024, true);
+        dumper.dump("(check-sat)");
+        dumper.dump("(check-sat)");
+        dumper.close();
+
+        assertFiles("input-component-2.smt.gz", "input-component-3.smt.gz", "input-component-4.smt.gz",
+                "input.9.smt.gz");
+    }
+
+    private void assertFiles(String... expected) {
+        String[] names = dumpDir.list();
+        Arrays.sort(names);
+        assertArrayEquals(expected, names);
+    }
+}
@@ -0,0 +1,89 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.microsoft.z3.Context;
+
+import checkers.inference.solver.backend.z3.Z3ContextPool;
+import checkers.inference.solver.util.SolverEnvironment;
+
+public class Z3ContextPoolTest {
+
+    private final Z3ContextPool pool = new Z3ContextPool(Collections.emptyMap(), 1);
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void releasedContextIsReused() {
+        Context context = pool.acquire();
+        pool.release(context);
+        Context next = pool.acquire();
+        assertSame(context, next);
+        pool.release(next);
+    }
+
+    @Test
+    public void acquireWaitsForRelease() throws InterruptedException {
+        Context context = pool.acquire();
+        AtomicReference<Context> acquired = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            Context other = pool.acquire();
+            acquired.set(other);
+            pool.release(other);
+        });
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        pool.release(context);
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertSame(context, acquired.get());
+    }
+
+    @Test
+    public void sharedPoolGrowsToTheLargestLimit() throws InterruptedException {
+        Map<String, String> contextParams = Collections.singletonMap("timeout", "2000");
+        Z3ContextPool shared = Z3ContextPool.getPool(contextParams, environment("1"));
+        Context context = shared.acquire();
+        assertSame(shared, Z3ContextPool.getPool(contextParams, environment("2")));
+
+        AtomicReference<Context> acquired = new AtomicReference<>();
+        Thread other = new Thread(() -> acquired.set(shared.acquire()));
+        other.start();
+        other.join(5000);
+        assertFalse(other.isAlive());
+        assertNotSame(context, acquired.get());
+        shared.release(context);
+        shared.release(acquired.get());
+        shared.close();
+    }
+
+    @Test
+    public void closedPoolIsReplaced() {
+        Z3ContextPool shared = Z3ContextPool.getPool(Collections.singletonMap("timeout", "1000"), environment(null));
+        shared.close();
+        Z3ContextPool replacement = Z3ContextPool.getPool(Collections.singletonMap("timeout", "1000"), environment(null));
+        assertNotSame(shared, replacement);
+        replacement.close();
+    }
+
+    private static SolverEnvironment environment(String maxContexts) {
+        Map<String, String> arguments = maxContexts == null ? Collections.emptyMap()
+                : Collections.singletonMap("maxZ3Contexts", maxContexts);
+        return new SolverEnvironment(arguments, null);
+    }
+}
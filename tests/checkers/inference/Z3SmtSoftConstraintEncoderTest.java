@@ -0,0 +1,97 @@
+package checkers.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.checkerframework.javacutil.Pair;
+import org.junit.Test;
+
+import com.microsoft.z3.Expr;
+
+import checkers.inference.model.ArithmeticConstraint;
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ComparisonConstraint;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.ImplicationConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.solver.backend.z3smt.encoder.Z3SmtSoftConstraintEncoder;
+
+public class Z3SmtSoftConstraintEncoderTest {
+
+    /**
+     * Encodes every subtype constraint as a soft constraint of weight 1 and every equality
+     * constraint as one of weight 2.
+     */
+    private static class WeightEncoder extends Z3SmtSoftConstraintEncoder<Object, Object> {
+        WeightEncoder() {
+            super(null, null, null);
+        }
+
+        @Override
+        protected void encodeSoftSubtypeConstraint(SubtypeConstraint constraint) {
+            addSoftConstraint(null, 1);
+        }
+
+        @Override
+        protected void encodeSoftEqualityConstraint(EqualityConstraint constraint) {
+            addSoftConstraint(null, 2);
+        }
+
+        @Override
+        protected void encodeSoftComparableConstraint(ComparableConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftComparisonConstraint(ComparisonConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftArithmeticConstraint(ArithmeticConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftInequalityConstraint(InequalityConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftImplicationConstraint(ImplicationConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftExistentialConstraint(ExistentialConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftCombineConstraint(CombineConstraint constraint) {}
+
+        @Override
+        protected void encodeSoftPreferenceConstraint(PreferenceConstraint constraint) {}
+    }
+
+    @Test
+    public void eachCallReturnsOnlyItsOwnSoftConstraints() {
+        WeightEncoder encoder = new WeightEncoder();
+        Collection<Constraint> constraints = Arrays.asList(
+                mock(SubtypeConstraint.class), mock(EqualityConstraint.class));
+
+        List<Pair<Expr, Integer>> first = encoder.encodeSoftConstraints(constraints);
+        List<Pair<Expr, Integer>> second = encoder.encodeSoftConstraints(constraints);
+
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(Integer.valueOf(1), second.get(0).second);
+        assertEquals(Integer.valueOf(2), second.get(1).second);
+    }
+
+    @Test
+    public void textEncodingHasOneAssertSoftPerConstraint() {
+        WeightEncoder encoder = new WeightEncoder();
+        Collection<Constraint> constraints = Arrays.asList(mock(SubtypeConstraint.class));
+
+        encoder.encodeAndGetSoftConstraints(constraints);
+        assertEquals("(assert-soft null :weight 1)\n", encoder.encodeAndGetSoftConstraints(constraints));
+    }
+}
@@ -0,0 +1,152 @@
+package checkers.inference;
+
+import static checkers.inference.SolverFixtures.subtype;
+import static checkers.inference.SolverFixtures.variable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Test;
+
+import com.microsoft.z3.BoolExpr;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.solver.backend.encoder.ConstraintEncoderFactory;
+import checkers.inference.solver.backend.z3smt.Z3SmtFormatTranslator;
+import checkers.inference.solver.backend.z3smt.Z3SmtSolver;
+import checkers.inference.solver.backend.z3smt.encoder.Z3SmtSoftConstraintEncoder;
+import checkers.inference.solver.util.SolverEnvironment;
+
+/**
+ * Solves boolean slots in process, where each subtype constraint requires its two slots to
+ * differ, so a cycle of three constraints is unsatisfiable.
+ */
+public class Z3SmtSolverTest {
+
+    @Test(timeout = 60000)
+    public void unsatCoreReusesTheEncodingOfSolve() throws Exception {
+        DifferingTranslator translator = new DifferingTranslator();
+        List<Constraint> constraints = triangle();
+        Z3SmtSolver<BoolExpr, Boolean> solver = createSolver(translator, constraints);
+
+        assertNull(solver.solve());
+        assertEquals(3, translator.encodedConstraints);
+
+        assertEquals(new HashSet<>(constraints), new HashSet<>(solver.explainUnsatisfiable()));
+        assertEquals(3, translator.encodedConstraints);
+    }
+
+    @Test(timeout = 60000)
+    public void unsatCoreWithoutSolveEncodesTheConstraints() throws Exception {
+        DifferingTranslator translator = new DifferingTranslator();
+        List<Constraint> constraints = triangle();
+
+        Z3SmtSolver<BoolExpr, Boolean> solver = createSolver(translator, constraints);
+
+        assertEquals(new HashSet<>(constraints), new HashSet<>(solver.explainUnsatisfiable()));
+        assertEquals(3, translator.encodedConstraints);
+    }
+
+    @Test(timeout = 60000)
+    public void releaseGivesBackTheContextOfAnUnsatisfiableSolve() throws Exception {
+        // With a single context, the second solver waits forever unless the first one gives its context back.
+        for (int i = 0; i < 2; i++) {
+            Z3SmtSolver<BoolExpr, Boolean> solver = createSolver(new DifferingTranslator(), triangle());
+            assertNull(solver.solve());
+            solver.release();
+        }
+        Z3SmtSolver<BoolExpr, Boolean> solver = createSolver(new DifferingTranslator(),
+                Collections.singletonList(subtype(variable(1), variable(2))));
+        assertNotNull(solver.solve());
+    }
+
+    private static Z3SmtSolver<BoolExpr, Boolean> createSolver(DifferingTranslator translator,
+                                                              List<Constraint> constraints) {
+        Map<String, String> arguments = new HashMap<>();
+        arguments.put("inProcess", "true");
+        arguments.put("maxZ3Contexts", "1");
+        Slot[] slots = {variable(1), variable(2), variable(3)};
+        return new Z3SmtSolver<>(new SolverEnvironment(arguments, null), Arrays.asList(slots), constraints,
+                translator, null);
+    }
+
+    private static List<Constraint> triangle() throws ReflectiveOperationException {
+        return Arrays.asList(
+                subtype(variable(1), variable(2)),
+                subtype(variable(2), variable(3)),
+                subtype(variable(3), variable(1)));
+    }
+
+    /**
+     * Encodes each slot as a boolean and each subtype constraint as the two slots differing,
+     * counting the constraints it encodes.
+     */
+    private static class DifferingTranslator extends Z3SmtFormatTranslator<BoolExpr, Boolean> {
+        int encodedConstraints = 0;
+
+        DifferingTranslator() {
+            super(null);
+        }
+
+        @Override
+        public BoolExpr serialize(SubtypeConstraint constraint) {
+            encodedConstraints++;
+            return ctx.mkXor(serializeVarSlot(constraint.getSubtype()), serializeVarSlot(constraint.getSupertype()));
+        }
+
+        @Override
+        protected BoolExpr serializeVarSlot(Slot slot) {
+            return ctx.mkBoolConst("v" + slot.getId());
+        }
+
+        @Override
+        protected BoolExpr serializeConstantSlot(ConstantSlot slot) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected ConstraintEncoderFactory<BoolExpr> createConstraintEncoderFactory() {
+            return mock(ConstraintEncoderFactory.class);
+        }
+
+        @Override
+        protected Z3SmtSoftConstraintEncoder<BoolExpr, Boolean> createSoftConstraintEncoder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BoolExpr encodeSlotWellformnessConstraint(Slot slot) {
+            return ctx.mkTrue();
+        }
+
+        @Override
+        public BoolExpr encodeSlotPreferenceConstraint(Slot slot) {
+            return ctx.mkTrue();
+        }
+
+        @Override
+        public Map<Integer, AnnotationMirror> decodeSolution(List<String> model, ProcessingEnvironment processingEnv) {
+            return new HashMap<>();
+        }
+
+        @Override
+        public AnnotationMirror decodeSolution(Boolean solution, ProcessingEnvironment processingEnvironment) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}